@@ -17,10 +17,13 @@
 package io.reactivecache2;
 
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Single;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Provides a set of entries in order to perform write operations on lists with providers in a more
@@ -29,10 +32,21 @@ import java.util.List;
 public class ActionsList<T> {
   protected Single<List<T>> cache;
   protected final Evict<T> evict;
+  private final Editor<T> editor;
+  private final KeyIndex<T> keyIndex;
+  private final Versions.Version version;
 
   ActionsList(Evict<T> evict, Single<List<T>> cache) {
+    this(evict, cache, null, null, new Versions.Version());
+  }
+
+  ActionsList(Evict<T> evict, Single<List<T>> cache, Editor<T> editor, KeyIndex<T> keyIndex,
+      Versions.Version version) {
     this.evict = evict;
     this.cache = cache;
+    this.editor = editor;
+    this.keyIndex = keyIndex;
+    this.version = version;
   }
 
   /**
@@ -47,6 +61,16 @@ public class ActionsList<T> {
     return new ActionsList<>(evict, cache);
   }
 
+  /**
+   * Same as {@link ActionsList#with(Evict, Single)} but performing the operations through the
+   * editor instead of rewriting the whole list if supplied, looking up the elements by key through
+   * the index if supplied, and checking for concurrent writes against the version of the list.
+   */
+  static <T> ActionsList<T> with(Evict<T> evict, Single<List<T>> cache, Editor<T> editor,
+      KeyIndex<T> keyIndex, Versions.Version version) {
+    return new ActionsList<>(evict, cache, editor, keyIndex, version);
+  }
+
   /**
    * Func2 will be called for every iteration until its condition returns true. When true, the
    * element is added to the cache at the position of the current iteration.
@@ -110,18 +134,7 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable addAll(final Func2 func2, final List<T> elements) {
-    return evict.call(cache.map(items -> {
-      int count = items.size();
-
-      for (int position = 0; position <= count; position++) {
-        if (func2.call(position, count)) {
-          items.addAll(position, elements);
-          break;
-        }
-      }
-
-      return items;
-    })).toCompletable();
+    return edit(addAllEdit(func2, elements));
   }
 
   /**
@@ -193,8 +206,6 @@ public class ActionsList<T> {
     return evict((position, count, element) -> position == count - 1 && func1Count.call(count));
   }
 
-  private boolean startToEvict;
-
   /**
    * Evict as much objects as requested by n param starting from the last position.
    *
@@ -203,16 +214,7 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable evictLastN(final Func1Count func1Count, final int n) {
-    startToEvict = false;
-    return evictIterable((position, count, element) -> {
-      if (!startToEvict) startToEvict = count - position == n;
-
-      if (startToEvict) {
-        return count - position <= n && func1Count.call(count);
-      } else {
-        return false;
-      }
-    });
+    return evictIterable(evictLastNCondition(func1Count, n));
   }
 
   /**
@@ -235,18 +237,7 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable evict(final Func3<T> func3) {
-    return evict.call(cache.map(elements -> {
-      int count = elements.size();
-
-      for (int position = 0; position < count; position++) {
-        if (func3.call(position, count, elements.get(position))) {
-          elements.remove(position);
-          break;
-        }
-      }
-
-      return elements;
-    })).toCompletable();
+    return edit(evictEdit(func3));
   }
 
   /**
@@ -286,18 +277,7 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable evictIterable(final Func3<T> func3) {
-    return evict.call(cache.map(elements -> {
-      int count = elements.size();
-
-      for (int position = 0; position < count; position++) {
-        if (func3.call(position, count, elements.get(position))) {
-          elements.set(position, null);
-        }
-      }
-
-      elements.removeAll(Collections.singleton(null));
-      return elements;
-    })).toCompletable();
+    return edit(evictIterableEdit(func3));
   }
 
   /**
@@ -322,18 +302,7 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable update(final Func3<T> func3, final Replace<T> replace) {
-    return evict.call(cache.map(elements -> {
-      int count = elements.size();
-
-      for (int position = 0; position < count; position++) {
-        if (func3.call(position, count, elements.get(position))) {
-          elements.set(position, replace.call(elements.get(position)));
-          break;
-        }
-      }
-
-      return elements;
-    })).toCompletable();
+    return edit(updateEdit(func3, replace));
   }
 
   /**
@@ -358,17 +327,465 @@ public class ActionsList<T> {
    * @return Completable
    */
   public Completable updateIterable(final Func3<T> func3, final Replace<T> replace) {
+    return edit(updateIterableEdit(func3, replace));
+  }
+
+  /**
+   * Update the element with the key. The key of the elements is the one returned by the
+   * KeyExtractor configured on the provider, which is used to find the element without scanning
+   * the cache.
+   *
+   * @param key the key of the element to update.
+   * @param replace exposes the original element and expects back the one modified.
+   * @return Completable
+   */
+  public Completable updateByKey(final Object key, final Replace<T> replace) {
+    return edit(updateByKeyEdit(requireKeyIndex(keyIndex), key, replace));
+  }
+
+  /**
+   * Evict the element with the key. The key of the elements is the one returned by the
+   * KeyExtractor configured on the provider, which is used to find the element without scanning
+   * the cache.
+   *
+   * @param key the key of the element to evict.
+   * @return Completable
+   */
+  public Completable evictByKey(final Object key) {
+    return edit(evictByKeyEdit(requireKeyIndex(keyIndex), key));
+  }
+
+  /**
+   * Read the element with the key, completing without emitting if there is none. The key of the
+   * elements is the one returned by the KeyExtractor configured on the provider, which is used to
+   * find the element without scanning the cache.
+   *
+   * @param key the key of the element to read.
+   * @return Maybe
+   */
+  public Maybe<T> getByKey(final Object key) {
+    final KeyIndex<T> index = requireKeyIndex(keyIndex);
+    return cache.toMaybe().flatMap(elements -> {
+      int position = index.positionOf(key, elements);
+      return position == -1 ? Maybe.<T>empty() : Maybe.just(elements.get(position));
+    });
+  }
+
+  /**
+   * FuncBatch queues the operations to perform on the cache, which are applied in order to a single
+   * copy of the cached list and persisted all together once. If any of them fails, none is
+   * persisted.
+   *
+   * @param funcBatch exposes the batch to queue the operations on.
+   * @return Completable
+   */
+  public Completable batch(final FuncBatch<T> funcBatch) {
+    Batch<T> batch = new Batch<>(keyIndex);
+    funcBatch.call(batch);
+    return edit(batch.edits);
+  }
+
+  private Completable edit(final Edit<T> edit) {
+    return edit(Collections.singletonList(edit));
+  }
+
+  /**
+   * Perform the edits and persist them as long as no other write to the list has happened since it
+   * was read, otherwise start over with the list just written. Waits while another write is in
+   * progress, resuming once it releases the version.
+   */
+  private Completable edit(final List<Edit<T>> edits) {
+    return Completable.defer(() -> {
+      final long read = version.current();
+      if (Versions.Version.isClaimed(read)) return awaitRelease().andThen(edit(edits));
+
+      //Claimed once the edits have been performed, right before persisting them.
+      final AtomicBoolean claimed = new AtomicBoolean();
+      final KeyIndex.Changes<T> changes = keyIndex != null ? keyIndex.changes() : null;
+      List<Edit<T>> claiming = new ArrayList<>(indexed(edits, changes));
+      claiming.add(elements -> {
+        if (!version.claim(read)) throw new ConcurrentWriteException();
+        claimed.set(true);
+        return null;
+      });
+
+      return persist(claiming)
+          .doOnComplete(() -> {
+            if (changes != null) keyIndex.apply(changes);
+          })
+          .doFinally(() -> {
+            if (claimed.get()) version.release(read);
+          })
+          .onErrorResumeNext(error -> error instanceof ConcurrentWriteException ?
+              edit(edits) : Completable.error(error));
+    });
+  }
+
+  private Completable awaitRelease() {
+    return Completable.create(emitter -> {
+      final Runnable waiter = emitter::onComplete;
+      emitter.setCancellable(() -> version.cancelAwait(waiter));
+      version.awaitRelease(waiter);
+    });
+  }
+
+  /**
+   * Perform the edits through the editor if supplied, otherwise apply them on the cached list and
+   * persist the whole list.
+   */
+  private Completable persist(final List<Edit<T>> edits) {
+    if (editor != null) return editor.edit(edits);
+
     return evict.call(cache.map(elements -> {
+      for (Edit<T> edit : edits) {
+        ListDelta<T> delta = edit.call(elements);
+        if (delta != null) delta.applyTo(elements);
+      }
+      return elements;
+    })).toCompletable();
+  }
+
+  /**
+   * Wrap the edits to record the changes of the index for their deltas, if there is an index.
+   */
+  private List<Edit<T>> indexed(List<Edit<T>> edits, final KeyIndex.Changes<T> changes) {
+    if (changes == null) return edits;
+
+    List<Edit<T>> indexed = new ArrayList<>(edits.size());
+    for (final Edit<T> edit : edits) {
+      indexed.add(elements -> {
+        ListDelta<T> delta = edit.call(elements);
+        if (delta != null) changes.record(delta, elements);
+        return delta;
+      });
+    }
+    return indexed;
+  }
+
+  private static <T> KeyIndex<T> requireKeyIndex(KeyIndex<T> keyIndex) {
+    if (keyIndex == null) {
+      throw new IllegalStateException("A KeyExtractor has not been configured for this provider");
+    }
+    return keyIndex;
+  }
+
+  private static <T> Edit<T> updateByKeyEdit(final KeyIndex<T> keyIndex, final Object key,
+      final Replace<T> replace) {
+    return elements -> {
+      int position = keyIndex.positionOf(key, elements);
+      if (position == -1) return null;
+
+      List<T> replaced = new ArrayList<>(1);
+      replaced.add(replace.call(elements.get(position)));
+      return ListDelta.set(new int[] {position}, replaced);
+    };
+  }
+
+  private static <T> Edit<T> evictByKeyEdit(final KeyIndex<T> keyIndex, final Object key) {
+    return elements -> {
+      int position = keyIndex.positionOf(key, elements);
+      return position == -1 ? null : ListDelta.<T>remove(new int[] {position});
+    };
+  }
+
+  private static <T> Edit<T> addAllEdit(final Func2 func2, final List<T> elements) {
+    return items -> {
+      int count = items.size();
+
+      for (int position = 0; position <= count; position++) {
+        if (func2.call(position, count)) {
+          return ListDelta.insert(position, elements);
+        }
+      }
+
+      return null;
+    };
+  }
+
+  private static <T> Func3<T> evictLastNCondition(final Func1Count func1Count, final int n) {
+    return (position, count, element) ->
+        n <= count && count - position <= n && func1Count.call(count);
+  }
+
+  private static <T> Edit<T> evictEdit(final Func3<T> func3) {
+    return elements -> {
       int count = elements.size();
 
       for (int position = 0; position < count; position++) {
         if (func3.call(position, count, elements.get(position))) {
-          elements.set(position, replace.call(elements.get(position)));
+          return ListDelta.remove(new int[] {position});
         }
       }
 
-      return elements;
-    })).toCompletable();
+      return null;
+    };
+  }
+
+  private static <T> Edit<T> evictIterableEdit(final Func3<T> func3) {
+    return elements -> {
+      int count = elements.size(), matches = 0;
+      int[] positions = new int[count];
+
+      for (int position = 0; position < count; position++) {
+        if (func3.call(position, count, elements.get(position))) {
+          positions[matches++] = position;
+        }
+      }
+
+      return matches == 0 ? null : ListDelta.<T>remove(Arrays.copyOf(positions, matches));
+    };
+  }
+
+  private static <T> Edit<T> updateEdit(final Func3<T> func3, final Replace<T> replace) {
+    return elements -> {
+      int count = elements.size();
+
+      for (int position = 0; position < count; position++) {
+        if (func3.call(position, count, elements.get(position))) {
+          List<T> replaced = new ArrayList<>(1);
+          replaced.add(replace.call(elements.get(position)));
+          return ListDelta.set(new int[] {position}, replaced);
+        }
+      }
+
+      return null;
+    };
+  }
+
+  private static <T> Edit<T> updateIterableEdit(final Func3<T> func3, final Replace<T> replace) {
+    return elements -> {
+      int count = elements.size(), matches = 0;
+      int[] positions = new int[count];
+      List<T> replaced = new ArrayList<>();
+
+      for (int position = 0; position < count; position++) {
+        if (func3.call(position, count, elements.get(position))) {
+          positions[matches++] = position;
+          replaced.add(replace.call(elements.get(position)));
+        }
+      }
+
+      return matches == 0 ? null : ListDelta.set(Arrays.copyOf(positions, matches), replaced);
+    };
+  }
+
+  private static final class ConcurrentWriteException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    @Override public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /**
+   * Computes the change of an operation on the elements, or null if there is nothing to change.
+   */
+  interface Edit<T> {
+    ListDelta<T> call(List<T> elements);
+  }
+
+  /**
+   * Persists the changes of a sequence of operations at once, as {@link DeltaLog} does.
+   */
+  interface Editor<T> {
+    Completable edit(List<Edit<T>> edits);
+  }
+
+  /**
+   * Queues the operations performed by {@link ActionsList#batch(FuncBatch)}. Every operation
+   * behaves as its counterpart on {@link ActionsList}, taking into account the outcome of the ones
+   * queued before it.
+   */
+  public static final class Batch<T> {
+    private final List<Edit<T>> edits;
+    private final KeyIndex<T> keyIndex;
+
+    Batch(KeyIndex<T> keyIndex) {
+      this.edits = new ArrayList<>();
+      this.keyIndex = keyIndex;
+    }
+
+    /**
+     * Same as {@link ActionsList#add(Func2, Object)}
+     */
+    public Batch<T> add(Func2 func2, T element) {
+      return addAll(func2, Arrays.asList(element));
+    }
+
+    /**
+     * Same as {@link ActionsList#addFirst(Object)}
+     */
+    public Batch<T> addFirst(T element) {
+      return addAll((position, count) -> position == 0, Arrays.asList(element));
+    }
+
+    /**
+     * Same as {@link ActionsList#addLast(Object)}
+     */
+    public Batch<T> addLast(T element) {
+      return addAll((position, count) -> position == count, Arrays.asList(element));
+    }
+
+    /**
+     * Same as {@link ActionsList#addAllFirst(List)}
+     */
+    public Batch<T> addAllFirst(List<T> elements) {
+      return addAll((position, count) -> position == 0, elements);
+    }
+
+    /**
+     * Same as {@link ActionsList#addAllLast(List)}
+     */
+    public Batch<T> addAllLast(List<T> elements) {
+      return addAll((position, count) -> position == count, elements);
+    }
+
+    /**
+     * Same as {@link ActionsList#addAll(Func2, List)}
+     */
+    public Batch<T> addAll(Func2 func2, List<T> elements) {
+      edits.add(ActionsList.addAllEdit(func2, elements));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#evictFirst()}
+     */
+    public Batch<T> evictFirst() {
+      return evict((position, count, element) -> position == 0);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictFirstN(int)}
+     */
+    public Batch<T> evictFirstN(int n) {
+      return evictFirstN(count -> true, n);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictLast()}
+     */
+    public Batch<T> evictLast() {
+      return evict((position, count, element) -> position == count - 1);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictLastN(int)}
+     */
+    public Batch<T> evictLastN(int n) {
+      return evictLastN(count -> true, n);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictFirst(Func1Count)}
+     */
+    public Batch<T> evictFirst(final Func1Count func1Count) {
+      return evict((position, count, element) -> position == 0 && func1Count.call(count));
+    }
+
+    /**
+     * Same as {@link ActionsList#evictFirstN(Func1Count, int)}
+     */
+    public Batch<T> evictFirstN(final Func1Count func1Count, final int n) {
+      return evictIterable((position, count, element) -> position < n && func1Count.call(count));
+    }
+
+    /**
+     * Same as {@link ActionsList#evictLast(Func1Count)}
+     */
+    public Batch<T> evictLast(final Func1Count func1Count) {
+      return evict((position, count, element) -> position == count - 1 && func1Count.call(count));
+    }
+
+    /**
+     * Same as {@link ActionsList#evictLastN(Func1Count, int)}
+     */
+    public Batch<T> evictLastN(Func1Count func1Count, int n) {
+      return evictIterable(ActionsList.<T>evictLastNCondition(func1Count, n));
+    }
+
+    /**
+     * Same as {@link ActionsList#evict(Func1)}
+     */
+    public Batch<T> evict(final Func1<T> func1) {
+      return evict((position, count, element) -> func1.call(element));
+    }
+
+    /**
+     * Same as {@link ActionsList#evict(Func3)}
+     */
+    public Batch<T> evict(Func3<T> func3) {
+      edits.add(ActionsList.evictEdit(func3));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#evictAllKeepingFirstN(int)}
+     */
+    public Batch<T> evictAllKeepingFirstN(final int n) {
+      return evictIterable((position, count, element) -> position >= n);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictAllKeepingLastN(int)}
+     */
+    public Batch<T> evictAllKeepingLastN(final int n) {
+      return evictIterable((position, count, element) -> position < count - n);
+    }
+
+    /**
+     * Same as {@link ActionsList#evictIterable(Func3)}
+     */
+    public Batch<T> evictIterable(Func3<T> func3) {
+      edits.add(ActionsList.evictIterableEdit(func3));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#update(Func1, Replace)}
+     */
+    public Batch<T> update(final Func1<T> func1, Replace<T> replace) {
+      return update((position, count, element) -> func1.call(element), replace);
+    }
+
+    /**
+     * Same as {@link ActionsList#update(Func3, Replace)}
+     */
+    public Batch<T> update(Func3<T> func3, Replace<T> replace) {
+      edits.add(ActionsList.updateEdit(func3, replace));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#updateIterable(Func1, Replace)}
+     */
+    public Batch<T> updateIterable(final Func1<T> func1, Replace<T> replace) {
+      return updateIterable((position, count, element) -> func1.call(element), replace);
+    }
+
+    /**
+     * Same as {@link ActionsList#updateIterable(Func3, Replace)}
+     */
+    public Batch<T> updateIterable(Func3<T> func3, Replace<T> replace) {
+      edits.add(ActionsList.updateIterableEdit(func3, replace));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#updateByKey(Object, Replace)}
+     */
+    public Batch<T> updateByKey(Object key, Replace<T> replace) {
+      edits.add(ActionsList.updateByKeyEdit(requireKeyIndex(keyIndex), key, replace));
+      return this;
+    }
+
+    /**
+     * Same as {@link ActionsList#evictByKey(Object)}
+     */
+    public Batch<T> evictByKey(Object key) {
+      edits.add(ActionsList.evictByKeyEdit(requireKeyIndex(keyIndex), key));
+      return this;
+    }
   }
 
   public interface Evict<T> {
@@ -394,4 +811,12 @@ public class ActionsList<T> {
   public interface Replace<T> {
     T call(T element);
   }
+
+  public interface KeyExtractor<T> {
+    Object call(final T element);
+  }
+
+  public interface FuncBatch<T> {
+    void call(final Batch<T> batch);
+  }
 }
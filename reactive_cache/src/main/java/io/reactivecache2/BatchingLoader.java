@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.functions.Function;
+import io.rx_cache2.RxCacheException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loader for the providers of a family of keys, i.e. one provider per id, which batches the
+ * loads of every key requested within a window into a single call to a bulk loader. Use {@link
+ * #load(Object)} as the loader of every provider; as providers only subscribe to their loader on a
+ * miss, only the misses are batched.
+ *
+ * <pre>
+ * userLoader.load(id).compose(reactiveCache.&lt;User&gt;provider().withKey(id).readWithLoader())
+ * </pre>
+ *
+ * A batch is loaded once its first key has waited the window or once it holds the max batch of
+ * keys, whatever happens first. Keys requested more than once in a batch are loaded once.
+ *
+ * @param <K> The type of the keys.
+ * @param <T> The type of the data loaded.
+ */
+public final class BatchingLoader<K, T> {
+  private final Function<List<K>, Single<Map<K, T>>> bulkLoader;
+  private final long windowMillis;
+  private final int maxBatch;
+  private final Scheduler scheduler;
+  private Batch batch;
+
+  BatchingLoader(Function<List<K>, Single<Map<K, T>>> bulkLoader, long windowMillis,
+      int maxBatch, Scheduler scheduler) {
+    this.bulkLoader = bulkLoader;
+    this.windowMillis = windowMillis;
+    this.maxBatch = maxBatch;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * The loader of the key, which emits its data once the batch it joins is loaded, or fails if
+   * the bulk loader fails or returns no data for it. Disposing it leaves the batch, which does not
+   * load the key if no other loader waits for it.
+   */
+  public Single<T> load(final K key) {
+    return Single.create(emitter -> {
+      Batch full = null;
+      final Batch joined;
+      synchronized (this) {
+        if (batch == null) {
+          final Batch opened = new Batch();
+          batch = opened;
+          scheduler.scheduleDirect(() -> loadIfPending(opened), windowMillis,
+              TimeUnit.MILLISECONDS);
+        }
+
+        joined = batch;
+        joined.add(key, emitter);
+        if (joined.emitters.size() >= maxBatch) {
+          full = joined;
+          batch = null;
+        }
+      }
+
+      emitter.setCancellable(() -> {
+        synchronized (BatchingLoader.this) {
+          joined.remove(key, emitter);
+        }
+      });
+      if (full != null) {
+        final Batch loaded = full;
+        scheduler.scheduleDirect(() -> load(loaded));
+      }
+    });
+  }
+
+  /**
+   * Load the batch once its window is over, unless it was loaded before as it got full.
+   */
+  private void loadIfPending(Batch opened) {
+    synchronized (this) {
+      if (batch != opened) return;
+      batch = null;
+    }
+    load(opened);
+  }
+
+  private void load(final Batch batch) {
+    synchronized (this) {
+      batch.dispatched = true;
+    }
+    if (batch.emitters.isEmpty()) return;
+
+    Single<Map<K, T>> loaded;
+    try {
+      loaded = bulkLoader.apply(new ArrayList<>(batch.emitters.keySet()));
+      if (loaded == null) throw new NullPointerException("The bulk loader returned null");
+    } catch (Exception e) {
+      loaded = Single.error(e);
+    }
+
+    loaded.subscribe(data -> {
+      for (Map.Entry<K, List<SingleEmitter<T>>> entry : batch.emitters.entrySet()) {
+        T value = data.get(entry.getKey());
+        for (SingleEmitter<T> emitter : entry.getValue()) {
+          if (emitter.isDisposed()) continue;
+          if (value != null) {
+            emitter.onSuccess(value);
+          } else {
+            emitter.onError(
+                new RxCacheException("The bulk loader returned no data for " + entry.getKey()));
+          }
+        }
+      }
+    }, error -> {
+      for (List<SingleEmitter<T>> emitters : batch.emitters.values()) {
+        for (SingleEmitter<T> emitter : emitters) {
+          if (!emitter.isDisposed()) emitter.onError(error);
+        }
+      }
+    });
+  }
+
+  /**
+   * The loaders waiting for every key of a batch, which are only added and removed before the
+   * batch is dispatched, so they are read without holding the lock once it is.
+   */
+  private final class Batch {
+    private final Map<K, List<SingleEmitter<T>>> emitters = new LinkedHashMap<>();
+    private boolean dispatched;
+
+    void add(K key, SingleEmitter<T> emitter) {
+      List<SingleEmitter<T>> waiting = emitters.get(key);
+      if (waiting == null) {
+        waiting = new ArrayList<>();
+        emitters.put(key, waiting);
+      }
+      waiting.add(emitter);
+    }
+
+    void remove(K key, SingleEmitter<T> emitter) {
+      if (dispatched) return;
+
+      List<SingleEmitter<T>> waiting = emitters.get(key);
+      if (waiting == null) return;
+      waiting.remove(emitter);
+      if (waiting.isEmpty()) emitters.remove(key);
+    }
+  }
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary {@link Codec} for POJOs, collections, maps and arrays, built on reflection like
+ * the JSON speakers so the cached classes need no changes.
+ *
+ * <p>Every value is written as a tag followed by its payload: integers as zigzag varints,
+ * floating point numbers as their raw bits and strings as UTF-8. Objects are written as pairs of
+ * field name and value, skipping null fields, so fields added or removed between releases are
+ * tolerated as with JSON. Strings up to 64 chars, which include every field name, are written
+ * once per record and referenced by their position afterwards, so a list of objects does not
+ * repeat the names of their fields.
+ *
+ * <p>Objects are built with their no-arg constructor if they have one. Values decoded as Object
+ * are returned as Integer, Long, Double, Float, Boolean, String, byte[], ArrayList or
+ * LinkedHashMap.
+ */
+public final class BinaryCodec implements Codec {
+  private static final int NULL = 0, TRUE = 1, FALSE = 2, INT = 3, LONG = 4, DOUBLE = 5,
+      FLOAT = 6, STRING = 7, STRING_REF = 8, BYTES = 9, LIST = 10, MAP = 11, OBJECT = 12, END = 13;
+  private static final int MAX_REFERENCED_LENGTH = 64;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final Map<Class<?>, ClassInfo> classes = new ConcurrentHashMap<>();
+
+  @Override public byte[] encode(Object value, Type type) {
+    Writer writer = new Writer();
+    write(value, writer);
+    return writer.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override public <T> T decode(byte[] bytes, Type type) {
+    Reader reader = new Reader(bytes);
+    T value = (T) read(reader.tag(), type, reader);
+    if (reader.position != bytes.length) {
+      throw new IllegalArgumentException("Trailing bytes after the encoded value");
+    }
+    return value;
+  }
+
+  private void write(Object value, Writer writer) {
+    if (value == null) {
+      writer.tag(NULL);
+    } else if (value instanceof String) {
+      writer.string((String) value);
+    } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      writer.tag(INT);
+      writer.varint(((Number) value).longValue());
+    } else if (value instanceof Long) {
+      writer.tag(LONG);
+      writer.varint((Long) value);
+    } else if (value instanceof Double) {
+      writer.tag(DOUBLE);
+      writer.fixed(Double.doubleToLongBits((Double) value), 8);
+    } else if (value instanceof Float) {
+      writer.tag(FLOAT);
+      writer.fixed(Float.floatToIntBits((Float) value), 4);
+    } else if (value instanceof Boolean) {
+      writer.tag((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Character || value instanceof Number) {
+      writer.string(value.toString());
+    } else if (value instanceof Enum) {
+      writer.string(((Enum<?>) value).name());
+    } else if (value instanceof Date) {
+      writer.tag(LONG);
+      writer.varint(((Date) value).getTime());
+    } else if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      writer.tag(BYTES);
+      writer.varint(bytes.length);
+      writer.bytes(bytes, bytes.length);
+    } else if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      writer.tag(LIST);
+      writer.varint(collection.size());
+      if (collection instanceof List && collection instanceof java.util.RandomAccess) {
+        List<?> list = (List<?>) collection;
+        for (int i = 0; i < list.size(); i++) write(list.get(i), writer);
+      } else {
+        for (Object element : collection) write(element, writer);
+      }
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      writer.tag(MAP);
+      writer.varint(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        write(entry.getKey(), writer);
+        write(entry.getValue(), writer);
+      }
+    } else if (value.getClass().isArray()) {
+      int length = Array.getLength(value);
+      writer.tag(LIST);
+      writer.varint(length);
+      for (int i = 0; i < length; i++) write(Array.get(value, i), writer);
+    } else {
+      writeObject(value, writer);
+    }
+  }
+
+  private void writeObject(Object value, Writer writer) {
+    ClassInfo info = info(value.getClass());
+    writer.tag(OBJECT);
+    try {
+      for (int i = 0; i < info.fields.length; i++) {
+        Object fieldValue = info.fields[i].get(value);
+        if (fieldValue == null) continue;
+        writer.string(info.names[i]);
+        write(fieldValue, writer);
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    writer.tag(END);
+  }
+
+  private Object read(int tag, Type type, Reader reader) {
+    switch (tag) {
+      case NULL:
+        return null;
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case INT:
+        return number((int) reader.varint(), type);
+      case LONG:
+        return number(reader.varint(), type);
+      case DOUBLE:
+        return number(Double.longBitsToDouble(reader.fixed(8)), type);
+      case FLOAT:
+        return number(Float.intBitsToFloat((int) reader.fixed(4)), type);
+      case STRING:
+      case STRING_REF:
+        return string(reader.string(tag), type);
+      case BYTES:
+        return reader.bytes((int) reader.varint());
+      case LIST:
+        return readList(type, reader);
+      case MAP:
+        return readMap(type, reader);
+      case OBJECT:
+        return readObject(type, reader);
+      default:
+        throw new IllegalArgumentException("Unknown tag " + tag);
+    }
+  }
+
+  private Object number(Number number, Type type) {
+    Class<?> raw = Types.rawType(type);
+    if (raw == Object.class || raw == Number.class) return number;
+    if (raw == Integer.class || raw == int.class) return number.intValue();
+    if (raw == Long.class || raw == long.class) return number.longValue();
+    if (raw == Double.class || raw == double.class) return number.doubleValue();
+    if (raw == Float.class || raw == float.class) return number.floatValue();
+    if (raw == Short.class || raw == short.class) return number.shortValue();
+    if (raw == Byte.class || raw == byte.class) return number.byteValue();
+    if (raw == Date.class) return new Date(number.longValue());
+    if (raw == String.class) return number.toString();
+    throw new IllegalArgumentException("Can not decode a number as " + type);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Object string(String string, Type type) {
+    Class<?> raw = Types.rawType(type);
+    if (raw == String.class || raw == Object.class) return string;
+    if (raw.isEnum()) return Enum.valueOf((Class<Enum>) raw, string);
+    if (raw == Character.class || raw == char.class) return string.charAt(0);
+    if (raw == BigDecimal.class || raw == Number.class) return new BigDecimal(string);
+    if (raw == BigInteger.class) return new BigInteger(string);
+    throw new IllegalArgumentException("Can not decode a string as " + type);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object readList(Type type, Reader reader) {
+    int size = (int) reader.varint();
+    Class<?> raw = Types.rawType(type);
+
+    if (raw.isArray()) {
+      Type componentType = Types.componentType(type);
+      Object array = Array.newInstance(raw.getComponentType(), size);
+      for (int i = 0; i < size; i++) {
+        Array.set(array, i, read(reader.tag(), componentType, reader));
+      }
+      return array;
+    }
+
+    Type elementType = Types.typeArgument(type, 0);
+    Collection<Object> collection;
+    if (raw.isAssignableFrom(ArrayList.class)) {
+      collection = new ArrayList<>(size);
+    } else if (raw.isAssignableFrom(LinkedHashSet.class)) {
+      collection = new LinkedHashSet<>(size * 4 / 3 + 1);
+    } else if (raw.isAssignableFrom(TreeSet.class)) {
+      collection = new TreeSet<>();
+    } else if (raw.isAssignableFrom(ArrayDeque.class)) {
+      collection = new ArrayDeque<>(size);
+    } else {
+      collection = (Collection<Object>) info(raw).newInstance();
+    }
+
+    for (int i = 0; i < size; i++) {
+      collection.add(read(reader.tag(), elementType, reader));
+    }
+    return collection;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Object readMap(Type type, Reader reader) {
+    int size = (int) reader.varint();
+    Class<?> raw = Types.rawType(type);
+    Type keyType = Types.typeArgument(type, 0), valueType = Types.typeArgument(type, 1);
+
+    Map<Object, Object> map;
+    if (raw.isAssignableFrom(LinkedHashMap.class)) {
+      map = new LinkedHashMap<>(size * 4 / 3 + 1);
+    } else if (raw.isAssignableFrom(TreeMap.class)) {
+      map = new TreeMap<>();
+    } else {
+      map = (Map<Object, Object>) info(raw).newInstance();
+    }
+
+    for (int i = 0; i < size; i++) {
+      Object key = read(reader.tag(), keyType, reader);
+      map.put(key, read(reader.tag(), valueType, reader));
+    }
+    return map;
+  }
+
+  private Object readObject(Type type, Reader reader) {
+    Class<?> raw = Types.rawType(type);
+    if (raw == Object.class || Map.class.isAssignableFrom(raw)) {
+      Map<String, Object> fields = new LinkedHashMap<>();
+      for (int tag = reader.tag(); tag != END; tag = reader.tag()) {
+        String name = reader.string(tag);
+        fields.put(name, read(reader.tag(), Object.class, reader));
+      }
+      return fields;
+    }
+
+    ClassInfo info = info(raw);
+    Map<TypeVariable<?>, Type> bindings = info.generic ? bindings(raw, type) : null;
+    Object object = info.newInstance();
+    try {
+      for (int tag = reader.tag(); tag != END; tag = reader.tag()) {
+        Integer index = info.indexes.get(reader.string(tag));
+        if (index == null) {
+          //A field which the class does not have anymore.
+          read(reader.tag(), Object.class, reader);
+          continue;
+        }
+
+        Field field = info.fields[index];
+        Type fieldType = bindings != null ? Types.resolve(info.types[index], bindings)
+            : info.types[index];
+        Object value = read(reader.tag(), fieldType, reader);
+        if (value != null || !field.getType().isPrimitive()) field.set(object, value);
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    return object;
+  }
+
+  /**
+   * Bind the type variables of the class and its superclasses to the arguments of the type.
+   */
+  private static Map<TypeVariable<?>, Type> bindings(Class<?> raw, Type type) {
+    Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+    if (type instanceof ParameterizedType) {
+      bind(raw, ((ParameterizedType) type).getActualTypeArguments(), bindings);
+    }
+
+    for (Class<?> current = raw; current != Object.class && current != null;
+        current = current.getSuperclass()) {
+      Type superclass = current.getGenericSuperclass();
+      if (superclass instanceof ParameterizedType) {
+        Type[] arguments = ((ParameterizedType) superclass).getActualTypeArguments().clone();
+        for (int i = 0; i < arguments.length; i++) {
+          arguments[i] = Types.resolve(arguments[i], bindings);
+        }
+        bind(current.getSuperclass(), arguments, bindings);
+      }
+    }
+    return bindings;
+  }
+
+  private static void bind(Class<?> raw, Type[] arguments, Map<TypeVariable<?>, Type> bindings) {
+    TypeVariable<?>[] variables = raw.getTypeParameters();
+    for (int i = 0; i < variables.length && i < arguments.length; i++) {
+      bindings.put(variables[i], arguments[i]);
+    }
+  }
+
+  private ClassInfo info(Class<?> type) {
+    ClassInfo info = classes.get(type);
+    if (info == null) {
+      info = new ClassInfo(type);
+      classes.put(type, info);
+    }
+    return info;
+  }
+
+  /**
+   * The serializable fields of a class, superclass fields first, and how to instantiate it.
+   */
+  private static final class ClassInfo {
+    private final Class<?> type;
+    private final Field[] fields;
+    private final String[] names;
+    private final Type[] types;
+    private final Map<String, Integer> indexes;
+    private final boolean generic;
+    private final Constructor<?> constructor;
+
+    ClassInfo(Class<?> type) {
+      this.type = type;
+
+      List<Class<?>> hierarchy = new ArrayList<>();
+      for (Class<?> current = type; current != Object.class && current != null;
+          current = current.getSuperclass()) {
+        hierarchy.add(0, current);
+      }
+
+      List<Field> fields = new ArrayList<>();
+      for (Class<?> current : hierarchy) {
+        for (Field field : current.getDeclaredFields()) {
+          int modifiers = field.getModifiers();
+          if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+              || field.isSynthetic()) {
+            continue;
+          }
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+
+      this.fields = fields.toArray(new Field[fields.size()]);
+      this.names = new String[this.fields.length];
+      this.types = new Type[this.fields.length];
+      this.indexes = new HashMap<>(this.fields.length * 4 / 3 + 1);
+      boolean generic = false;
+      for (int i = 0; i < this.fields.length; i++) {
+        names[i] = this.fields[i].getName();
+        types[i] = this.fields[i].getGenericType();
+        generic |= Types.hasTypeVariables(types[i]);
+        //Shadowed fields are serialized with the same name, the one of the subclass wins.
+        indexes.put(names[i], i);
+      }
+      this.generic = generic;
+
+      Constructor<?> constructor = null;
+      try {
+        constructor = type.getDeclaredConstructor();
+        constructor.setAccessible(true);
+      } catch (NoSuchMethodException | SecurityException ignore) {
+      }
+      this.constructor = constructor;
+    }
+
+    Object newInstance() {
+      try {
+        if (constructor != null) return constructor.newInstance();
+        return UnsafeAllocator.allocate(type);
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Unable to instantiate " + type.getName()
+            + ", add a no-arg constructor to it", e);
+      }
+    }
+  }
+
+  /**
+   * Instantiates classes without a no-arg constructor, as the JSON speakers do.
+   */
+  private static final class UnsafeAllocator {
+    private static final Object UNSAFE;
+    private static final Method ALLOCATE_INSTANCE;
+
+    static {
+      Object unsafe = null;
+      Method allocateInstance = null;
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field field = unsafeClass.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        unsafe = field.get(null);
+        allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+      } catch (Exception ignore) {
+      }
+      UNSAFE = unsafe;
+      ALLOCATE_INSTANCE = allocateInstance;
+    }
+
+    static Object allocate(Class<?> type) throws Exception {
+      if (ALLOCATE_INSTANCE == null || type.isInterface()
+          || Modifier.isAbstract(type.getModifiers())) {
+        throw new InstantiationException(type.getName());
+      }
+      return ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+    }
+  }
+
+  private static final class Writer {
+    private final Map<String, Integer> references = new HashMap<>();
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    void tag(int tag) {
+      ensure(1);
+      buffer[position++] = (byte) tag;
+    }
+
+    void varint(long value) {
+      long zigzag = (value << 1) ^ (value >> 63);
+      ensure(10);
+      while ((zigzag & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+        zigzag >>>= 7;
+      }
+      buffer[position++] = (byte) zigzag;
+    }
+
+    void fixed(long value, int length) {
+      ensure(length);
+      for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    void bytes(byte[] bytes, int length) {
+      ensure(length);
+      System.arraycopy(bytes, 0, buffer, position, length);
+      position += length;
+    }
+
+    void string(String string) {
+      boolean referenced = string.length() <= MAX_REFERENCED_LENGTH;
+      if (referenced) {
+        Integer reference = references.get(string);
+        if (reference != null) {
+          tag(STRING_REF);
+          varint(reference);
+          return;
+        }
+        references.put(string, references.size());
+      }
+
+      byte[] bytes = string.getBytes(UTF_8);
+      tag(STRING);
+      varint(bytes.length);
+      bytes(bytes, bytes.length);
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensure(int length) {
+      if (position + length <= buffer.length) return;
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+    }
+  }
+
+  private static final class Reader {
+    private final List<String> references = new ArrayList<>();
+    private final byte[] buffer;
+    private int position;
+
+    Reader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    int tag() {
+      require(1);
+      return buffer[position++];
+    }
+
+    long varint() {
+      long zigzag = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        require(1);
+        byte current = buffer[position++];
+        zigzag |= (long) (current & 0x7F) << shift;
+        if ((current & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+      throw new IllegalArgumentException("Malformed varint");
+    }
+
+    long fixed(int length) {
+      require(length);
+      long value = 0;
+      for (int i = 0; i < length; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    byte[] bytes(int length) {
+      require(length);
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    String string(int tag) {
+      if (tag == STRING_REF) {
+        int reference = (int) varint();
+        if (reference < 0 || reference >= references.size()) {
+          throw new IllegalArgumentException("Unknown string reference " + reference);
+        }
+        return references.get(reference);
+      }
+      if (tag != STRING) throw new IllegalArgumentException("Expected a string, found " + tag);
+
+      int length = (int) varint();
+      require(length);
+      String string = new String(buffer, position, length, UTF_8);
+      position += length;
+      if (string.length() <= MAX_REFERENCED_LENGTH) references.add(string);
+      return string;
+    }
+
+    private void require(int length) {
+      if (length < 0 || position + length > buffer.length) {
+        throw new IllegalArgumentException("Truncated value");
+      }
+    }
+  }
+}
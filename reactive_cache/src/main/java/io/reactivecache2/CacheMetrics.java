@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.Map;
+
+/**
+ * Receives the metrics of every provider key, set with {@link
+ * ReactiveCache.Builder#metrics(CacheMetrics, long, java.util.concurrent.TimeUnit)}.
+ */
+public interface CacheMetrics {
+
+  /**
+   * Called on every report interval with the metrics accumulated since the {@link ReactiveCache}
+   * was built, keyed by provider key.
+   */
+  void report(Map<String, ProviderMetrics> metrics);
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Snapshot of a group cached by a {@link ProviderGroup}, as listed by {@link
+ * ProviderGroup#cachedGroups()}.
+ */
+public final class CachedGroup {
+  private final String group;
+  private final long sizeBytes, expiresAt, accessedAt;
+
+  CachedGroup(String group, long sizeBytes, long expiresAt, long accessedAt) {
+    this.group = group;
+    this.sizeBytes = sizeBytes;
+    this.expiresAt = expiresAt;
+    this.accessedAt = accessedAt;
+  }
+
+  public String group() {
+    return group;
+  }
+
+  /**
+   * The bytes the record of the group takes on disk, or 0 if it is not on disk yet.
+   */
+  public long sizeBytes() {
+    return sizeBytes;
+  }
+
+  /**
+   * The time in milliseconds at which the group expires, Long.MAX_VALUE if it does not expire or
+   * 0 if unknown, as it was not written since the index was built.
+   */
+  public long expiresAt() {
+    return expiresAt;
+  }
+
+  /**
+   * The time in milliseconds at which the group was last written, or last read if the provider
+   * limits its groups.
+   */
+  public long accessedAt() {
+    return accessedAt;
+  }
+}
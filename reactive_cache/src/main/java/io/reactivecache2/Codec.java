@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.lang.reflect.Type;
+
+/**
+ * Serializes the records persisted by {@link ReactiveCache} to bytes, as an alternative to the
+ * JSON text of a {@link io.victoralbertos.jolyglot.JolyglotGenerics} speaker. Set it with {@link
+ * ReactiveCache.Builder#using(java.io.File, Codec)}, which writes the bytes of every record as a
+ * length-prefixed frame. {@link BinaryCodec} is the default implementation.
+ *
+ * <p>Implementations have to be thread safe.
+ */
+public interface Codec {
+
+  /**
+   * Encode the value, which may be null.
+   *
+   * @param value the value to encode.
+   * @param type the declared type of the value, which is less specific than the class of the
+   * value for the data of the records.
+   */
+  byte[] encode(Object value, Type type) throws RuntimeException;
+
+  /**
+   * Decode the bytes returned by {@link #encode(Object, Type)} as an instance of the type.
+   */
+  <T> T decode(byte[] bytes, Type type) throws RuntimeException;
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.rx_cache2.internal.Record;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.io.File;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Adapts a {@link Codec} to the {@link JolyglotGenerics} RxCache serializes its records with,
+ * writing every record as a {@link Frames frame}. A file which is not a frame of a codec fails to
+ * decode, which RxCache treats as if the record were not cached. The data RxCache deep copies is
+ * framed by the codec as well, but never compressed, as it is not written to disk.
+ */
+final class CodecJolyglot implements JolyglotGenerics {
+  private final Codec codec;
+  private final Compression compression;
+  private final int compressionThreshold;
+
+  /**
+   * @param compression null to not compress the records.
+   * @param compressionThreshold the length in bytes from which records are compressed.
+   */
+  CodecJolyglot(Codec codec, Compression compression, int compressionThreshold) {
+    this.codec = codec;
+    this.compression = compression;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override public String toJson(Object src) {
+    return toJson(src, src != null ? src.getClass() : Object.class);
+  }
+
+  @Override public String toJson(Object src, Type typeOfSrc) {
+    byte[] record = codec.encode(src, typeOfSrc);
+    byte[] compressed = src instanceof Record ?
+        Frames.compress(record, compression, compressionThreshold) : null;
+    return compressed != null ? Frames.write(Frames.CODEC, compressed, true)
+        : Frames.write(Frames.CODEC, record, false);
+  }
+
+  @Override public <T> T fromJson(String json, Class<T> classOfT) throws RuntimeException {
+    return fromJson(json, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(String json, Type type) throws RuntimeException {
+    return decode(Frames.chars(json), type);
+  }
+
+  @Override public <T> T fromJson(File file, Class<T> classOfT) throws RuntimeException {
+    return fromJson(file, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(File file, Type typeOfT) throws RuntimeException {
+    return decode(Frames.chars(file, false), typeOfT);
+  }
+
+  @Override public GenericArrayType arrayOf(Type componentType) {
+    return Types.arrayOf(componentType);
+  }
+
+  @Override public ParameterizedType newParameterizedType(Type rawType, Type... typeArguments) {
+    return Types.newParameterizedType(rawType, typeArguments);
+  }
+
+  private <T> T decode(Frames.Chars chars, Type type) {
+    byte[] record = Frames.read(chars, Frames.CODEC, compression);
+    if (record == null) throw new IllegalArgumentException("Not a frame");
+    return codec.decode(record, type);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.rx_cache2.internal.Record;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.io.File;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+/**
+ * Compresses the JSON of a {@link JolyglotGenerics} speaker, writing it as a {@link Frames frame}
+ * once it reaches the threshold and as plain JSON otherwise. Plain JSON is read by the speaker
+ * straight away, so records written before enabling compression are still read.
+ *
+ * <p>Only the records RxCache persists are compressed. RxCache also serializes the data it hands
+ * out from memory to deep copy it, which is never written to disk and so is left as plain JSON.
+ */
+final class CompressedJolyglot implements JolyglotGenerics {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final JolyglotGenerics jolyglot;
+  private final Compression compression;
+  private final int compressionThreshold;
+
+  /**
+   * @param compressionThreshold the length in bytes from which records are compressed.
+   */
+  CompressedJolyglot(JolyglotGenerics jolyglot, Compression compression,
+      int compressionThreshold) {
+    this.jolyglot = jolyglot;
+    this.compression = compression;
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override public String toJson(Object src) {
+    String json = jolyglot.toJson(src);
+    return src instanceof Record ? compress(json) : json;
+  }
+
+  @Override public String toJson(Object src, Type typeOfSrc) {
+    String json = jolyglot.toJson(src, typeOfSrc);
+    return src instanceof Record ? compress(json) : json;
+  }
+
+  @Override public <T> T fromJson(String json, Class<T> classOfT) throws RuntimeException {
+    return fromJson(json, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(String json, Type type) throws RuntimeException {
+    byte[] decompressed = Frames.read(Frames.chars(json), Frames.TEXT, compression);
+    return jolyglot.fromJson(decompressed != null ? new String(decompressed, UTF_8) : json, type);
+  }
+
+  @Override public <T> T fromJson(File file, Class<T> classOfT) throws RuntimeException {
+    return fromJson(file, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(File file, Type typeOfT) throws RuntimeException {
+    //Let the speaker read plain JSON from the file, instead of reading it as a String.
+    if (!Frames.isFrame(file, Frames.TEXT)) return jolyglot.fromJson(file, typeOfT);
+
+    byte[] decompressed = Frames.read(Frames.chars(file, false), Frames.TEXT, compression);
+    return jolyglot.fromJson(new String(decompressed, UTF_8), typeOfT);
+  }
+
+  @Override public GenericArrayType arrayOf(Type componentType) {
+    return jolyglot.arrayOf(componentType);
+  }
+
+  @Override public ParameterizedType newParameterizedType(Type rawType, Type... typeArguments) {
+    return jolyglot.newParameterizedType(rawType, typeArguments);
+  }
+
+  /**
+   * Every char takes at least one byte, so JSON shorter than the threshold is not encoded at all.
+   */
+  private String compress(String json) {
+    if (json == null || json.length() < compressionThreshold) return json;
+
+    byte[] compressed = Frames.compress(json.getBytes(UTF_8), compression, compressionThreshold);
+    return compressed != null ? Frames.write(Frames.TEXT, compressed, true) : json;
+  }
+}
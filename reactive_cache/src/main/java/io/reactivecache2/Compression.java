@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Compresses the records persisted by {@link ReactiveCache}, set with {@link
+ * ReactiveCache.Builder#compress(Compression, int)}. {@link DeflateCompression} is the default
+ * implementation.
+ *
+ * <p>Implementations have to be thread safe.
+ */
+public interface Compression {
+
+  /**
+   * Compress the bytes of a record.
+   */
+  byte[] compress(byte[] bytes) throws RuntimeException;
+
+  /**
+   * Decompress the bytes returned by {@link #compress(byte[])}.
+   */
+  byte[] decompress(byte[] bytes) throws RuntimeException;
+}
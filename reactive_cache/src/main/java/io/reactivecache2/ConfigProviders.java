@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.Reply;
+import io.rx_cache2.Source;
+
+/**
+ * Copies of the configurations built by the providers, for the layers in front of RxCache which
+ * need to change some of their values.
+ */
+final class ConfigProviders {
+  private ConfigProviders() {
+  }
+
+  static ConfigProvider withLoader(ConfigProvider configProvider, Observable<?> loader,
+      boolean requiredDetailedResponse) {
+    return new ConfigProvider(configProvider.getProviderKey(),
+        configProvider.useExpiredDataIfNotLoaderAvailable(), configProvider.getLifeTimeMillis(),
+        requiredDetailedResponse, configProvider.isExpirable(), configProvider.isEncrypted(),
+        configProvider.getDynamicKey(), configProvider.getDynamicKeyGroup(), loader,
+        configProvider.evictProvider());
+  }
+
+  /**
+   * A configuration which evicts only the record of the given one.
+   */
+  static ConfigProvider evicting(ConfigProvider configProvider) {
+    return new ConfigProvider(configProvider.getProviderKey(), false, null, false,
+        configProvider.isExpirable(), configProvider.isEncrypted(), configProvider.getDynamicKey(),
+        configProvider.getDynamicKeyGroup(), Observable.error(new RuntimeException()),
+        new EvictDynamicKeyGroup(true));
+  }
+
+  /**
+   * The data as RxCache would emit it for the configuration, i.e. within a {@link Reply} from the
+   * source if it requires a detailed response.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Observable<T> reply(ConfigProvider configProvider, Object data, Source source) {
+    //The providers build the configuration for T being the type of the data, or its Reply.
+    Object reply = configProvider.requiredDetailedResponse() ?
+        new Reply<>(data, source, configProvider.isEncrypted()) : data;
+    return Observable.just((T) reply);
+  }
+}
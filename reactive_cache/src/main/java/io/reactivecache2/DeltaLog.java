@@ -0,0 +1,354 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.SingleTransformer;
+import io.reactivex.schedulers.Schedulers;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKey;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.EvictProvider;
+import io.rx_cache2.RxCacheException;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of the changes performed by {@link ActionsList} on the list of a key, so a
+ * change persists only the elements it touches instead of rewriting the whole list. Every delta
+ * is a record holding its elements plus an entry in the index record of the log, and both live
+ * apart from the record of the list, which remains the base snapshot the log applies to. Once the
+ * log reaches the compaction threshold, it is folded into the base snapshot in background while
+ * holding the claim of the version of the list, so no change is appended meanwhile. The merged
+ * list is written first as a record of the log and committed by an index pointing to it, then as
+ * the base snapshot, and only then the log is discarded, so a failure at any step leaves either
+ * the deltas or the merged list to apply on the base snapshot.
+ *
+ * <p>The log only applies to the base snapshot it was written against: it is discarded every
+ * time the list is replaced, evicted or retrieved from the loader, and ignored while the list is
+ * not cached. Its records are written with the life time and the expirable setting of the base
+ * snapshot, so they do not outlive it.
+ *
+ * <p>The list replayed by a change is kept along with the version of the list, so the next change
+ * neither reads the base snapshot nor replays the log. It is dropped once the list is written or
+ * evicted apart from the log, and held softly so it is released under memory pressure. For a list
+ * with a life cache it is only kept once the log has been compacted, as until then the time its
+ * base snapshot expires is unknown.
+ */
+final class DeltaLog<T> {
+  private static final String LOG = "$log", INDEX = "index", MERGED = "merged";
+  private static final EvictProvider EVICT = new EvictProvider(true);
+  private static final EvictDynamicKey EVICT_GROUP = new EvictDynamicKey(true);
+  private static final EvictDynamicKeyGroup KEEP = new EvictDynamicKeyGroup(false);
+  private static final EvictDynamicKeyGroup REPLACE = new EvictDynamicKeyGroup(true);
+
+  private final ProcessorProviders processorProviders;
+  private final Versions versions;
+  private final String key, logKey;
+  private final boolean grouped, encrypted, expirable;
+  private final Long lifeTime;
+  private final int compactionThreshold;
+  private final ExceptionAdapter exceptionAdapter;
+
+  /**
+   * @param grouped whether the lists are the ones of the groups of a {@link ProviderGroupList}.
+   * @param lifeTime the life time of the base snapshot, or null if it does not expire.
+   */
+  DeltaLog(ProcessorProviders processorProviders, Versions versions, String key, boolean grouped,
+      boolean encrypted, boolean expirable, Long lifeTime, int compactionThreshold) {
+    this.processorProviders = processorProviders;
+    this.versions = versions;
+    this.key = key;
+    this.logKey = key + LOG;
+    this.grouped = grouped;
+    this.encrypted = encrypted;
+    this.expirable = expirable;
+    this.lifeTime = lifeTime;
+    this.compactionThreshold = compactionThreshold;
+    this.exceptionAdapter = new ExceptionAdapter();
+  }
+
+  /**
+   * Apply the deltas of the group to its base snapshot.
+   */
+  Single<List<T>> apply(final String group, final List<T> base) {
+    return index(group).flatMap(descriptors -> descriptors.isEmpty() ? Single.just(base) :
+        replay(group, descriptors, base));
+  }
+
+  /**
+   * Perform the edits on the list of the group, appending their deltas to the log if the list is
+   * cached or writing it as the base snapshot otherwise. The deltas are committed all together by
+   * a single write of the index, once the records with their elements have been written.
+   *
+   * @param base the base snapshot of the group, without applying its deltas.
+   * @param replace writes the base snapshot of the group, discarding its log.
+   * @param rebase writes the base snapshot of the group, keeping its log.
+   */
+  @SuppressWarnings("unchecked")
+  Completable edit(final String group, final List<ActionsList.Edit<T>> edits,
+      final Maybe<List<T>> base, final SingleTransformer<List<T>, List<T>> replace,
+      final SingleTransformer<List<T>, List<T>> rebase) {
+    return Completable.defer(() -> {
+      final Versions.Version version = version(group);
+      final long generation = version.generation();
+
+      Snapshot<T> snapshot = (Snapshot<T>) version.kept();
+      List<T> replayed = snapshot != null ? snapshot.elements() : null;
+      if (replayed != null) {
+        return append(group, edits, replayed, snapshot.descriptors, snapshot.expiresAt, version,
+            generation, rebase);
+      }
+
+      return base.toObservable().toList().flatMapCompletable(snapshots -> {
+        if (snapshots.isEmpty()) {
+          List<T> elements = new ArrayList<>();
+          perform(edits, elements);
+          return Single.just(elements).compose(replace).toCompletable();
+        }
+
+        final long expiresAt = lifeTime == null ? Long.MAX_VALUE : Long.MIN_VALUE;
+        return index(group).flatMapCompletable(descriptors ->
+            replay(group, descriptors, snapshots.get(0)).flatMapCompletable(elements ->
+                append(group, edits, elements, descriptors, expiresAt, version, generation,
+                    rebase)));
+      });
+    });
+  }
+
+  /**
+   * Perform the edits on the elements replayed from the log and append their deltas to it,
+   * keeping the elements for the next change once committed.
+   */
+  private Completable append(final String group, List<ActionsList.Edit<T>> edits,
+      final List<T> elements, List<String> descriptors, final long expiresAt,
+      final Versions.Version version, final long generation,
+      final SingleTransformer<List<T>, List<T>> rebase) {
+    List<ListDelta<T>> deltas = perform(edits, elements);
+
+    final List<String> index = new ArrayList<>(descriptors);
+    Completable append = Completable.complete();
+    for (ListDelta<T> delta : deltas) {
+      if (delta.hasElements()) {
+        append = append.andThen(write(group, String.valueOf(index.size()), delta.elements()));
+      }
+      index.add(delta.descriptor());
+    }
+    if (!deltas.isEmpty()) append = append.andThen(write(group, INDEX, index));
+
+    return append.doOnComplete(() -> {
+      //The claim of the version is held by the edits until the change completes.
+      version.keep(new Snapshot<>(elements, index, expiresAt), version.released(), generation);
+      if (index.size() < compactionThreshold) return;
+
+      compact(group, new ArrayList<>(elements), index, version, generation, rebase)
+          .subscribeOn(Schedulers.io())
+          .subscribe(() -> {}, error -> {});
+    });
+  }
+
+  /**
+   * Fold the log into the base snapshot once the claim of the version is taken. Skipped if another
+   * change has been appended meanwhile, which compacts the log later on, or if the list has been
+   * written or evicted apart from the log.
+   */
+  private Completable compact(final String group, final List<T> merged, final List<String> index,
+      final Versions.Version version, final long generation,
+      final SingleTransformer<List<T>, List<T>> rebase) {
+    return Completable.defer(() -> {
+      final long read = version.current();
+      if (Versions.Version.isClaimed(read)) {
+        return Completable.timer(1, TimeUnit.MILLISECONDS)
+            .andThen(compact(group, merged, index, version, generation, rebase));
+      }
+      if (!version.claim(read)) {
+        return compact(group, merged, index, version, generation, rebase);
+      }
+
+      return index(group)
+          .flatMapCompletable(current -> current.equals(index) && unchanged(version, generation) ?
+              fold(group, merged, version, generation, rebase) : Completable.complete())
+          .doFinally(() -> version.release(read));
+    });
+  }
+
+  private Completable fold(final String group, final List<T> merged,
+      final Versions.Version version, final long generation,
+      final SingleTransformer<List<T>, List<T>> rebase) {
+    final long writtenAt = System.currentTimeMillis();
+    return write(group, MERGED, merged)
+        .andThen(write(group, INDEX, Collections.singletonList(MERGED)))
+        .andThen(Completable.defer(() -> unchanged(version, generation) ?
+            Single.just(merged).compose(rebase).toCompletable()
+                .andThen(evict(group, EVICT_GROUP))
+                .doOnComplete(() -> {
+                  long expiresAt = lifeTime == null ? Long.MAX_VALUE : writtenAt + lifeTime;
+                  version.keep(new Snapshot<>(merged, Collections.<String>emptyList(), expiresAt),
+                      version.released(), generation);
+                }) :
+            Completable.complete()));
+  }
+
+  private boolean unchanged(Versions.Version version, long generation) {
+    return version.generation() == generation;
+  }
+
+  private List<ListDelta<T>> perform(List<ActionsList.Edit<T>> edits, List<T> elements) {
+    List<ListDelta<T>> deltas = new ArrayList<>(edits.size());
+    for (ActionsList.Edit<T> edit : edits) {
+      ListDelta<T> delta = edit.call(elements);
+      if (delta == null) continue;
+      delta.applyTo(elements);
+      deltas.add(delta);
+    }
+    return deltas;
+  }
+
+  /**
+   * Discard the deltas of the group.
+   */
+  Completable discard(final String group) {
+    return Completable.defer(() -> {
+      version(group).invalidate();
+      return evict(group, EVICT_GROUP);
+    });
+  }
+
+  /**
+   * Discard the deltas of every group.
+   */
+  Completable discardAll() {
+    return Completable.defer(() -> {
+      versions.invalidateStartingWith(StateKeys.ofGroups(key));
+      return evict("", EVICT);
+    });
+  }
+
+  /**
+   * Whether the provider key is the one of the records of a log rather than of a list.
+   */
+  static boolean isLog(String providerKey) {
+    return providerKey.endsWith(LOG);
+  }
+
+  /**
+   * The configuration which evicts the log of the group of the list, as its base snapshot has been
+   * evicted without the list knowing it.
+   */
+  static ConfigProvider evicting(String key, String group) {
+    String logKey = key + LOG;
+    return new ConfigProvider(logKey, null, null, false, false, false, logKey + "$" + group, INDEX,
+        Observable.error(new RuntimeException()), EVICT_GROUP);
+  }
+
+  private Versions.Version version(String group) {
+    return versions.of(grouped ? StateKeys.of(key, group) : StateKeys.of(key));
+  }
+
+  /**
+   * Apply the deltas of the index to the base snapshot, or to the merged list if the index starts
+   * with it, as the log was being compacted.
+   */
+  private Single<List<T>> replay(final String group, final List<String> descriptors,
+      final List<T> base) {
+    final boolean compacting = descriptors.get(0).equals(MERGED);
+    final int first = compacting ? 1 : 0;
+
+    return Observable.range(0, descriptors.size())
+        .concatMap(position -> position < first ?
+            this.<List<T>>read(group, MERGED).toObservable() :
+            ListDelta.hasElements(descriptors.get(position)) ?
+                this.<List<T>>read(group, String.valueOf(position)).toObservable() :
+                Observable.just(Collections.<T>emptyList()))
+        .toList()
+        .map(payloads -> {
+          if (payloads.size() != descriptors.size()) {
+            throw new RxCacheException("The delta log of " + key + " is missing records");
+          }
+
+          List<T> elements = compacting ? payloads.get(0) : base;
+          for (int position = first; position < descriptors.size(); position++) {
+            ListDelta.parse(descriptors.get(position), payloads.get(position)).applyTo(elements);
+          }
+          return elements;
+        });
+  }
+
+  private Single<List<String>> index(String group) {
+    return this.<List<String>>read(group, INDEX).toSingle(Collections.<String>emptyList());
+  }
+
+  /**
+   * Read the record regardless of its life time, which only applies to evict it along with the
+   * base snapshot.
+   */
+  private <R> Maybe<R> read(final String group, final String record) {
+    return Maybe.defer(() -> processorProviders
+        .<R>process(getConfigProvider(Observable.<R>empty(), group, record, KEEP, null))
+        .singleElement());
+  }
+
+  private Completable write(final String group, final String record, final Object data) {
+    return Completable.defer(() -> Completable.fromObservable(processorProviders
+        .process(getConfigProvider(Observable.just(data), group, record, REPLACE, lifeTime))));
+  }
+
+  private Completable evict(final String group, final EvictProvider evict) {
+    return Completable.defer(() -> Completable.fromObservable(processorProviders
+        .process(getConfigProvider(Observable.error(new RuntimeException()), group, INDEX,
+            evict, null)))
+        .onErrorResumeNext(exceptionAdapter::completeOnRxCacheLoaderError));
+  }
+
+  private ConfigProvider getConfigProvider(Observable<?> loader, String group, String record,
+      EvictProvider evict, Long lifeTime) {
+    return new ConfigProvider(logKey, null, lifeTime, false, expirable, encrypted,
+        logKey + "$" + group, record, loader, evict);
+  }
+
+  /**
+   * The list replayed by the last change along with the index of the log it was replayed from.
+   */
+  private static final class Snapshot<T> {
+    private final SoftReference<List<T>> elements;
+    private final List<String> descriptors;
+    private final long expiresAt;
+
+    private Snapshot(List<T> elements, List<String> descriptors, long expiresAt) {
+      this.elements = new SoftReference<>(elements);
+      this.descriptors = descriptors;
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * A copy of the list to perform the next change on, or null if it has been released or its
+     * base snapshot may have expired.
+     */
+    private List<T> elements() {
+      List<T> elements = this.elements.get();
+      return elements != null && System.currentTimeMillis() < expiresAt ?
+          new ArrayList<>(elements) : null;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layer right in front of the ProcessorProviders of RxCache which keeps an index with the length
+ * of every file in the cache directory, so the disk usage is known without walking the directory.
+ *
+ * <p>The directory is walked once, when the first call completes, as RxCache holds every call
+ * until its startup tasks have evicted the expired records. From then on only the files of the
+ * records a call may have changed are checked once it completes: the file written or evicted, the
+ * files in the scope of the eviction, and the file of a read which called the loader, as RxCache
+ * drops expired records on read. RxCache also evicts records on its own once the disk cache size
+ * is exceeded, so the directory is walked again whenever the usage exceeds it.
+ *
+ * <p>When metrics are recorded, the length of the file of every record persisted is reported as
+ * the bytes written for its provider key.
+ */
+final class DiskUsage implements ProcessorProviders {
+  private static final long RESCAN_DELAY_SECONDS = 1;
+  private final ProcessorProviders processorProviders;
+  private final File cacheDirectory;
+  private final long maxBytes;
+  private final Scheduler scheduler;
+  private final Metrics metrics;
+  private final NavigableMap<String, Long> lengths;
+  private volatile long bytes;
+  private boolean indexed, startupDone, rescanning;
+
+  /**
+   * @param metrics null if metrics are not recorded.
+   */
+  DiskUsage(ProcessorProviders processorProviders, File cacheDirectory, long maxBytes,
+      Scheduler scheduler, Metrics metrics) {
+    this.processorProviders = processorProviders;
+    this.cacheDirectory = cacheDirectory;
+    this.maxBytes = maxBytes;
+    this.scheduler = scheduler;
+    this.metrics = metrics;
+    this.lengths = new TreeMap<>();
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      //Whether the loader was subscribed, and whether it emitted the data RxCache persists.
+      final boolean[] loaded = new boolean[2];
+      final Observable<?> loader = configProvider.getLoaderObservable();
+      ConfigProvider reporting = ConfigProviders.withLoader(configProvider,
+          Observable.defer(() -> {
+            loaded[0] = true;
+            return loader.doOnNext(data -> loaded[1] = true);
+          }), configProvider.requiredDetailedResponse());
+
+      if (configProvider.evictProvider().evict()) {
+        return processorProviders.<T>process(reporting)
+            .doFinally(() -> {
+              evicted(configProvider);
+              if (loaded[1]) written(configProvider);
+            });
+      }
+
+      return processorProviders.<T>process(reporting)
+          .doFinally(() -> {
+            read(configProvider, loaded[0]);
+            if (loaded[1]) written(configProvider);
+          });
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return processorProviders.evictAll()
+        .doFinally(this::rescan);
+  }
+
+  /**
+   * The bytes taken by the files in the cache directory.
+   */
+  long bytes() {
+    synchronized (this) {
+      if (!indexed) index();
+    }
+    return bytes;
+  }
+
+  /**
+   * The bytes taken by the file in the cache directory, or 0 if there is no such file.
+   */
+  synchronized long length(String file) {
+    if (!indexed) index();
+    Long length = lengths.get(file);
+    return length != null ? length : 0;
+  }
+
+  /**
+   * RxCache has persisted the data emitted by the loader of the call.
+   */
+  private void written(ConfigProvider configProvider) {
+    String providerKey = configProvider.getProviderKey();
+    //The internal records kept for lists and groups are not counted.
+    if (metrics == null || DeltaLog.isLog(providerKey)
+        || !providerKey.equals(configProvider.getDynamicKey())) {
+      return;
+    }
+
+    long length = new File(cacheDirectory, RecordKeys.fileOf(configProvider)).length();
+    metrics.written(providerKey, length);
+  }
+
+  private void evicted(ConfigProvider configProvider) {
+    String evicted = RecordKeys.evictedFiles(configProvider);
+    synchronized (this) {
+      if (!started()) return;
+
+      List<String> files = new ArrayList<>(
+          lengths.subMap(evicted, true, evicted + Character.MAX_VALUE, true).keySet());
+      for (String file : files) {
+        check(file);
+      }
+      check(RecordKeys.fileOf(configProvider));
+    }
+    rescanIfExceeded();
+  }
+
+  private void read(ConfigProvider configProvider, boolean loaded) {
+    synchronized (this) {
+      if (!started() || !loaded) return;
+      check(RecordKeys.fileOf(configProvider));
+    }
+    rescanIfExceeded();
+  }
+
+  /**
+   * Index the directory once RxCache has run its startup tasks, which is by the time the first
+   * call completes. Return whether it was indexed before, so the call has to be checked.
+   */
+  private boolean started() {
+    if (startupDone) return true;
+
+    startupDone = true;
+    index();
+    return false;
+  }
+
+  private void check(String file) {
+    long length = new File(cacheDirectory, file).length();
+    Long previous = length > 0 ? lengths.put(file, length) : lengths.remove(file);
+    bytes += length - (previous != null ? previous : 0);
+  }
+
+  private void index() {
+    lengths.clear();
+    long total = 0;
+    File[] files = cacheDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!file.isFile()) continue;
+        lengths.put(file.getName(), file.length());
+        total += file.length();
+      }
+    }
+    bytes = total;
+    indexed = true;
+  }
+
+  private synchronized void rescan() {
+    index();
+  }
+
+  /**
+   * RxCache evicts records on its own in the background once the disk cache size is exceeded, so
+   * walk the directory again shortly afterwards to catch up with them. While the usage stays
+   * above the disk cache size, the directory is walked at most once per delay.
+   */
+  private void rescanIfExceeded() {
+    synchronized (this) {
+      if (bytes <= maxBytes || rescanning) return;
+      rescanning = true;
+    }
+
+    scheduler.scheduleDirect(() -> {
+      synchronized (this) {
+        rescanning = false;
+        index();
+      }
+    }, RESCAN_DELAY_SECONDS, TimeUnit.SECONDS);
+  }
+}
@@ -17,6 +17,7 @@
 package io.reactivecache2;
 
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.exceptions.CompositeException;
@@ -38,6 +39,10 @@ final class ExceptionAdapter {
     return Completable.error(error);
   }
 
+  <E> Maybe<E> emptyOnRxCacheLoaderError(Throwable error) {
+    return completeOnRxCacheLoaderError(error).toMaybe();
+  }
+
   <E> Observable<E> placeholderLoader() {
     return Observable.error(new PlaceHolderLoader());
   }
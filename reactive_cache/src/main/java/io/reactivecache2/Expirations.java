@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layer in front of the ProcessorProviders of RxCache which evicts the records with a life time
+ * close to their deadline, instead of leaving them on disk until RxCache reads them or runs its
+ * evicting task. The deadline of every record written or loaded through it is indexed in a
+ * {@link TimerWheel}, and a single timer is set for the next bucket due.
+ *
+ * <p>Records written before the {@link ReactiveCache} was built are not indexed, so they are still
+ * evicted by RxCache. Records are not evicted when the configuration asks to use expired data,
+ * as they may still be dispatched once expired. Once a record is evicted, the {@link Listener} is
+ * notified so the state kept about it apart from RxCache is dropped too.
+ */
+final class Expirations implements ProcessorProviders {
+  private final ProcessorProviders processorProviders;
+  private final Scheduler scheduler, ioScheduler;
+  private final Listener listener;
+  private final TimerWheel timerWheel;
+  private final boolean useExpiredData;
+  private final Map<String, ConfigProvider> evictions;
+  private final ExceptionAdapter exceptionAdapter;
+  private Disposable timer;
+  private long timerAt;
+
+  /**
+   * @param useExpiredData whether expired records are dispatched when the configuration does not
+   * say otherwise.
+   * @param scheduler the scheduler of the timer.
+   * @param ioScheduler the scheduler the records are evicted on.
+   */
+  Expirations(ProcessorProviders processorProviders, boolean useExpiredData,
+      Scheduler scheduler, Scheduler ioScheduler, Listener listener) {
+    this.processorProviders = processorProviders;
+    this.useExpiredData = useExpiredData;
+    this.scheduler = scheduler;
+    this.ioScheduler = ioScheduler;
+    this.listener = listener;
+    this.timerWheel = new TimerWheel(scheduler.now(TimeUnit.MILLISECONDS));
+    this.evictions = new HashMap<>();
+    this.exceptionAdapter = new ExceptionAdapter();
+    this.timerAt = Long.MAX_VALUE;
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      Boolean useExpiredData = configProvider.useExpiredDataIfNotLoaderAvailable();
+      final boolean expires = configProvider.getLifeTimeMillis() != null
+          && !(useExpiredData != null ? useExpiredData : this.useExpiredData);
+
+      if (configProvider.evictProvider().evict()) {
+        cancel(configProvider);
+        return processorProviders.<T>process(configProvider)
+            .doOnNext(data -> {
+              if (expires) schedule(configProvider);
+            });
+      }
+
+      if (!expires) return processorProviders.<T>process(configProvider);
+
+      final boolean[] loaded = new boolean[1];
+      final Observable<?> loader = configProvider.getLoaderObservable();
+      ConfigProvider reporting = ConfigProviders.withLoader(configProvider,
+          loader.doOnNext(data -> loaded[0] = true), configProvider.requiredDetailedResponse());
+
+      return processorProviders.<T>process(reporting)
+          .doOnNext(data -> {
+            if (loaded[0]) schedule(configProvider);
+          });
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return Observable.defer(() -> {
+      synchronized (this) {
+        for (String key : evictions.keySet()) {
+          timerWheel.cancel(key);
+        }
+        evictions.clear();
+      }
+      return processorProviders.evictAll();
+    });
+  }
+
+  private synchronized void schedule(ConfigProvider configProvider) {
+    String key = RecordKeys.of(configProvider);
+    long deadline = scheduler.now(TimeUnit.MILLISECONDS) + configProvider.getLifeTimeMillis();
+    timerWheel.schedule(key, deadline);
+    //Keep the eviction instead of the configuration, which holds the data in its loader.
+    evictions.put(key, ConfigProviders.evicting(configProvider));
+    setTimer();
+  }
+
+  /**
+   * Unschedule the records the configuration evicts.
+   */
+  private synchronized void cancel(ConfigProvider configProvider) {
+    String evicted = RecordKeys.evicted(configProvider);
+    if (configProvider.evictProvider() instanceof EvictDynamicKeyGroup) {
+      timerWheel.cancel(evicted);
+      evictions.remove(evicted);
+      return;
+    }
+
+    for (String key : timerWheel.keysStartingWith(evicted)) {
+      timerWheel.cancel(key);
+      evictions.remove(key);
+    }
+  }
+
+  private void expire() {
+    List<ConfigProvider> expired = new ArrayList<>();
+    synchronized (this) {
+      timer = null;
+      timerAt = Long.MAX_VALUE;
+      for (String key : timerWheel.advance(scheduler.now(TimeUnit.MILLISECONDS))) {
+        expired.add(evictions.remove(key));
+      }
+      setTimer();
+    }
+
+    //A record written again meanwhile may be evicted too, which only costs a miss.
+    for (final ConfigProvider eviction : expired) {
+      Completable.fromObservable(processorProviders.process(eviction))
+          .onErrorResumeNext(exceptionAdapter::completeOnRxCacheLoaderError)
+          .doOnComplete(() -> listener.expired(eviction))
+          .onErrorComplete()
+          .subscribeOn(ioScheduler)
+          .subscribe();
+    }
+  }
+
+  /**
+   * Set the timer for the next bucket due, unless it is already set earlier.
+   */
+  private void setTimer() {
+    long next = timerWheel.nextAdvance();
+    if (next >= timerAt) return;
+
+    if (timer != null) timer.dispose();
+    timerAt = next;
+    long delay = Math.max(0, next - scheduler.now(TimeUnit.MILLISECONDS));
+    timer = scheduler.scheduleDirect(this::expire, delay, TimeUnit.MILLISECONDS);
+  }
+
+  interface Listener {
+    /**
+     * The record the configuration evicts has been evicted on its deadline.
+     */
+    void expired(ConfigProvider eviction);
+  }
+}
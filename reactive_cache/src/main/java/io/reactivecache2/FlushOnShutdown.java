@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+
+/**
+ * Runs a flush when the JVM shuts down, with a hook registered only while something is pending to
+ * be flushed, so the runtime does not hold what the flush reaches once everything is persisted.
+ */
+final class FlushOnShutdown {
+  private final Completable flush;
+  private Thread hook;
+  private int pending;
+
+  FlushOnShutdown(Completable flush) {
+    this.flush = flush;
+  }
+
+  /**
+   * Something is pending to be flushed, which holds the hook until {@link #flushed()} is called
+   * for it.
+   */
+  synchronized void pending() {
+    if (pending++ > 0) return;
+
+    Thread hook = new Thread(() -> flush.onErrorComplete().blockingAwait());
+    try {
+      Runtime.getRuntime().addShutdownHook(hook);
+      this.hook = hook;
+    } catch (IllegalStateException ignore) {
+      //The JVM is already shutting down.
+    }
+  }
+
+  /**
+   * Something pending has been flushed, which unregisters the hook once nothing else is pending.
+   */
+  synchronized void flushed() {
+    if (pending == 0 || --pending > 0 || hook == null) return;
+
+    try {
+      Runtime.getRuntime().removeShutdownHook(hook);
+    } catch (IllegalStateException ignore) {
+      //The JVM is already shutting down, so the hook runs anyway.
+    }
+    hook = null;
+  }
+}
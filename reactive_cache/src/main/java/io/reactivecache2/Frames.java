@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Frames the records persisted by {@link CodecJolyglot} and {@link CompressedJolyglot}.
+ *
+ * <p>A frame is a header with a magic number, the kind of the frame, the format of its payload
+ * and the length of the payload, followed by the payload. RxCache writes records as text with
+ * the default charset, so the bytes of the frame are packed 7 bits per char, which every charset
+ * writes as a single byte. A truncated frame fails to decode, which RxCache treats as if the
+ * record were not cached.
+ */
+final class Frames {
+  static final byte CODEC = 'C', TEXT = 'T';
+  private static final byte MAGIC = 'R', PLAIN = 1, COMPRESSED = 2;
+  //7 bytes, which are packed exactly into 8 chars so the payload starts at a char boundary.
+  private static final int HEADER_BYTES = 7, HEADER_CHARS = 8;
+
+  private Frames() {
+  }
+
+  /**
+   * The payload compressed, or null if it does not reach the threshold or compression does not
+   * shrink it.
+   *
+   * @param compression null to not compress.
+   */
+  static byte[] compress(byte[] payload, Compression compression, int threshold) {
+    if (compression == null || payload.length < threshold) return null;
+
+    byte[] compressed = compression.compress(payload);
+    return compressed.length < payload.length ? compressed : null;
+  }
+
+  static String write(byte kind, byte[] payload, boolean compressed) {
+    byte format = compressed ? COMPRESSED : PLAIN;
+    byte[] header = {MAGIC, kind, format, (byte) (payload.length >>> 24),
+        (byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length};
+
+    char[] chars = new char[HEADER_CHARS + packedLength(payload.length)];
+    pack(header, chars, 0);
+    pack(payload, chars, HEADER_CHARS);
+    return new String(chars);
+  }
+
+  /**
+   * The payload of the frame, decompressed, or null if the chars are not a frame of the kind.
+   *
+   * @param compression null if the records are not compressed.
+   */
+  static byte[] read(Chars chars, byte kind, Compression compression) {
+    if (chars.length() < HEADER_CHARS) return null;
+
+    byte[] header = new byte[HEADER_BYTES];
+    if (!unpack(chars, 0, HEADER_CHARS, header)) return null;
+    if (header[0] != MAGIC || header[1] != kind
+        || header[2] != PLAIN && header[2] != COMPRESSED) {
+      return null;
+    }
+
+    int length = (header[3] & 0xFF) << 24 | (header[4] & 0xFF) << 16 | (header[5] & 0xFF) << 8
+        | (header[6] & 0xFF);
+    if (length < 0 || chars.length() != HEADER_CHARS + packedLength(length)) {
+      throw new IllegalArgumentException("Truncated frame");
+    }
+
+    byte[] payload = new byte[length];
+    if (!unpack(chars, HEADER_CHARS, chars.length(), payload)) {
+      throw new IllegalArgumentException("Corrupted frame");
+    }
+
+    if (header[2] == PLAIN) return payload;
+    if (compression == null) {
+      throw new IllegalArgumentException("Compressed frame without a Compression configured");
+    }
+    return compression.decompress(payload);
+  }
+
+  static Chars chars(final String string) {
+    return new Chars() {
+      @Override public int length() {
+        return string.length();
+      }
+
+      @Override public int charAt(int index) {
+        return string.charAt(index);
+      }
+    };
+  }
+
+  /**
+   * The chars of the file, every char of a frame being written as a single byte.
+   *
+   * @param header true to read only the chars of the header.
+   */
+  static Chars chars(File file, boolean header) {
+    final byte[] bytes = readFile(file, header ? HEADER_CHARS : Integer.MAX_VALUE);
+    return new Chars() {
+      @Override public int length() {
+        return bytes.length;
+      }
+
+      @Override public int charAt(int index) {
+        return bytes[index];
+      }
+    };
+  }
+
+  /**
+   * Whether the file starts with the header of a frame of the kind.
+   */
+  static boolean isFrame(File file, byte kind) {
+    Chars chars = chars(file, true);
+    byte[] header = new byte[HEADER_BYTES];
+    return chars.length() == HEADER_CHARS && unpack(chars, 0, HEADER_CHARS, header)
+        && header[0] == MAGIC && header[1] == kind;
+  }
+
+  private static int packedLength(int bytes) {
+    return (int) (((long) bytes * 8 + 6) / 7);
+  }
+
+  private static void pack(byte[] bytes, char[] chars, int offset) {
+    int buffer = 0, bits = 0, position = offset;
+    for (byte current : bytes) {
+      buffer = buffer << 8 | current & 0xFF;
+      bits += 8;
+      while (bits >= 7) {
+        bits -= 7;
+        chars[position++] = (char) (buffer >>> bits & 0x7F);
+      }
+    }
+    if (bits > 0) chars[position] = (char) (buffer << 7 - bits & 0x7F);
+  }
+
+  /**
+   * @return false if some char is not one of a frame.
+   */
+  private static boolean unpack(Chars chars, int from, int to, byte[] bytes) {
+    int buffer = 0, bits = 0, position = 0;
+    for (int index = from; index < to && position < bytes.length; index++) {
+      int current = chars.charAt(index);
+      if ((current & ~0x7F) != 0) return false;
+
+      buffer = buffer << 7 | current;
+      bits += 7;
+      if (bits >= 8) {
+        bits -= 8;
+        bytes[position++] = (byte) (buffer >>> bits);
+      }
+    }
+    return true;
+  }
+
+  private static byte[] readFile(File file, int limit) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      byte[] bytes = new byte[(int) Math.min(file.length(), limit)];
+      int read = 0;
+      while (read < bytes.length) {
+        int count = input.read(bytes, read, bytes.length - read);
+        if (count == -1) throw new IOException("Truncated file " + file);
+        read += count;
+      }
+      return bytes;
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      if (input != null) {
+        try {
+          input.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * The chars of a frame, read either from a String or from the bytes of a file.
+   */
+  interface Chars {
+    int length();
+
+    int charAt(int index);
+  }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.EvictProvider;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index of the groups cached by every provider group, ordered from the least to the most recently
+ * used, so providers can list their groups and evict the ones exceeding their limits without
+ * reaching the records of the groups.
+ *
+ * <p>The index is persisted as a record of its own, under the key of the provider but with a
+ * dynamic key no provider uses. The groups written are tracked in memory, but the index persisted
+ * is only loaded once the provider lists its groups or limits them, merging it with the changes
+ * made meanwhile, and groups are only listed once it is. From then on changes are persisted once
+ * per second at most, so a burst of writes costs a single write of the index. Providers which
+ * neither list nor limit their groups only persist their index once not used for a minute, and
+ * {@link #flush()} persists the pending changes of every provider right away, as the JVM shutting
+ * down does. Groups whose record is no longer on disk, as RxCache evicted it on its own, are
+ * dropped from the index once listed. The index of a provider not used for a minute is dropped
+ * from memory once persisted, and loaded again when needed.
+ */
+final class GroupIndex {
+  private static final String INDEX = "$groups";
+  private static final long PERSIST_DELAY_MILLIS = 1000, DROP_IDLE_MILLIS = 60 * 1000;
+  private static final EvictDynamicKeyGroup KEEP = new EvictDynamicKeyGroup(false);
+  private static final EvictDynamicKeyGroup REPLACE = new EvictDynamicKeyGroup(true);
+  private final ProcessorProviders processorProviders;
+  private final DiskUsage diskUsage;
+  private final WriteBehind writeBehind;
+  private final Map<String, Groups> providers;
+  private final FlushOnShutdown flushOnShutdown;
+
+  /**
+   * @param diskUsage null if the size of the groups is not known, otherwise it is taken from the
+   * length of their files.
+   * @param writeBehind null if writes are not deferred, otherwise the groups whose writes are
+   * staged are listed although they are not on disk yet.
+   */
+  GroupIndex(ProcessorProviders processorProviders, DiskUsage diskUsage,
+      WriteBehind writeBehind) {
+    this.processorProviders = processorProviders;
+    this.diskUsage = diskUsage;
+    this.writeBehind = writeBehind;
+    this.providers = new HashMap<>();
+    this.flushOnShutdown = new FlushOnShutdown(flush());
+  }
+
+  /**
+   * The index of the groups of the provider, which persists its record encrypted if any of the
+   * providers of the key asks to.
+   */
+  synchronized Groups of(String key, boolean encrypted) {
+    Groups groups = providers.get(key);
+    if (groups == null) {
+      groups = new Groups(key, encrypted);
+      providers.put(key, groups);
+    } else if (encrypted) {
+      groups.encrypt();
+    }
+    return groups;
+  }
+
+  /**
+   * Drop the group from the index of the provider, as its record has been evicted.
+   */
+  void evicted(String key, String group) {
+    Groups groups;
+    synchronized (this) {
+      groups = providers.get(key);
+    }
+    if (groups != null) groups.evicted(group);
+  }
+
+  /**
+   * Drop every group from the index of the provider, as all its records have been evicted.
+   */
+  void evictedAll(String key) {
+    Groups groups;
+    synchronized (this) {
+      groups = providers.get(key);
+    }
+    if (groups != null) groups.evictedAll();
+  }
+
+  /**
+   * Forget the groups of every provider, as all the records have been evicted, the ones of the
+   * indexes included.
+   */
+  synchronized void evictedAll() {
+    for (Groups groups : providers.values()) {
+      groups.forget();
+    }
+  }
+
+  /**
+   * Persist the changes of every index not persisted yet, completing once they are.
+   */
+  Completable flush() {
+    return Completable.defer(() -> {
+      List<Completable> persists = new ArrayList<>();
+      synchronized (this) {
+        for (Groups groups : providers.values()) {
+          persists.add(groups.flush());
+        }
+      }
+      return Completable.concat(persists);
+    });
+  }
+
+  /**
+   * Forget the index of the provider if it is still the one given.
+   */
+  private synchronized void drop(String key, Groups groups) {
+    if (providers.get(key) == groups) providers.remove(key);
+  }
+
+  final class Groups {
+    private final String key;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Set<String> dropped;
+    private final Observable<Boolean> loading;
+    private boolean encrypted, built, loadStarted, loaded, droppedAll, changed;
+    private Disposable sweep, tick;
+    private long sweepAt = Long.MAX_VALUE, tickAt = Long.MAX_VALUE,
+        usedAt = System.currentTimeMillis();
+
+    private Groups(String key, boolean encrypted) {
+      this.key = key;
+      this.entries = new LinkedHashMap<>(16, 0.75f, true);
+      this.dropped = new HashSet<>();
+      this.encrypted = encrypted;
+      this.loading = Observable.defer(() -> persisted() ?
+          read(this.encrypted).onErrorResumeNext(read(!this.encrypted)) :
+          Observable.<List<String>>empty())
+          .onErrorReturn(error -> Collections.<String>emptyList())
+          .defaultIfEmpty(Collections.<String>emptyList())
+          .map(records -> {
+            loaded(records);
+            return Boolean.TRUE;
+          })
+          .subscribeOn(Schedulers.io())
+          .cache();
+    }
+
+    /**
+     * Mark the group as written, and so as the most recently used one.
+     *
+     * @param expiresAt the time the record of the group expires, or Long.MAX_VALUE if never.
+     */
+    synchronized void written(String group, long expiresAt) {
+      entries.put(group, new Entry(expiresAt, System.currentTimeMillis()));
+      changed();
+      used();
+    }
+
+    /**
+     * Mark the group as the most recently used one, returning the groups to evict as they exceed
+     * the max groups or have been idle for longer than the idle time. The groups returned are
+     * dropped from the index. Until the index is loaded, only the groups used meanwhile count.
+     *
+     * @param maxGroups the max groups of the provider, or Integer.MAX_VALUE if unbounded.
+     * @param idleMillis the max idle time of a group, or Long.MAX_VALUE if unbounded.
+     */
+    synchronized List<String> accessed(String group, int maxGroups, long idleMillis) {
+      build();
+      long now = System.currentTimeMillis();
+      Entry entry = entries.get(group);
+      entries.put(group, new Entry(entry != null ? entry.expiresAt : 0, now));
+
+      List<String> evicted = idle(idleMillis, now);
+      Iterator<String> eldest = entries.keySet().iterator();
+      while (entries.size() > maxGroups) {
+        evicted.add(eldest.next());
+        eldest.remove();
+      }
+      changed();
+      used();
+      return evicted;
+    }
+
+    /**
+     * Drop the groups idle for longer than the idle time, returning them.
+     */
+    synchronized List<String> idle(long idleMillis) {
+      build();
+      List<String> idle = idle(idleMillis, System.currentTimeMillis());
+      if (!idle.isEmpty()) changed();
+      used();
+      return idle;
+    }
+
+    synchronized void evicted(String group) {
+      if (!loaded) dropped.add(group);
+      if (entries.remove(group) != null) changed();
+    }
+
+    synchronized void evictedAll() {
+      forget();
+      changed();
+    }
+
+    /**
+     * The groups not expired yet, from the least to the most recently used one, once the index is
+     * loaded.
+     */
+    Single<List<CachedGroup>> cached() {
+      synchronized (this) {
+        build();
+        used();
+      }
+      return Single.fromObservable(loading).map(done -> snapshot());
+    }
+
+    /**
+     * Run the sweep once the least recently used group has been idle for the idle time, unless a
+     * sweep is already due before.
+     */
+    synchronized void sweepIdle(long idleMillis, final Runnable sweep) {
+      if (entries.isEmpty()) return;
+
+      long at = entries.values().iterator().next().accessedAt + idleMillis;
+      if (at >= sweepAt) return;
+
+      if (this.sweep != null) this.sweep.dispose();
+      sweepAt = at;
+      this.sweep = Schedulers.computation().scheduleDirect(() -> {
+        synchronized (Groups.this) {
+          this.sweep = null;
+          sweepAt = Long.MAX_VALUE;
+        }
+        sweep.run();
+      }, Math.max(0, at - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Load the index persisted and persist the changes from now on, as the provider lists or
+     * limits its groups.
+     */
+    private void build() {
+      built = true;
+      load();
+    }
+
+    private void load() {
+      if (loadStarted) return;
+      loadStarted = true;
+      loading.subscribe(done -> {}, error -> {});
+    }
+
+    /**
+     * Whether the index has a record to load, as there is nothing to read otherwise.
+     */
+    private boolean persisted() {
+      return diskUsage == null || diskUsage.length(RecordKeys.fileOf(key, key + INDEX, "")) > 0
+          || writeBehind != null && writeBehind.isStaged(RecordKeys.of(key, key + INDEX, ""));
+    }
+
+    /**
+     * Keep the index in memory while it is used.
+     */
+    private void used() {
+      usedAt = System.currentTimeMillis();
+      scheduleTick();
+    }
+
+    private synchronized void encrypt() {
+      if (encrypted) return;
+      encrypted = true;
+      changed();
+    }
+
+    private synchronized void forget() {
+      if (!loaded) droppedAll = true;
+      dropped.clear();
+      entries.clear();
+    }
+
+    private List<String> idle(long idleMillis, long now) {
+      List<String> idle = new ArrayList<>();
+      Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+      while (eldest.hasNext()) {
+        Map.Entry<String, Entry> entry = eldest.next();
+        if (now - entry.getValue().accessedAt < idleMillis) break;
+        idle.add(entry.getKey());
+        eldest.remove();
+      }
+      return idle;
+    }
+
+    /**
+     * The groups not expired yet, dropping the ones whose record RxCache evicted on its own.
+     */
+    private synchronized List<CachedGroup> snapshot() {
+      long now = System.currentTimeMillis();
+      List<CachedGroup> cached = new ArrayList<>(entries.size());
+      boolean gone = false;
+      Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Entry> entry = iterator.next();
+        Entry value = entry.getValue();
+        if (value.expiresAt != 0 && value.expiresAt <= now) continue;
+
+        long sizeBytes = 0;
+        if (diskUsage != null) {
+          sizeBytes = diskUsage.length(RecordKeys.fileOf(key, key, entry.getKey()));
+          if (sizeBytes == 0 && !isStaged(entry.getKey())) {
+            iterator.remove();
+            gone = true;
+            continue;
+          }
+        }
+        cached.add(new CachedGroup(entry.getKey(), sizeBytes, value.expiresAt, value.accessedAt));
+      }
+
+      if (gone) changed();
+      return cached;
+    }
+
+    private boolean isStaged(String group) {
+      return writeBehind != null && writeBehind.isStaged(RecordKeys.of(key, key, group));
+    }
+
+    /**
+     * Merge the index persisted with the changes made while loading it, which are more recent.
+     */
+    private synchronized void loaded(List<String> records) {
+      if (!droppedAll) {
+        LinkedHashMap<String, Entry> merged = new LinkedHashMap<>();
+        for (String record : records) {
+          Entry.parse(record, merged);
+        }
+        merged.keySet().removeAll(dropped);
+        merged.keySet().removeAll(entries.keySet());
+        merged.putAll(entries);
+        entries.clear();
+        entries.putAll(merged);
+      }
+      dropped.clear();
+      loaded = true;
+      scheduleTick();
+    }
+
+    private void changed() {
+      if (!changed) flushOnShutdown.pending();
+      changed = true;
+      scheduleTick();
+    }
+
+    /**
+     * Schedule the next tick, unless one is already due before.
+     */
+    private synchronized void scheduleTick() {
+      long delayMillis;
+      if (built && changed) {
+        delayMillis = PERSIST_DELAY_MILLIS;
+      } else if (sweep != null) {
+        delayMillis = DROP_IDLE_MILLIS;
+      } else {
+        delayMillis = Math.max(PERSIST_DELAY_MILLIS,
+            DROP_IDLE_MILLIS - (System.currentTimeMillis() - usedAt));
+      }
+
+      long at = System.currentTimeMillis() + delayMillis;
+      if (at >= tickAt) return;
+
+      if (tick != null) tick.dispose();
+      tickAt = at;
+      tick = Schedulers.io().scheduleDirect(this::tick, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Persist the changes once the index is built, or once it has been idle for a while if it is
+     * not, so providers which neither list nor limit their groups only persist it then.
+     */
+    private void tick() {
+      boolean due;
+      synchronized (this) {
+        tick = null;
+        tickAt = Long.MAX_VALUE;
+        due = built && changed || idle();
+        if (!due) scheduleTick();
+      }
+      if (due) flush().subscribe(this::flushed, error -> flushed());
+    }
+
+    /**
+     * Drop the index from memory if it is still idle once persisted, otherwise keep ticking.
+     */
+    private void flushed() {
+      boolean drop;
+      synchronized (this) {
+        drop = !changed && idle();
+        if (!drop) scheduleTick();
+      }
+      if (drop) drop(key, this);
+    }
+
+    private boolean idle() {
+      return sweep == null && System.currentTimeMillis() - usedAt >= DROP_IDLE_MILLIS;
+    }
+
+    /**
+     * Persist the changes not persisted yet, loading the index beforehand to merge them with it.
+     */
+    private Completable flush() {
+      return Completable.defer(() -> {
+        synchronized (this) {
+          if (!changed) return Completable.complete();
+          load();
+        }
+        return Completable.fromObservable(loading).andThen(persist());
+      });
+    }
+
+    /**
+     * Write the index as a record, or evict its record if there are no groups left.
+     */
+    private Completable persist() {
+      return Completable.defer(() -> {
+        List<String> records;
+        boolean encrypted;
+        synchronized (this) {
+          if (!changed) return Completable.complete();
+          changed = false;
+          encrypted = this.encrypted;
+          records = new ArrayList<>(entries.size());
+          for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            records.add(entry.getValue().format(entry.getKey()));
+          }
+        }
+
+        Observable<?> loader = records.isEmpty() ?
+            Observable.error(new RuntimeException()) : Observable.just(records);
+        return Completable.fromObservable(processorProviders
+            .process(getConfigProvider(loader, REPLACE, encrypted)))
+            .onErrorComplete()
+            .doFinally(flushOnShutdown::flushed);
+      });
+    }
+
+    private Observable<List<String>> read(final boolean encrypted) {
+      return Observable.defer(() -> processorProviders.<List<String>>process(
+          getConfigProvider(Observable.<List<String>>empty(), KEEP, encrypted)));
+    }
+
+    private ConfigProvider getConfigProvider(Observable<?> loader, EvictProvider evict,
+        boolean encrypted) {
+      return new ConfigProvider(key, false, null, false, false, encrypted, key + INDEX, "",
+          loader, evict);
+    }
+  }
+
+  /**
+   * The expiry and the last access of a group, persisted as a line which leaves the group last so
+   * it may hold any character.
+   */
+  private static final class Entry {
+    private final long expiresAt, accessedAt;
+
+    Entry(long expiresAt, long accessedAt) {
+      this.expiresAt = expiresAt;
+      this.accessedAt = accessedAt;
+    }
+
+    String format(String group) {
+      return expiresAt + " " + accessedAt + " " + group;
+    }
+
+    static void parse(String record, Map<String, Entry> entries) {
+      int first = record.indexOf(' ');
+      int second = first != -1 ? record.indexOf(' ', first + 1) : -1;
+      if (second == -1) return;
+
+      try {
+        entries.put(record.substring(second + 1),
+            new Entry(Long.parseLong(record.substring(0, first)),
+                Long.parseLong(record.substring(first + 1, second))));
+      } catch (NumberFormatException ignore) {
+        //Skip the malformed line instead of dropping the whole index.
+      }
+    }
+  }
+}
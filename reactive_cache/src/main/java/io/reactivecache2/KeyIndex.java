@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index from the key of every element of a cached list to its position, so elements are
+ * looked up by key without scanning the list. Positions are stored as sequence numbers relative to
+ * a head, so adding or evicting elements at either end of the list keeps the index up to date in
+ * O(1), while changes in the middle of the list drop it until the next lookup rebuilds it.
+ *
+ * <p>The changes of a write are recorded while it is performed and only applied to the index once
+ * it has been persisted, so a write which fails or is retried leaves the index untouched. The list
+ * may also be written without going through the index, i.e. by {@link Provider#replace()}, so
+ * every position found is verified against the list and a mismatch or an unknown key rebuilds the
+ * index.
+ */
+final class KeyIndex<T> {
+  private final ActionsList.KeyExtractor<T> keyExtractor;
+  private Map<Object, Long> sequences;
+  private long head;
+  private long rebuilds;
+
+  KeyIndex(ActionsList.KeyExtractor<T> keyExtractor) {
+    this.keyExtractor = keyExtractor;
+  }
+
+  ActionsList.KeyExtractor<T> keyExtractor() {
+    return keyExtractor;
+  }
+
+  /**
+   * The position of the first element with the key, or -1 if there is none.
+   */
+  synchronized int positionOf(Object key, List<T> elements) {
+    int position = lookup(key, elements);
+    if (position != -1) return position;
+
+    rebuild(elements);
+    return lookup(key, elements);
+  }
+
+  /**
+   * Start recording the changes of a write, to be applied by {@link #apply(Changes)} once it has
+   * been persisted.
+   */
+  synchronized Changes<T> changes() {
+    return new Changes<>(keyExtractor, rebuilds);
+  }
+
+  /**
+   * Apply the changes of a write already persisted. The index is dropped if it has been rebuilt
+   * since the changes started being recorded, as their positions may not be relative to it.
+   */
+  synchronized void apply(Changes<T> changes) {
+    if (sequences == null) return;
+    if (changes.rebuilds != rebuilds || changes.dropped) {
+      sequences = null;
+      return;
+    }
+
+    for (Change change : changes.changes) {
+      long sequence = head + change.position;
+      switch (change.kind) {
+        case Change.PUT:
+          if (!sequences.containsKey(change.key)) sequences.put(change.key, sequence);
+          break;
+        case Change.REMOVE:
+          if (Long.valueOf(sequence).equals(sequences.get(change.key))) {
+            sequences.remove(change.key);
+          }
+          break;
+        default:
+          head += change.position;
+      }
+    }
+  }
+
+  private int lookup(Object key, List<T> elements) {
+    if (sequences == null) return -1;
+
+    Long sequence = sequences.get(key);
+    if (sequence == null) return -1;
+
+    long position = sequence - head;
+    if (position < 0 || position >= elements.size()) return -1;
+    if (!key.equals(keyExtractor.call(elements.get((int) position)))) return -1;
+
+    return (int) position;
+  }
+
+  private void rebuild(List<T> elements) {
+    sequences = new HashMap<>(elements.size() * 4 / 3 + 1);
+    head = 0;
+    rebuilds++;
+    for (int i = 0; i < elements.size(); i++) {
+      Object key = keyExtractor.call(elements.get(i));
+      if (!sequences.containsKey(key)) sequences.put(key, (long) i);
+    }
+  }
+
+  /**
+   * The changes of the index for the deltas of a write, by position relative to the head of the
+   * index at the time they are applied.
+   */
+  static final class Changes<T> {
+    private final ActionsList.KeyExtractor<T> keyExtractor;
+    private final long rebuilds;
+    private final List<Change> changes;
+    private boolean dropped;
+
+    private Changes(ActionsList.KeyExtractor<T> keyExtractor, long rebuilds) {
+      this.keyExtractor = keyExtractor;
+      this.rebuilds = rebuilds;
+      this.changes = new ArrayList<>();
+    }
+
+    /**
+     * Record the changes of the delta about to be applied to the elements.
+     */
+    void record(ListDelta<T> delta, List<T> elements) {
+      if (dropped) return;
+
+      int[] positions = delta.positions();
+      int count = elements.size();
+
+      switch (delta.kind()) {
+        case ListDelta.INSERT:
+          List<T> inserted = delta.elements();
+          if (positions[0] == 0) {
+            changes.add(new Change(Change.SHIFT, null, -inserted.size()));
+            put(inserted, 0);
+          } else if (positions[0] == count) {
+            put(inserted, count);
+          } else {
+            dropped = true;
+          }
+          break;
+        case ListDelta.SET:
+          for (int i = 0; i < positions.length; i++) {
+            Object previous = keyExtractor.call(elements.get(positions[i]));
+            Object current = keyExtractor.call(delta.elements().get(i));
+            if (previous.equals(current)) continue;
+
+            changes.add(new Change(Change.REMOVE, previous, positions[i]));
+            changes.add(new Change(Change.PUT, current, positions[i]));
+          }
+          break;
+        case ListDelta.REMOVE:
+          boolean prefix = positions[positions.length - 1] == positions.length - 1;
+          boolean suffix = positions[0] == count - positions.length;
+          if (!prefix && !suffix) {
+            dropped = true;
+            break;
+          }
+
+          for (int position : positions) {
+            Object key = keyExtractor.call(elements.get(position));
+            changes.add(new Change(Change.REMOVE, key, position));
+          }
+          if (prefix) changes.add(new Change(Change.SHIFT, null, positions.length));
+          break;
+        default:
+          dropped = true;
+      }
+    }
+
+    private void put(List<T> elements, int first) {
+      for (int i = 0; i < elements.size(); i++) {
+        changes.add(new Change(Change.PUT, keyExtractor.call(elements.get(i)), first + i));
+      }
+    }
+  }
+
+  private static final class Change {
+    static final char PUT = 'P', REMOVE = 'R', SHIFT = 'S';
+
+    private final char kind;
+    private final Object key;
+    private final long position;
+
+    private Change(char kind, Object key, long position) {
+      this.kind = kind;
+      this.key = key;
+      this.position = position;
+    }
+  }
+}
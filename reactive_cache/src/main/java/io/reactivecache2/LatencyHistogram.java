@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Snapshot of the latencies recorded for an operation, in microseconds. Percentiles are reported
+ * as the greatest value of the bucket they fall in, which is at most 6.25% above the actual value.
+ */
+public final class LatencyHistogram {
+  private final long[] counts;
+  private final long count, sum, max;
+
+  LatencyHistogram(long[] counts, long count, long sum, long max) {
+    this.counts = counts;
+    this.count = count;
+    this.sum = sum;
+    this.max = max;
+  }
+
+  /**
+   * The amount of latencies recorded.
+   */
+  public long count() {
+    return count;
+  }
+
+  public long maxMicros() {
+    return max;
+  }
+
+  public double meanMicros() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * The latency which the given percentage of the recorded latencies do not exceed, or 0 if none
+   * has been recorded.
+   *
+   * @param percentile between 0 and 100, i.e. 99.9
+   */
+  public long percentileMicros(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    if (count == 0) return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) return Math.min(LatencyRecorder.highestOf(bucket), max);
+    }
+    return max;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records latencies in microseconds without locking, counting them in log-linear buckets as HDR
+ * histograms do: every power of two is split in 16 buckets, so any value is recorded with an
+ * error below 6.25% while the whole range up to half an hour takes a few hundred counters.
+ */
+final class LatencyRecorder {
+  static final int SUB_BUCKET_BITS = 4, SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final long MAX_MICROS = (1L << 31) - 1;
+  private static final int BUCKETS = bucketOf(MAX_MICROS) + 1;
+
+  private final AtomicLongArray counts;
+  private final AtomicLong count, sum, max;
+
+  LatencyRecorder() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.count = new AtomicLong();
+    this.sum = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  void record(long nanos) {
+    long micros = Math.min(Math.max(nanos / 1000, 0), MAX_MICROS);
+    counts.incrementAndGet(bucketOf(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+
+    long current;
+    while (micros > (current = max.get()) && !max.compareAndSet(current, micros)) {
+      //Retry until either this value or a greater one is the max.
+    }
+  }
+
+  /**
+   * Copy the counters, which may be recorded meanwhile, so the snapshot is only consistent with
+   * itself up to the values being recorded at the time.
+   */
+  LatencyHistogram snapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    return new LatencyHistogram(copy, total, sum.get(), max.get());
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) return (int) micros;
+
+    int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+  }
+
+  /**
+   * The greatest value recorded in the bucket.
+   */
+  static long highestOf(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
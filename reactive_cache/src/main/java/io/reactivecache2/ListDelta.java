@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change performed on a list by an {@link ActionsList} operation: inserting elements at a
+ * position, removing the elements at some positions or setting the elements at some positions.
+ * Its descriptor encodes everything but the elements, so it can be persisted apart from them.
+ */
+final class ListDelta<T> {
+  static final char INSERT = 'I', REMOVE = 'R', SET = 'S';
+
+  private final char kind;
+  private final int[] positions;
+  private final List<T> elements;
+
+  private ListDelta(char kind, int[] positions, List<T> elements) {
+    this.kind = kind;
+    this.positions = positions;
+    this.elements = elements;
+  }
+
+  static <T> ListDelta<T> insert(int position, List<T> elements) {
+    return new ListDelta<>(INSERT, new int[] {position}, new ArrayList<>(elements));
+  }
+
+  /**
+   * @param positions the positions to remove in ascending order.
+   */
+  static <T> ListDelta<T> remove(int[] positions) {
+    return new ListDelta<>(REMOVE, positions, Collections.<T>emptyList());
+  }
+
+  /**
+   * @param positions the positions to set in ascending order.
+   * @param elements the element to set for each position.
+   */
+  static <T> ListDelta<T> set(int[] positions, List<T> elements) {
+    return new ListDelta<>(SET, positions, elements);
+  }
+
+  static <T> ListDelta<T> parse(String descriptor, List<T> elements) {
+    String[] values = descriptor.substring(2).split(",");
+    int[] positions = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      positions[i] = Integer.parseInt(values[i]);
+    }
+    return new ListDelta<>(descriptor.charAt(0), positions, elements);
+  }
+
+  String descriptor() {
+    StringBuilder descriptor = new StringBuilder().append(kind).append(':');
+    for (int i = 0; i < positions.length; i++) {
+      if (i > 0) descriptor.append(',');
+      descriptor.append(positions[i]);
+    }
+    return descriptor.toString();
+  }
+
+  /**
+   * Whether the elements have to be persisted along with the descriptor to replay the change.
+   */
+  boolean hasElements() {
+    return kind != REMOVE;
+  }
+
+  char kind() {
+    return kind;
+  }
+
+  int[] positions() {
+    return positions;
+  }
+
+  List<T> elements() {
+    return elements;
+  }
+
+  static boolean hasElements(String descriptor) {
+    return descriptor.charAt(0) != REMOVE;
+  }
+
+  void applyTo(List<T> list) {
+    switch (kind) {
+      case INSERT:
+        list.addAll(positions[0], elements);
+        break;
+      case SET:
+        for (int i = 0; i < positions.length; i++) {
+          list.set(positions[i], elements.get(i));
+        }
+        break;
+      case REMOVE:
+        if (positions.length == 1) {
+          list.remove(positions[0]);
+          break;
+        }
+
+        //Shift the kept elements in a single pass instead of removing them one by one.
+        int count = list.size(), kept = 0, next = 0;
+        for (int position = 0; position < count; position++) {
+          if (next < positions.length && positions[next] == position) {
+            next++;
+          } else {
+            list.set(kept++, list.get(position));
+          }
+        }
+        list.subList(kept, count).clear();
+        break;
+      default:
+        throw new IllegalStateException("Unknown list delta " + kind);
+    }
+  }
+}
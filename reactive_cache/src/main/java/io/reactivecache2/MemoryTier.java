@@ -0,0 +1,289 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.Reply;
+import io.rx_cache2.Source;
+import io.rx_cache2.internal.ProcessorProviders;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory tier in front of the ProcessorProviders of RxCache which keeps the hot records under a
+ * fixed budget, so reading them skips RxCache and the copy it makes of every record it returns.
+ *
+ * <p>Records are kept serialized by the {@link JolyglotGenerics} RxCache persists them with, so
+ * every read deserializes a copy of its own which the caller is free to modify, as with RxCache,
+ * and which is the same a read from disk would return. They are evicted following a segmented LRU
+ * policy: new records enter a probation segment and are promoted to the protected one, which
+ * takes up to 80% of the budget, when read again, so a scan of cold keys only evicts records
+ * from probation instead of flushing the hot ones.
+ *
+ * <p>Records are kept when written through this tier or retrieved by a loader. Records read from
+ * RxCache are only kept if they have no life time, as their age is unknown, and only if no write
+ * to their key has happened meanwhile, as they may be outdated by it. Evictions are applied to the
+ * tier before reaching RxCache.
+ */
+final class MemoryTier implements ProcessorProviders {
+  private static final float PROTECTED_RATIO = 0.8f;
+
+  private final ProcessorProviders processorProviders;
+  private final long maxWeight, maxProtectedWeight;
+  private final Weigher weigher;
+  private final JolyglotGenerics jolyglot;
+  private final LinkedHashMap<String, Entry> probation, protectedSegment;
+  private final Map<String, Object> reads;
+  private long probationWeight, protectedWeight;
+
+  /**
+   * @param jolyglot the speaker RxCache persists the records with.
+   * @param weigher null to weigh records by the bytes they take serialized.
+   */
+  MemoryTier(ProcessorProviders processorProviders, JolyglotGenerics jolyglot, long maxWeight,
+      Weigher weigher) {
+    this.processorProviders = processorProviders;
+    this.jolyglot = jolyglot;
+    this.maxWeight = maxWeight;
+    this.maxProtectedWeight = (long) (maxWeight * PROTECTED_RATIO);
+    this.weigher = weigher;
+    this.probation = new LinkedHashMap<>(16, 0.75f, true);
+    this.protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    this.reads = new HashMap<>();
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      final String key = RecordKeys.of(configProvider);
+
+      if (configProvider.evictProvider().evict()) {
+        invalidate(configProvider);
+        return processorProviders.<T>process(configProvider)
+            .doOnNext(data -> keep(key, configProvider, data, null));
+      }
+
+      Object data = read(key);
+      if (data != null) {
+        return ConfigProviders.reply(configProvider, data, Source.MEMORY);
+      }
+
+      final Object reading = reading(key);
+      final boolean[] loaded = new boolean[1];
+      final Observable<?> loader = configProvider.getLoaderObservable();
+      ConfigProvider reporting = ConfigProviders.withLoader(configProvider,
+          loader.doOnNext(retrieved -> loaded[0] = true),
+          configProvider.requiredDetailedResponse());
+
+      return processorProviders.<T>process(reporting)
+          .doOnNext(read -> keep(key, configProvider, read, loaded[0] ? null : reading))
+          .doFinally(() -> read(key, reading));
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return Observable.defer(() -> {
+      clear();
+      return processorProviders.evictAll();
+    }).doOnComplete(this::clear);
+  }
+
+  /**
+   * Keep the data written or read from RxCache.
+   *
+   * @param reading the read of the key from RxCache the data comes from, or null if the data has
+   * just been written or retrieved by the loader.
+   */
+  private void keep(String key, ConfigProvider configProvider, Object data, Object reading) {
+    if (data instanceof Reply) data = ((Reply<?>) data).getData();
+    if (data == null) return;
+
+    Long lifeTime = configProvider.getLifeTimeMillis();
+    boolean written = reading == null;
+    if (!written && lifeTime != null) return;
+
+    Entry entry = encode(data, lifeTime);
+    if (entry == null) return;
+
+    synchronized (this) {
+      if (!written && reads.get(key) != reading) return;
+      if (written) reads.remove(key);
+      remove(key);
+      if (entry.weight > maxWeight) return;
+
+      probation.put(key, entry);
+      probationWeight += entry.weight;
+      evict();
+    }
+  }
+
+  private Object read(String key) {
+    Entry entry;
+    synchronized (this) {
+      entry = protectedSegment.get(key);
+      if (entry == null) {
+        entry = probation.remove(key);
+        if (entry == null) return null;
+
+        probationWeight -= entry.weight;
+        protectedSegment.put(key, entry);
+        protectedWeight += entry.weight;
+        demote();
+      }
+
+      if (entry.expiresAt != null && entry.expiresAt <= System.currentTimeMillis()) {
+        remove(key);
+        return null;
+      }
+    }
+
+    try {
+      return jolyglot.fromJson(entry.json, entry.type);
+    } catch (RuntimeException e) {
+      //Not every type survives the copy, leave it to RxCache.
+      synchronized (this) {
+        remove(key);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Drop the records the eviction of RxCache will evict, along with the reads of them in flight.
+   */
+  private synchronized void invalidate(ConfigProvider configProvider) {
+    Iterator<String> keys = reads.keySet().iterator();
+    while (keys.hasNext()) {
+      if (RecordKeys.evicts(configProvider, keys.next())) keys.remove();
+    }
+    removeEvicted(probation, configProvider);
+    removeEvicted(protectedSegment, configProvider);
+  }
+
+  /**
+   * Track a read of the key from RxCache, whose data is only kept if the key is not written
+   * before it completes.
+   */
+  private synchronized Object reading(String key) {
+    Object reading = new Object();
+    reads.put(key, reading);
+    return reading;
+  }
+
+  private synchronized void read(String key, Object reading) {
+    if (reads.get(key) == reading) reads.remove(key);
+  }
+
+  private synchronized void clear() {
+    reads.clear();
+    probation.clear();
+    protectedSegment.clear();
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  private void remove(String key) {
+    Entry entry = probation.remove(key);
+    if (entry != null) probationWeight -= entry.weight;
+    entry = protectedSegment.remove(key);
+    if (entry != null) protectedWeight -= entry.weight;
+  }
+
+  private void removeEvicted(Map<String, Entry> segment, ConfigProvider configProvider) {
+    Iterator<Map.Entry<String, Entry>> iterator = segment.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> next = iterator.next();
+      if (!RecordKeys.evicts(configProvider, next.getKey())) continue;
+
+      if (segment == probation) {
+        probationWeight -= next.getValue().weight;
+      } else {
+        protectedWeight -= next.getValue().weight;
+      }
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Move the least recently used records of the protected segment back to probation.
+   */
+  private void demote() {
+    Iterator<Map.Entry<String, Entry>> iterator = protectedSegment.entrySet().iterator();
+    while (protectedWeight > maxProtectedWeight && iterator.hasNext()) {
+      Map.Entry<String, Entry> eldest = iterator.next();
+      iterator.remove();
+      protectedWeight -= eldest.getValue().weight;
+      probation.put(eldest.getKey(), eldest.getValue());
+      probationWeight += eldest.getValue().weight;
+    }
+  }
+
+  /**
+   * Evict the least recently used records of probation, and then of the protected segment, until
+   * the records fit in the budget.
+   */
+  private void evict() {
+    evict(probation, true);
+    evict(protectedSegment, false);
+  }
+
+  private void evict(Map<String, Entry> segment, boolean isProbation) {
+    Iterator<Map.Entry<String, Entry>> iterator = segment.entrySet().iterator();
+    while (probationWeight + protectedWeight > maxWeight && iterator.hasNext()) {
+      long weight = iterator.next().getValue().weight;
+      iterator.remove();
+      if (isProbation) {
+        probationWeight -= weight;
+      } else {
+        protectedWeight -= weight;
+      }
+    }
+  }
+
+  private Entry encode(Object data, Long lifeTime) {
+    Type type = Types.typeOf(data);
+    String json;
+    try {
+      json = jolyglot.toJson(data, type);
+    } catch (RuntimeException e) {
+      return null;
+    }
+    if (json == null) return null;
+
+    long weight = weigher != null ? weigher.weigh(data) : 2L * json.length();
+    Long expiresAt = lifeTime != null ? System.currentTimeMillis() + lifeTime : null;
+    return new Entry(json, type, weight, expiresAt);
+  }
+
+  private static final class Entry {
+    private final String json;
+    private final Type type;
+    private final long weight;
+    private final Long expiresAt;
+
+    Entry(String json, Type type, long weight, Long expiresAt) {
+      this.json = json;
+      this.type = type;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
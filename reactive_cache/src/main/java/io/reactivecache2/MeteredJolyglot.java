@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.io.File;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Reports the length of the files of the records deserialized by a {@link JolyglotGenerics} to
+ * the call of {@link Metrics} being processed on the current thread, if any, which RxCache reads
+ * on the subscribing thread. Only the records RxCache reads from its files are counted, not the
+ * data it deserializes to deep copy the records it hands out from memory. The records written are
+ * counted by {@link DiskUsage}, which knows their provider key.
+ */
+final class MeteredJolyglot implements JolyglotGenerics {
+  private final JolyglotGenerics jolyglot;
+  private final Metrics metrics;
+
+  MeteredJolyglot(JolyglotGenerics jolyglot, Metrics metrics) {
+    this.jolyglot = jolyglot;
+    this.metrics = metrics;
+  }
+
+  @Override public String toJson(Object src) {
+    return jolyglot.toJson(src);
+  }
+
+  @Override public String toJson(Object src, Type typeOfSrc) {
+    return jolyglot.toJson(src, typeOfSrc);
+  }
+
+  @Override public <T> T fromJson(String json, Class<T> classOfT) throws RuntimeException {
+    return fromJson(json, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(String json, Type type) throws RuntimeException {
+    return jolyglot.fromJson(json, type);
+  }
+
+  @Override public <T> T fromJson(File file, Class<T> classOfT) throws RuntimeException {
+    return fromJson(file, (Type) classOfT);
+  }
+
+  @Override public <T> T fromJson(File file, Type typeOfT) throws RuntimeException {
+    Metrics.Call call = metrics.current();
+    if (call != null) call.read(file.length());
+    return jolyglot.fromJson(file, typeOfT);
+  }
+
+  @Override public GenericArrayType arrayOf(Type componentType) {
+    return jolyglot.arrayOf(componentType);
+  }
+
+  @Override public ParameterizedType newParameterizedType(Type rawType, Type... typeArguments) {
+    return jolyglot.newParameterizedType(rawType, typeArguments);
+  }
+}
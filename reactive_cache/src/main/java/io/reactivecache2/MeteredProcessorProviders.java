@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the {@link Metrics} of every call processed by the layers behind it. The loader of every
+ * call is wrapped to tell what happened: a read which subscribes to it is a miss, which RxCache
+ * only does when it has no valid record, and a call to the loader once it emits; a write whose
+ * loader completes or fails without emitting is an eviction. A read served without a miss is a
+ * hit from disk if a record has been deserialized from a file meanwhile, and from memory
+ * otherwise.
+ */
+final class MeteredProcessorProviders implements ProcessorProviders {
+  private final ProcessorProviders processorProviders;
+  private final Metrics metrics;
+
+  MeteredProcessorProviders(ProcessorProviders processorProviders, Metrics metrics) {
+    this.processorProviders = processorProviders;
+    this.metrics = metrics;
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      final Metrics.Call call = metrics.call(configProvider.getProviderKey());
+      final long start = System.nanoTime();
+
+      if (configProvider.evictProvider().evict()) {
+        return track(call, processorProviders.<T>process(evicting(configProvider, call)))
+            .doOnNext(data -> {
+              call.counters.writes.incrementAndGet();
+              call.counters.writeLatency.record(System.nanoTime() - start);
+            });
+      }
+
+      return track(call, processorProviders.<T>process(loading(configProvider, call)))
+          .doOnNext(data -> {
+            if (!call.missed) {
+              (call.deserialized ? call.counters.diskHits : call.counters.memoryHits)
+                  .incrementAndGet();
+            }
+            call.counters.readLatency.record(System.nanoTime() - start);
+          })
+          .doOnError(error -> call.counters.readLatency.record(System.nanoTime() - start));
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return processorProviders.evictAll();
+  }
+
+  /**
+   * Keep the call tracked on the thread while the process is subscribed, so the records RxCache
+   * serializes and deserializes meanwhile are attributed to it.
+   */
+  private <T> Observable<T> track(final Metrics.Call call, final Observable<T> process) {
+    return Observable.wrap(observer -> {
+      metrics.enter(call);
+      try {
+        process.subscribe(observer);
+      } finally {
+        metrics.exit(call);
+      }
+    });
+  }
+
+  /**
+   * Copy the configuration with a loader which reports the miss and the call to the loader.
+   */
+  private ConfigProvider loading(ConfigProvider configProvider, final Metrics.Call call) {
+    final Observable<?> loader = configProvider.getLoaderObservable();
+    Observable<?> meteredLoader = Observable.defer(() -> {
+      call.missed = true;
+      call.counters.misses.incrementAndGet();
+      final AtomicBoolean loaded = new AtomicBoolean();
+      return loader.doOnNext(data -> {
+        if (loaded.compareAndSet(false, true)) call.counters.loaderCalls.incrementAndGet();
+      });
+    });
+
+    return ConfigProviders.withLoader(configProvider, meteredLoader,
+        configProvider.requiredDetailedResponse());
+  }
+
+  /**
+   * Copy the configuration with a loader which reports the eviction once, as RxCache only
+   * subscribes to the loader of a write after evicting the records it replaces, and the layers
+   * in front of it may subscribe to it more than once.
+   */
+  private ConfigProvider evicting(ConfigProvider configProvider, final Metrics.Call call) {
+    final Observable<?> loader = configProvider.getLoaderObservable();
+    final AtomicBoolean written = new AtomicBoolean(), evicted = new AtomicBoolean();
+    Observable<?> meteredLoader = loader
+        .doOnNext(data -> written.set(true))
+        .doOnTerminate(() -> {
+          if (!written.get() && evicted.compareAndSet(false, true)) {
+            call.counters.evictions.incrementAndGet();
+          }
+        });
+
+    return ConfigProviders.withLoader(configProvider, meteredLoader,
+        configProvider.requiredDetailedResponse());
+  }
+}
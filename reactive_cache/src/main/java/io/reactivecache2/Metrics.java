@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the metrics of every provider key. The call being processed for a provider key is
+ * tracked per thread while RxCache processes it, which it does on the subscribing thread once its
+ * startup tasks are done, so the records deserialized meanwhile are attributed to that provider
+ * key. The bytes of the reads processed during the startup tasks are not counted. The bytes
+ * written are reported with their provider key instead, as RxCache persists the data of a loader
+ * on the thread the loader emits on.
+ */
+final class Metrics {
+  private final ConcurrentMap<String, Counters> counters;
+  private final ThreadLocal<Call> calls;
+
+  Metrics() {
+    this.counters = new ConcurrentHashMap<>();
+    this.calls = new ThreadLocal<>();
+  }
+
+  Call call(String providerKey) {
+    return new Call(counters(providerKey));
+  }
+
+  /**
+   * A record of the provider key taking the given bytes has been persisted.
+   */
+  void written(String providerKey, long bytes) {
+    counters(providerKey).bytesWritten.addAndGet(bytes);
+  }
+
+  /**
+   * Track the call on the current thread until {@link #exit(Call)} is called with it.
+   */
+  void enter(Call call) {
+    call.outer = calls.get();
+    calls.set(call);
+  }
+
+  void exit(Call call) {
+    if (call.outer != null) {
+      calls.set(call.outer);
+    } else {
+      calls.remove();
+    }
+  }
+
+  /**
+   * The call being processed on the current thread, or null if there is none.
+   */
+  Call current() {
+    return calls.get();
+  }
+
+  private Counters counters(String providerKey) {
+    Counters candidate = counters.get(providerKey);
+    if (candidate == null) {
+      candidate = new Counters();
+      Counters previous = counters.putIfAbsent(providerKey, candidate);
+      if (previous != null) candidate = previous;
+    }
+    return candidate;
+  }
+
+  Map<String, ProviderMetrics> snapshot() {
+    Map<String, ProviderMetrics> snapshot = new HashMap<>(counters.size() * 4 / 3 + 1);
+    for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+      snapshot.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return snapshot;
+  }
+
+  static final class Counters {
+    final AtomicLong memoryHits = new AtomicLong(), diskHits = new AtomicLong(),
+        misses = new AtomicLong(), loaderCalls = new AtomicLong(), writes = new AtomicLong(),
+        evictions = new AtomicLong(), bytesRead = new AtomicLong(), bytesWritten = new AtomicLong();
+    final LatencyRecorder readLatency = new LatencyRecorder(),
+        writeLatency = new LatencyRecorder();
+
+    ProviderMetrics snapshot() {
+      return new ProviderMetrics(memoryHits.get(), diskHits.get(), misses.get(),
+          loaderCalls.get(), writes.get(), evictions.get(), bytesRead.get(), bytesWritten.get(),
+          readLatency.snapshot(), writeLatency.snapshot());
+    }
+  }
+
+  /**
+   * What happened while processing a call, to tell where its data came from.
+   */
+  static final class Call {
+    final Counters counters;
+    private Call outer;
+    volatile boolean missed, deserialized;
+
+    private Call(Counters counters) {
+      this.counters = counters;
+    }
+
+    /**
+     * RxCache may deserialize a record more than once to resolve its type, so only the first
+     * time is counted.
+     */
+    void read(long bytes) {
+      if (deserialized) return;
+      deserialized = true;
+      counters.bytesRead.addAndGet(bytes);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Snapshot of the progress of the migrations running in the background, as emitted by {@link
+ * ReactiveCache#migrations()}.
+ */
+public final class MigrationProgress {
+  private final int checkedRecords, totalRecords, evictedRecords;
+
+  MigrationProgress(int checkedRecords, int totalRecords, int evictedRecords) {
+    this.checkedRecords = checkedRecords;
+    this.totalRecords = totalRecords;
+    this.evictedRecords = evictedRecords;
+  }
+
+  /**
+   * The records on disk checked so far.
+   */
+  public int checkedRecords() {
+    return checkedRecords;
+  }
+
+  /**
+   * The records on disk when the migrations started.
+   */
+  public int totalRecords() {
+    return totalRecords;
+  }
+
+  /**
+   * The records evicted so far as their data is of a migrated type, either when checked or when
+   * read before.
+   */
+  public int evictedRecords() {
+    return evictedRecords;
+  }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.ReplayProcessor;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.MigrationCache;
+import io.rx_cache2.Reply;
+import io.rx_cache2.internal.ProcessorProviders;
+import io.rx_cache2.internal.Record;
+import io.rx_cache2.internal.encrypt.BuiltInEncryptor;
+import io.rx_cache2.internal.encrypt.FileEncryptor;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Layer in front of the ProcessorProviders of RxCache which runs the pending migrations in the
+ * background, instead of leaving them to RxCache, which holds every call until they finish.
+ *
+ * <p>The records on disk are checked in batches from the scheduler, evicting the ones whose data
+ * is of a class a pending migration evicts. As RxCache does, the class is read from the file of
+ * the record, so checking it neither depends on its keys, which are not recovered from the name of
+ * the file if they had slashes, nor fills the memory layers. Meanwhile calls go through right
+ * away: a read of a record not checked yet checks it first, so it is a miss if the record is
+ * evicted, and a record written or evicted is never checked, as its data is already current. Once
+ * every record is checked, the version of the last migration is saved in the same file RxCache
+ * keeps it, so the migrations it ran before are not run again, and neither are these ones. If the
+ * process dies before, or a record could not be read, the migrations run again on the next start.
+ */
+final class Migrations implements ProcessorProviders {
+  private static final String VERSION_FILE = "key_cache_version";
+  private static final int BATCH = 32;
+  private final ProcessorProviders processorProviders;
+  private final File cacheDirectory;
+  private final JolyglotGenerics jolyglot;
+  private final String encryptKey;
+  private final FileEncryptor fileEncryptor;
+  private final Scheduler scheduler;
+  private final Set<String> classNames;
+  private final Set<String> settled;
+  private final FlowableProcessor<MigrationProgress> progress;
+  private volatile boolean migrating;
+  private int version, checked, evicted, unchecked;
+  private List<String> records;
+
+  /**
+   * @param encryptKey the key records may be encrypted with, so the ones which fail to be read are
+   * read again decrypting them, or null if none is.
+   */
+  Migrations(ProcessorProviders processorProviders, List<MigrationCache> migrations,
+      File cacheDirectory, JolyglotGenerics jolyglot, String encryptKey, Scheduler scheduler) {
+    this.processorProviders = processorProviders;
+    this.cacheDirectory = cacheDirectory;
+    this.jolyglot = jolyglot;
+    this.encryptKey = encryptKey;
+    this.fileEncryptor = new FileEncryptor(new BuiltInEncryptor());
+    this.scheduler = scheduler;
+    this.classNames = new HashSet<>();
+    this.settled = new HashSet<>();
+    this.progress = ReplayProcessor.createWithSize(1);
+
+    int current = readVersion();
+    this.version = current;
+    for (MigrationCache migration : migrations) {
+      if (migration.version() <= current) continue;
+      version = Math.max(version, migration.version());
+      for (Class<?> evictClass : migration.evictClasses()) {
+        classNames.add(evictClass.getName());
+      }
+    }
+
+    if (version == current) {
+      progress.onComplete();
+    } else {
+      migrating = true;
+      scheduler.scheduleDirect(this::start);
+    }
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      if (!migrating) return processorProviders.<T>process(configProvider);
+
+      final String key = RecordKeys.fileOf(configProvider);
+      if (configProvider.evictProvider().evict()) {
+        settle(key);
+        return processorProviders.<T>process(configProvider);
+      }
+      if (isSettled(key)) return processorProviders.<T>process(configProvider);
+
+      final boolean[] loaded = new boolean[1];
+      final Observable<?> loader = configProvider.getLoaderObservable();
+      ConfigProvider reporting = ConfigProviders.withLoader(configProvider,
+          Observable.defer(() -> {
+            loaded[0] = true;
+            return loader;
+          }), configProvider.requiredDetailedResponse());
+
+      return processorProviders.<T>process(reporting)
+          .concatMap(data -> {
+            if (loaded[0] || !isMigrated(data)) {
+              settle(key);
+              return Observable.just(data);
+            }
+
+            evict(configProvider);
+            return processorProviders.<T>process(configProvider);
+          });
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return processorProviders.evictAll();
+  }
+
+  /**
+   * The progress of the migrations, which replays the last one emitted and completes once they
+   * finish, or right away if none is pending.
+   */
+  Flowable<MigrationProgress> progress() {
+    return progress.hide();
+  }
+
+  private void start() {
+    List<String> records = new ArrayList<>();
+    File[] files = cacheDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && RecordKeys.keysOfFile(file.getName()) != null) {
+          records.add(file.getName());
+        }
+      }
+    }
+
+    synchronized (this) {
+      this.records = records;
+    }
+    emit();
+    check(0);
+  }
+
+  /**
+   * Check a batch of records, scheduling the next one so the migrations share the scheduler.
+   */
+  private void check(int from) {
+    final int to = Math.min(from + BATCH, records.size());
+    for (int i = from; i < to; i++) {
+      check(records.get(i));
+      synchronized (this) {
+        checked++;
+      }
+    }
+
+    if (to < records.size()) {
+      emit();
+      scheduler.scheduleDirect(() -> check(to));
+    } else {
+      finish();
+    }
+  }
+
+  private void check(String name) {
+    if (isSettled(name)) return;
+
+    File file = new File(cacheDirectory, name);
+    Record<?> record = read(file, false);
+    if (record == null && encryptKey != null) record = read(file, true);
+
+    if (record == null) {
+      //Not cached anymore, or not readable so it is checked again on the next start.
+      if (file.exists()) {
+        synchronized (this) {
+          unchecked++;
+        }
+      }
+      return;
+    }
+    if (isMigrated(record)) evict(name);
+  }
+
+  private void finish() {
+    boolean unchecked;
+    synchronized (this) {
+      unchecked = this.unchecked > 0;
+    }
+    if (!unchecked) saveVersion();
+    synchronized (this) {
+      migrating = false;
+      settled.clear();
+    }
+    emit();
+    progress.onComplete();
+  }
+
+  private synchronized void emit() {
+    progress.onNext(new MigrationProgress(checked, records.size(), evicted));
+  }
+
+  /**
+   * Read the record from its file as RxCache does, leaving its data untyped as only the names of
+   * its classes are checked.
+   */
+  private Record<?> read(File file, boolean encrypted) {
+    File decrypted = null;
+    try {
+      if (encrypted) file = decrypted = fileEncryptor.decrypt(encryptKey, file);
+      return jolyglot.fromJson(file, jolyglot.newParameterizedType(Record.class, Object.class));
+    } catch (RuntimeException e) {
+      return null;
+    } finally {
+      if (decrypted != null) decrypted.delete();
+    }
+  }
+
+  private synchronized void settle(String key) {
+    settled.add(key);
+  }
+
+  private synchronized boolean isSettled(String key) {
+    return settled.contains(key);
+  }
+
+  /**
+   * Evict the record unless it has been written or evicted since it was read, holding the lock so
+   * no write settles it meanwhile.
+   */
+  private synchronized void evict(ConfigProvider configProvider) {
+    if (!settled.add(RecordKeys.fileOf(configProvider))) return;
+
+    Completable.fromObservable(processorProviders.process(ConfigProviders.evicting(configProvider)))
+        .onErrorComplete()
+        .blockingAwait();
+    evicted++;
+  }
+
+  /**
+   * Evict the record of the file with the keys recovered from its name, which name the same file
+   * even if slashes were replaced in them.
+   */
+  private void evict(String name) {
+    String[] keys = RecordKeys.keysOfFile(name);
+    evict(new ConfigProvider(keys[0], true, null, false, true, false, keys[1], keys[2],
+        Observable.error(new RuntimeException()), new EvictDynamicKeyGroup(false)));
+  }
+
+  /**
+   * Whether RxCache would evict the data, which matches either its class or, as it keeps them
+   * apart, the class of the first element of collections and of the first key and value of maps.
+   */
+  private boolean isMigrated(Object data) {
+    if (data instanceof Reply) data = ((Reply<?>) data).getData();
+    if (data == null) return false;
+    if (classNames.contains(data.getClass().getName())) return true;
+
+    if (data instanceof Collection) {
+      Collection<?> collection = (Collection<?>) data;
+      return !collection.isEmpty() && isMigratedClass(collection.iterator().next());
+    }
+    if (data instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) data;
+      if (map.isEmpty()) return false;
+      Map.Entry<?, ?> first = map.entrySet().iterator().next();
+      return isMigratedClass(first.getKey()) || isMigratedClass(first.getValue());
+    }
+    if (data.getClass().isArray()) {
+      return classNames.contains(data.getClass().getComponentType().getName());
+    }
+    return false;
+  }
+
+  /**
+   * Whether RxCache would evict the record, which keeps apart the class of its data, or of the
+   * elements of its data if it is a collection, and the class of the keys of its data if a map.
+   */
+  private boolean isMigrated(Record<?> record) {
+    return record.getDataClassName() != null && classNames.contains(record.getDataClassName())
+        || record.getDataKeyMapClassName() != null
+        && classNames.contains(record.getDataKeyMapClassName());
+  }
+
+  private boolean isMigratedClass(Object element) {
+    return element != null && classNames.contains(element.getClass().getName());
+  }
+
+  private int readVersion() {
+    File file = new File(cacheDirectory, VERSION_FILE);
+    if (!file.exists()) return 0;
+
+    try {
+      Integer version = jolyglot.fromJson(file, Integer.class);
+      return version != null ? version : 0;
+    } catch (RuntimeException e) {
+      return 0;
+    }
+  }
+
+  private void saveVersion() {
+    Writer writer = null;
+    try {
+      writer = new FileWriter(new File(cacheDirectory, VERSION_FILE), false);
+      writer.write(jolyglot.toJson(version));
+    } catch (IOException | RuntimeException e) {
+      //The migrations run again on the next start, evicting only the records of their classes.
+    } finally {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+}
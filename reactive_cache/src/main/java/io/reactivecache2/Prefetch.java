@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Policy of a provider group which warms the groups following the one read, along with the
+ * groups being warmed, so no more than maxConcurrent of them are in flight at the same time and
+ * a group is never warmed twice at once. Groups exceeding the bound are not warmed. Every provider
+ * keeps its own, as the groups of different keys are different records.
+ *
+ * @param <T> The type of the data to persist.
+ */
+final class Prefetch<T> {
+  final int groups;
+  final Function<Object, Object> next;
+  final Function<Object, Single<T>> loaderFactory;
+  private final Semaphore permits;
+  private final ConcurrentMap<String, Boolean> warming;
+
+  Prefetch(int groups, int maxConcurrent, Function<Object, Object> next,
+      Function<Object, Single<T>> loaderFactory) {
+    this.groups = groups;
+    this.next = next;
+    this.loaderFactory = loaderFactory;
+    this.permits = new Semaphore(maxConcurrent);
+    this.warming = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Whether the group can be warmed now, in which case {@link #warmed(String)} has to be called
+   * once done.
+   */
+  boolean warm(String group) {
+    if (warming.putIfAbsent(group, Boolean.TRUE) != null) return false;
+    if (permits.tryAcquire()) return true;
+
+    warming.remove(group);
+    return false;
+  }
+
+  void warmed(String group) {
+    warming.remove(group);
+    permits.release();
+  }
+}
@@ -17,13 +17,18 @@
 package io.reactivecache2;
 
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.SingleTransformer;
+import io.reactivex.schedulers.Schedulers;
 import io.rx_cache2.ConfigProvider;
 import io.rx_cache2.EvictDynamicKey;
 import io.rx_cache2.Reply;
+import io.rx_cache2.Source;
 import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,12 +37,42 @@ import java.util.concurrent.TimeUnit;
  * @param <T> The type of the data to persist.
  */
 public class Provider<T> {
-  private final ProviderBuilder<T> builder;
+  private static final EvictDynamicKey EVICT = new EvictDynamicKey(true);
+  private static final EvictDynamicKey KEEP = new EvictDynamicKey(false);
+
+  private final ProcessorProviders processorProviders;
+  private final SingleFlight singleFlight;
+  private final WriteTimes writeTimes;
+  private final RefreshAhead refreshAhead;
+  private final String key, stateKey;
+  private final boolean encrypted, expirable, coalesce, useExpiredData, refreshes;
+  private final Long lifeCache, lifeTime, staleWindow, refreshAfter;
+  private final Scheduler revalidateScheduler;
   protected final ExceptionAdapter exceptionAdapter;
 
   Provider(ProviderBuilder<T> builder) {
-    this.builder = builder;
     this.exceptionAdapter = new ExceptionAdapter();
+
+    //Resolved once so the configuration is not recomputed on every operation, nor changed by
+    //reusing the builder.
+    this.processorProviders = builder.processorProviders;
+    this.singleFlight = builder.singleFlight;
+    this.writeTimes = builder.writeTimes;
+    this.refreshAhead = builder.refreshAhead;
+    this.key = builder.key;
+    this.stateKey = StateKeys.of(key);
+    this.encrypted = builder.encrypted;
+    this.expirable = builder.expirable;
+    this.coalesce = builder.coalesce;
+    this.useExpiredData = builder.useExpiredData;
+    this.refreshes = builder.staleWindow != null || builder.refreshRatio != null;
+    this.lifeCache = builder.timeUnit != null ? builder.timeUnit.toMillis(builder.duration) : null;
+    this.lifeTime = lifeCache != null && builder.staleWindow != null ?
+        Long.valueOf(lifeCache + builder.staleWindow) : lifeCache;
+    this.staleWindow = builder.staleWindow;
+    this.refreshAfter = lifeCache != null && builder.refreshRatio != null ?
+        Long.valueOf((long) (lifeCache * builder.refreshRatio)) : null;
+    this.revalidateScheduler = builder.revalidateScheduler;
   }
 
   /**
@@ -45,10 +80,16 @@ public class Provider<T> {
    */
   public final Completable evict() {
     return Completable.defer(() ->
-        Completable.fromObservable(builder.processorProviders
+        Completable.fromObservable(processorProviders
             .process(getConfigProvider(Observable.error(new RuntimeException()),
-                new EvictDynamicKey(true), false, false)))
+                EVICT, false, false)))
             .onErrorResumeNext(exceptionAdapter::completeOnRxCacheLoaderError)
+            .andThen(discardPendingChangesIfKept())
+            .doOnComplete(() -> {
+              writeTimes.evicted(stateKey);
+              refreshAhead.evicted(stateKey);
+              evicted();
+            })
     );
   }
 
@@ -56,21 +97,50 @@ public class Provider<T> {
    * Replace the cached data by the element emitted from the loader.
    */
   public final SingleTransformer<T, T> replace() {
-    return loader ->
-        loader.flatMap(data -> Single.fromObservable(builder.processorProviders
-            .process(getConfigProvider(Observable.just(data),
-                new EvictDynamicKey(true), false, null))));
+    return loader -> loader.flatMap(data -> this.<T>write(data, false));
   }
 
   /**
    * Read from cache and throw if no data is available.
    */
   public final Single<T> read() {
-    return Single.defer(() ->
-        Single.fromObservable(builder.processorProviders
+    Single<T> read = Single.defer(() ->
+        Single.fromObservable(processorProviders
             .<T>process(getConfigProvider(exceptionAdapter.placeholderLoader(),
-                new EvictDynamicKey(false), false, null))))
+                KEEP, false, null))))
         .onErrorResumeNext(exceptionAdapter::stripPlaceholderLoaderException);
+    return keepsPendingChanges() ? read.flatMap(this::applyPendingChanges) : read;
+  }
+
+  /**
+   * Read from cache and complete without emitting if no data is available. Unlike {@link
+   * Provider#read()}, a miss does not build any exception, unless ReactiveCache has been
+   * configured with {@link ReactiveCache.Builder#useExpiredDataWhenNoLoaderAvailable()}, as
+   * expired data is dispatched the same as by {@link Provider#read()}.
+   */
+  public final Maybe<T> readIfPresent() {
+    Maybe<T> read = readRecordIfPresent();
+    return keepsPendingChanges() ?
+        read.flatMap(data -> applyPendingChanges(data).toMaybe()) : read;
+  }
+
+  /**
+   * Same as {@link Provider#readIfPresent()} but without applying the pending changes.
+   */
+  final Maybe<T> readRecordIfPresent() {
+    return Maybe.defer(() -> {
+      if (!useExpiredData) {
+        return processorProviders
+            .<T>process(getConfigProvider(Observable.<T>empty(), KEEP, false, null))
+            .singleElement();
+      }
+
+      //RxCache only dispatches expired data when the loader fails.
+      return processorProviders
+          .<T>process(getConfigProvider(exceptionAdapter.placeholderLoader(), KEEP, false, null))
+          .singleElement()
+          .onErrorResumeNext(exceptionAdapter::<T>emptyOnRxCacheLoaderError);
+    });
   }
 
   /**
@@ -78,20 +148,50 @@ public class Provider<T> {
    * element.
    */
   public final SingleTransformer<T, T> readWithLoader() {
-    return loader ->
-        Single.fromObservable(builder.processorProviders
-            .process(getConfigProvider(loader.toObservable(),
-                new EvictDynamicKey(false), false, null)));
+    return loader -> {
+      Single<T> read = refreshes || keepsPendingChanges() ?
+          readAndRefresh(loader).map(Reply::getData) :
+          Single.fromObservable(processorProviders
+              .process(getConfigProvider(loader.toObservable(), KEEP, false, null)));
+      return coalesce ? singleFlight.share(stateKey, read) : read;
+    };
+  }
+
+  private Single<Reply<T>> readAndRefresh(final Single<T> loader) {
+    return Single.fromObservable(processorProviders
+        .<Reply<T>>process(getConfigProvider(loader.toObservable(), KEEP, true, null)))
+        .flatMap(reply -> {
+          if (reply.getSource() == Source.CLOUD) {
+            if (staleWindow != null) writeTimes.written(stateKey);
+            if (refreshAfter != null) {
+              refreshAhead.loaded(stateKey, loader.compose(replace()).toCompletable(),
+                  refreshAfter);
+            }
+            return discardPendingChangesIfKept().andThen(Single.just(reply));
+          }
+
+          if (staleWindow != null && lifeCache != null
+              && writeTimes.age(stateKey) >= lifeCache) {
+            singleFlight.share(StateKeys.revalidating(stateKey), loader.compose(replace()))
+                .subscribeOn(revalidateScheduler)
+                .subscribe(data -> {}, error -> {});
+          }
+
+          if (refreshAfter != null) {
+            refreshAhead.read(stateKey, loader.compose(replace()).toCompletable());
+          }
+
+          return keepsPendingChanges() ? applyPendingChanges(reply.getData())
+              .map(data -> new Reply<>(data, reply.getSource(), reply.isEncrypted())) :
+              Single.just(reply);
+        });
   }
 
   /**
    * Same as {@link Provider#replace()} but wrap the data in a Reply object for debug purposes.
    */
   public final SingleTransformer<T, Reply<T>> replaceAsReply() {
-    return loader ->
-        loader.flatMap(data -> Single.fromObservable(builder.processorProviders
-            .process(getConfigProvider(Observable.just(data), new EvictDynamicKey(true), true,
-                null))));
+    return loader -> loader.flatMap(data -> this.<Reply<T>>write(data, true));
   }
 
   /**
@@ -99,32 +199,112 @@ public class Provider<T> {
    * purposes.
    */
   public final SingleTransformer<T, Reply<T>> readWithLoaderAsReply() {
-    return loader -> Single.fromObservable(builder.processorProviders
-        .process(getConfigProvider(loader.toObservable(), new EvictDynamicKey(false), true, null)));
+    return loader -> readAndRefresh(loader);
+  }
+
+  /**
+   * Write the data discarding the pending changes, and track the write for stale-while-revalidate
+   * and refresh-ahead, so {@link Provider#replace()} and {@link Provider#replaceAsReply()} behave
+   * the same.
+   */
+  private <R> Single<R> write(T data, boolean detailResponse) {
+    Single<R> write = discardPendingChangesIfKept().andThen(this.<R>record(data, detailResponse));
+    if (keepsPendingChanges()) {
+      //Discarded again, as a change may have been appended meanwhile to the previous data.
+      write = write.flatMap(written -> discardPendingChanges().andThen(Single.just(written)));
+    }
+    return write;
+  }
+
+  /**
+   * Same as {@link Provider#replace()} but keeping the pending changes, for the ones already
+   * applied to the data, i.e. by the compaction of a delta log, to be discarded by the caller.
+   */
+  final SingleTransformer<T, T> rebase() {
+    return loader -> loader.flatMap(data -> this.<T>record(data, false));
+  }
+
+  private <R> Single<R> record(T data, boolean detailResponse) {
+    return Single.fromObservable(processorProviders
+        .<R>process(getConfigProvider(Observable.just(data), EVICT, detailResponse, null)))
+        .doOnSuccess(written -> {
+          if (staleWindow != null) writeTimes.written(stateKey);
+          if (refreshAfter != null) refreshAhead.written(stateKey, refreshAfter);
+        });
+  }
+
+  /**
+   * The life time of the records of this provider, or null if they do not expire, so the records
+   * kept apart from them, i.e. the ones of a delta log, live as long as them.
+   */
+  final Long lifeTime() {
+    return lifeTime;
+  }
+
+  final boolean expirable() {
+    return expirable;
+  }
+
+  /**
+   * Whether this provider persists changes to its data apart from its record, as {@link
+   * ProviderList} does when configured with a delta log. If so, the changes are applied on every
+   * read and discarded every time the record is written or evicted.
+   */
+  boolean keepsPendingChanges() {
+    return false;
+  }
+
+  Single<T> applyPendingChanges(T data) {
+    return Single.just(data);
+  }
+
+  Completable discardPendingChanges() {
+    return Completable.complete();
+  }
+
+  /**
+   * The record has been evicted, for the state this provider keeps in memory about its data, as the
+   * index of {@link ProviderList}, to be dropped.
+   */
+  void evicted() {
+  }
+
+  private Completable discardPendingChangesIfKept() {
+    return keepsPendingChanges() ? discardPendingChanges() : Completable.complete();
   }
 
   private ConfigProvider getConfigProvider(Observable<T> loader,
       EvictDynamicKey evict, boolean detailResponse, Boolean useExpiredDataIfNotLoaderAvailable) {
-    Long lifeTime = builder.timeUnit != null ?
-        builder.timeUnit.toMillis(builder.duration) : null;
-
-    return new ConfigProvider(builder.key, useExpiredDataIfNotLoaderAvailable, lifeTime,
+    return new ConfigProvider(key, useExpiredDataIfNotLoaderAvailable, lifeTime,
         detailResponse,
-        builder.expirable, builder.encrypted, builder.key,
+        expirable, encrypted, key,
         "", loader, evict);
   }
 
   public static class ProviderBuilder<T> {
     protected String key;
-    private boolean encrypted, expirable;
-    private Long duration;
+    boolean encrypted;
+    private boolean expirable, coalesce;
+    private Long duration, staleWindow;
+    private Float refreshRatio;
     private TimeUnit timeUnit;
-    private final ProcessorProviders processorProviders;
+    private Scheduler revalidateScheduler;
+    final ProcessorProviders processorProviders;
+    private final boolean useExpiredData;
+    private final SingleFlight singleFlight;
+    private final WriteTimes writeTimes;
+    private final RefreshAhead refreshAhead;
 
-    ProviderBuilder(ProcessorProviders processorProviders) {
+    ProviderBuilder(ProcessorProviders processorProviders, boolean useExpiredData,
+        SingleFlight singleFlight, WriteTimes writeTimes, RefreshAhead refreshAhead) {
       this.encrypted = false;
       this.expirable = true;
+      this.coalesce = false;
       this.processorProviders = processorProviders;
+      this.useExpiredData = useExpiredData;
+      this.singleFlight = singleFlight;
+      this.writeTimes = writeTimes;
+      this.refreshAhead = refreshAhead;
     }
 
     /**
@@ -156,6 +336,56 @@ public class Provider<T> {
       return this;
     }
 
+    /**
+     * Keep serving the data for the given window once its life cache has elapsed. During that
+     * window {@link Provider#readWithLoader()} emits the cached data immediately and refreshes it in
+     * background by subscribing to the loader on {@link Schedulers#io()}. Once the window has
+     * elapsed too, the data is expired as usual. Only has effect if {@link #lifeCache(long,
+     * TimeUnit)} has been configured.
+     */
+    public ProviderBuilder<T> staleWhileRevalidate(long window, TimeUnit timeUnit) {
+      return staleWhileRevalidate(window, timeUnit, Schedulers.io());
+    }
+
+    /**
+     * Same as {@link #staleWhileRevalidate(long, TimeUnit)} but refreshing the data on the
+     * supplied scheduler.
+     */
+    public ProviderBuilder<T> staleWhileRevalidate(long window, TimeUnit timeUnit,
+        Scheduler scheduler) {
+      this.staleWindow = timeUnit.toMillis(window);
+      this.revalidateScheduler = scheduler;
+      return this;
+    }
+
+    /**
+     * Refresh the data before it expires. Once the given ratio of its life cache has elapsed, the
+     * last loader supplied to {@link Provider#readWithLoader()} is subscribed again in background to
+     * replace the data, as long as it has been read since it was written. The amount of concurrent
+     * refreshes is bounded by {@link ReactiveCache.Builder#maxConcurrentRefreshes(int)}. Only has
+     * effect if {@link #lifeCache(long, TimeUnit)} has been configured.
+     *
+     * @param lifeCacheRatio a value between 0 and 1, i.e. 0.8f to refresh when 80% of the life
+     * cache has elapsed.
+     */
+    public ProviderBuilder<T> refreshAhead(float lifeCacheRatio) {
+      if (lifeCacheRatio <= 0 || lifeCacheRatio >= 1) {
+        throw new InvalidParameterException("lifeCacheRatio must be between 0 and 1");
+      }
+      this.refreshRatio = lifeCacheRatio;
+      return this;
+    }
+
+    /**
+     * If called, concurrent calls to {@link Provider#readWithLoader()} for this key share one
+     * subscription to the loader and one write to the cache, and every subscriber receives the same
+     * element or error. By default is false.
+     */
+    public ProviderBuilder<T> coalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
     /**
      * Set the key for the provider.
      */
@@ -17,14 +17,28 @@
 package io.reactivecache2;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.SingleTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
 import io.rx_cache2.ConfigProvider;
 import io.rx_cache2.EvictDynamicKey;
 import io.rx_cache2.EvictDynamicKeyGroup;
 import io.rx_cache2.Reply;
+import io.rx_cache2.Source;
 import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -33,12 +47,56 @@ import java.util.concurrent.TimeUnit;
  * @param <T> The type of the data to persist.
  */
 public class ProviderGroup<T> {
-  private final ProviderBuilder<T> builder;
+  private static final EvictDynamicKey EVICT = new EvictDynamicKey(true);
+  private static final EvictDynamicKeyGroup EVICT_GROUP = new EvictDynamicKeyGroup(true);
+  private static final EvictDynamicKeyGroup KEEP_GROUP = new EvictDynamicKeyGroup(false);
+
+  private final ProcessorProviders processorProviders;
+  private final SingleFlight singleFlight;
+  private final WriteTimes writeTimes;
+  private final RefreshAhead refreshAhead;
+  private final String key, groupsStateKey;
+  private final boolean encrypted, expirable, coalesce, useExpiredData, refreshes;
+  private final Long lifeCache, lifeTime, staleWindow, refreshAfter;
+  private final Scheduler revalidateScheduler;
+  private final int maxGroups;
+  private final long groupIdleMillis;
+  private final boolean limitsGroups;
+  private final GroupIndex groupIndex;
+  private final Prefetch<T> prefetch;
   protected final ExceptionAdapter exceptionAdapter;
 
   ProviderGroup(ProviderBuilder<T> builder) {
-    this.builder = builder;
     this.exceptionAdapter = new ExceptionAdapter();
+
+    //Resolved once so the configuration is not recomputed on every operation, nor changed by
+    //reusing the builder.
+    this.processorProviders = builder.processorProviders;
+    this.singleFlight = builder.singleFlight;
+    this.writeTimes = builder.writeTimes;
+    this.refreshAhead = builder.refreshAhead;
+    this.key = builder.key;
+    this.groupsStateKey = StateKeys.ofGroups(key);
+    this.encrypted = builder.encrypted;
+    this.expirable = builder.expirable;
+    this.coalesce = builder.coalesce;
+    this.useExpiredData = builder.useExpiredData;
+    this.refreshes = builder.staleWindow != null || builder.refreshRatio != null;
+    this.lifeCache = builder.timeUnit != null ? builder.timeUnit.toMillis(builder.duration) : null;
+    this.lifeTime = lifeCache != null && builder.staleWindow != null ?
+        Long.valueOf(lifeCache + builder.staleWindow) : lifeCache;
+    this.staleWindow = builder.staleWindow;
+    this.refreshAfter = lifeCache != null && builder.refreshRatio != null ?
+        Long.valueOf((long) (lifeCache * builder.refreshRatio)) : null;
+    this.revalidateScheduler = builder.revalidateScheduler;
+    this.maxGroups = builder.maxGroups != null ? builder.maxGroups : Integer.MAX_VALUE;
+    this.groupIdleMillis = builder.groupIdleMillis != null ?
+        builder.groupIdleMillis : Long.MAX_VALUE;
+    this.limitsGroups = builder.maxGroups != null || builder.groupIdleMillis != null;
+    this.groupIndex = builder.groupIndex;
+    this.prefetch = builder.prefetchGroups != null ?
+        new Prefetch<>(builder.prefetchGroups, builder.prefetchMaxConcurrent, builder.prefetchNext,
+            builder.prefetchLoaderFactory) : null;
   }
 
   /**
@@ -46,10 +104,17 @@ public class ProviderGroup<T> {
    */
   public final Completable evict() {
     return Completable.defer(() ->
-        Completable.fromObservable(builder.processorProviders
+        Completable.fromObservable(processorProviders
             .process(getConfigProvider(Observable.error(new RuntimeException()), "",
-                new EvictDynamicKey(true), false, false)))
+                EVICT, false, false)))
             .onErrorResumeNext(exceptionAdapter::completeOnRxCacheLoaderError)
+            .andThen(keepsPendingChanges() ? discardAllPendingChanges() : Completable.complete())
+            .doOnComplete(() -> {
+              writeTimes.evictedStartingWith(groupsStateKey);
+              refreshAhead.evictedStartingWith(groupsStateKey);
+              groupIndex.evictedAll(key);
+              evictedAll();
+            })
     );
   }
 
@@ -58,10 +123,17 @@ public class ProviderGroup<T> {
    */
   public final Completable evict(final Object group) {
     return Completable.defer(() ->
-        Completable.fromObservable(builder.processorProviders
+        Completable.fromObservable(processorProviders
             .process(getConfigProvider(Observable.error(new RuntimeException()), group.toString(),
-                new EvictDynamicKeyGroup(true), false, false)))
+                EVICT_GROUP, false, false)))
             .onErrorResumeNext(exceptionAdapter::completeOnRxCacheLoaderError)
+            .andThen(discardPendingChangesIfKept(group))
+            .doOnComplete(() -> {
+              writeTimes.evicted(StateKeys.of(key, group));
+              refreshAhead.evicted(StateKeys.of(key, group));
+              groupIndex.evicted(key, group.toString());
+              evicted(group);
+            })
     );
   }
 
@@ -69,21 +141,136 @@ public class ProviderGroup<T> {
    * Replace the cached data by group based on the element emitted from the loader.
    */
   public final SingleTransformer<T, T> replace(final Object group) {
-    return loader ->
-        loader.flatMap(data -> Single.fromObservable(builder.processorProviders
-            .process(getConfigProvider(Observable.just(data), group.toString(),
-                new EvictDynamicKeyGroup(true), false, null))));
+    return loader -> loader.flatMap(data -> this.<T>write(group, data, false));
   }
 
   /**
    * Read from cache by group and throw if no data is available.
    */
   public final Single<T> read(final Object group) {
-    return Single.defer(() ->
-        Single.fromObservable(builder.processorProviders
+    Single<T> read = Single.defer(() ->
+        Single.fromObservable(processorProviders
             .<T>process(getConfigProvider(exceptionAdapter.placeholderLoader(), group.toString(),
-                new EvictDynamicKeyGroup(false), false, null))))
+                KEEP_GROUP, false, null))))
         .onErrorResumeNext(exceptionAdapter::stripPlaceholderLoaderException);
+    return accessing(keepsPendingChanges() ?
+        read.flatMap(data -> applyPendingChanges(group, data)) : read, group);
+  }
+
+  /**
+   * Same as {@link Provider#readIfPresent()} but reading by group.
+   */
+  public final Maybe<T> readIfPresent(final Object group) {
+    Maybe<T> read = readRecordIfPresent(group);
+    if (keepsPendingChanges()) {
+      read = read.flatMap(data -> applyPendingChanges(group, data).toMaybe());
+    }
+    return limitsGroups ? read.doOnSuccess(data -> accessed(group)) : read;
+  }
+
+  /**
+   * Same as {@link ProviderGroup#readIfPresent(Object)} but without applying the pending changes.
+   */
+  final Maybe<T> readRecordIfPresent(final Object group) {
+    return Maybe.defer(() -> {
+      if (!useExpiredData) {
+        return processorProviders
+            .<T>process(getConfigProvider(Observable.<T>empty(), group.toString(),
+                KEEP_GROUP, false, null))
+            .singleElement();
+      }
+
+      //RxCache only dispatches expired data when the loader fails.
+      return processorProviders
+          .<T>process(getConfigProvider(exceptionAdapter.placeholderLoader(), group.toString(),
+              KEEP_GROUP, false, null))
+          .singleElement()
+          .onErrorResumeNext(exceptionAdapter::<T>emptyOnRxCacheLoaderError);
+    });
+  }
+
+  /**
+   * The groups cached and not expired yet, from the least to the most recently used one. They are
+   * listed from an index persisted apart from the records of the groups, so none is read.
+   */
+  public final Flowable<String> groups() {
+    return cachedGroups().map(CachedGroup::group);
+  }
+
+  /**
+   * Same as {@link ProviderGroup#groups()} but with the size, the expiry and the last access of
+   * every group.
+   */
+  public final Flowable<CachedGroup> cachedGroups() {
+    return Flowable.defer(() -> groupIndex.of(key, encrypted).cached().toFlowable()
+        .flatMapIterable(cached -> cached));
+  }
+
+  /**
+   * Read from cache the data of every group in a single pass, as {@link
+   * ProviderGroup#readIfPresent(Object)} does. Groups with no data available are left out of the
+   * map, which keeps the order of the groups.
+   */
+  public final Single<Map<Object, T>> readAll(final Collection<?> groups) {
+    return Single.defer(() -> {
+      final Map<Object, T> found = new LinkedHashMap<>();
+
+      return Observable.fromIterable(new LinkedHashSet<Object>(groups))
+          .concatMap(group -> readPresent(group)
+              .doOnNext(data -> {
+                found.put(group, data);
+                accessed(group);
+              }))
+          .toList()
+          .map(ignore -> found);
+    });
+  }
+
+  /**
+   * Same as {@link ProviderGroup#readAll(Collection)} but calling the loader once with the groups
+   * with no data available, caching every element it returns for them. Groups the loader does not
+   * return data for are left out of the map.
+   *
+   * @param loader receives the missing groups, in the order they were given.
+   */
+  public final Single<Map<Object, T>> readAllWithLoader(final Collection<?> groups,
+      final Function<Collection<Object>, Single<Map<Object, T>>> loader) {
+    return readAll(groups).flatMap(found -> {
+      final List<Object> missing = new ArrayList<>();
+      for (Object group : new LinkedHashSet<Object>(groups)) {
+        if (!found.containsKey(group)) missing.add(group);
+      }
+      if (missing.isEmpty()) return Single.just(found);
+
+      Single<Map<Object, T>> loading = loader.apply(missing);
+      if (loading == null) {
+        return Single.error(new NullPointerException("The loader returned a null Single"));
+      }
+
+      return loading.flatMap(loaded ->
+          Observable.fromIterable(missing)
+              .filter(group -> loaded.get(group) != null)
+              .concatMap(group -> Single.just(loaded.get(group))
+                  .compose(replace(group))
+                  .toObservable()
+                  .doOnNext(data -> found.put(group, data)))
+              .toList()
+              .map(ignore -> {
+                //Keep the order of the groups given, as the loaded ones were appended.
+                Map<Object, T> all = new LinkedHashMap<>();
+                for (Object group : groups) {
+                  T data = found.get(group);
+                  if (data != null) all.put(group, data);
+                }
+                return all;
+              }));
+    });
+  }
+
+  private Observable<T> readPresent(Object group) {
+    Observable<T> read = readRecordIfPresent(group).toObservable();
+    return keepsPendingChanges() ?
+        read.concatMap(data -> applyPendingChanges(group, data).toObservable()) : read;
   }
 
   /**
@@ -91,9 +278,57 @@ public class ProviderGroup<T> {
    * its element.
    */
   public final SingleTransformer<T, T> readWithLoader(final Object group) {
-    return loader -> Single.fromObservable(builder.processorProviders
-        .process(getConfigProvider(loader.toObservable(), group.toString(),
-            new EvictDynamicKeyGroup(false), false, null)));
+    SingleTransformer<T, T> read = readWithLoaderWithoutPrefetch(group);
+    if (prefetch == null) return read;
+
+    return loader -> loader.compose(read).doOnSuccess(data -> prefetchAfter(group));
+  }
+
+  private SingleTransformer<T, T> readWithLoaderWithoutPrefetch(final Object group) {
+    return source -> {
+      final Single<T> loader = source.doOnSuccess(data -> written(group));
+      Single<T> read = refreshes || keepsPendingChanges() ?
+          readAndRefresh(loader, group).map(Reply::getData) :
+          Single.fromObservable(processorProviders
+              .process(getConfigProvider(loader.toObservable(), group.toString(),
+                  KEEP_GROUP, false, null)));
+      return accessing(coalesce ?
+          singleFlight.share(StateKeys.of(key, group), read) : read, group);
+    };
+  }
+
+  private Single<Reply<T>> readAndRefresh(final Single<T> loader, final Object group) {
+    final String groupKey = StateKeys.of(key, group);
+
+    return Single.fromObservable(processorProviders
+        .<Reply<T>>process(getConfigProvider(loader.toObservable(), group.toString(),
+            KEEP_GROUP, true, null)))
+        .flatMap(reply -> {
+          if (reply.getSource() == Source.CLOUD) {
+            if (staleWindow != null) writeTimes.written(groupKey);
+            if (refreshAfter != null) {
+              refreshAhead.loaded(groupKey,
+                  loader.compose(replace(group)).toCompletable(), refreshAfter);
+            }
+            return discardPendingChangesIfKept(group).andThen(Single.just(reply));
+          }
+
+          if (staleWindow != null && lifeCache != null
+              && writeTimes.age(groupKey) >= lifeCache) {
+            singleFlight.share(StateKeys.revalidating(groupKey),
+                loader.compose(replace(group)))
+                .subscribeOn(revalidateScheduler)
+                .subscribe(data -> {}, error -> {});
+          }
+
+          if (refreshAfter != null) {
+            refreshAhead.read(groupKey, loader.compose(replace(group)).toCompletable());
+          }
+
+          return keepsPendingChanges() ? applyPendingChanges(group, reply.getData())
+              .map(data -> new Reply<>(data, reply.getSource(), reply.isEncrypted())) :
+              Single.just(reply);
+        });
   }
 
   /**
@@ -101,10 +336,7 @@ public class ProviderGroup<T> {
    * purposes.
    */
   public final SingleTransformer<T, Reply<T>> replaceAsReply(final Object group) {
-    return loader ->
-        loader.flatMap(data -> Single.fromObservable(builder.processorProviders
-            .process(getConfigProvider(Observable.just(data), group.toString(),
-                new EvictDynamicKeyGroup(true), true, null))));
+    return loader -> loader.flatMap(data -> this.<Reply<T>>write(group, data, true));
   }
 
   /**
@@ -112,33 +344,205 @@ public class ProviderGroup<T> {
    * debug purposes.
    */
   public final SingleTransformer<T, Reply<T>> readWithLoaderAsReply(final Object group) {
-    return loader -> Single.fromObservable(builder.processorProviders
-        .process(getConfigProvider(loader.toObservable(), group.toString(), new EvictDynamicKeyGroup(false),
-            true, null)));
+    return loader ->
+        accessing(readAndRefresh(loader.doOnSuccess(data -> written(group)), group), group);
+  }
+
+  /**
+   * Write the data of the group discarding its pending changes, and track the write, so {@link
+   * ProviderGroup#replace(Object)} and {@link ProviderGroup#replaceAsReply(Object)} behave the
+   * same.
+   */
+  private <R> Single<R> write(final Object group, T data, boolean detailResponse) {
+    Single<R> write = discardPendingChangesIfKept(group)
+        .andThen(this.<R>record(group, data, detailResponse));
+    if (keepsPendingChanges()) {
+      //Discarded again, as a change may have been appended meanwhile to the previous data.
+      write = write.flatMap(written -> discardPendingChanges(group).andThen(Single.just(written)));
+    }
+    return write;
+  }
+
+  /**
+   * Same as {@link Provider#rebase()} but for the record of the group.
+   */
+  final SingleTransformer<T, T> rebase(final Object group) {
+    return loader -> loader.flatMap(data -> this.<T>record(group, data, false));
+  }
+
+  private <R> Single<R> record(final Object group, T data, boolean detailResponse) {
+    return Single.fromObservable(processorProviders
+        .<R>process(getConfigProvider(Observable.just(data), group.toString(),
+            EVICT_GROUP, detailResponse, null)))
+        .doOnSuccess(written -> {
+          if (staleWindow != null) writeTimes.written(StateKeys.of(key, group));
+          if (refreshAfter != null) refreshAhead.written(StateKeys.of(key, group), refreshAfter);
+          written(group);
+        });
+  }
+
+  /**
+   * Same as {@link Provider#lifeTime()}
+   */
+  final Long lifeTime() {
+    return lifeTime;
+  }
+
+  final boolean expirable() {
+    return expirable;
+  }
+
+  /**
+   * Same as {@link Provider#keepsPendingChanges()} but keeping the changes by group.
+   */
+  boolean keepsPendingChanges() {
+    return false;
+  }
+
+  Single<T> applyPendingChanges(Object group, T data) {
+    return Single.just(data);
+  }
+
+  Completable discardPendingChanges(Object group) {
+    return Completable.complete();
+  }
+
+  Completable discardAllPendingChanges() {
+    return Completable.complete();
+  }
+
+  /**
+   * Same as {@link Provider#evicted()} but for the record of the group.
+   */
+  void evicted(Object group) {
+  }
+
+  /**
+   * Same as {@link Provider#evicted()} but for the records of every group.
+   */
+  void evictedAll() {
+  }
+
+  /**
+   * Warm in the background the groups following the one read, stopping at the first group the
+   * policy has no next for. As nobody waits for them, the errors of the policy and of the loads
+   * are routed to {@link RxJavaPlugins#onError(Throwable)}.
+   */
+  private void prefetchAfter(Object group) {
+    Object next = group;
+    for (int i = 0; i < prefetch.groups; i++) {
+      try {
+        next = prefetch.next.apply(next);
+      } catch (Exception e) {
+        RxJavaPlugins.onError(e);
+        return;
+      }
+      if (next == null) return;
+
+      final String warmed = next.toString();
+      if (!prefetch.warm(warmed)) continue;
+
+      Single<T> loader;
+      try {
+        loader = prefetch.loaderFactory.apply(next);
+      } catch (Exception e) {
+        prefetch.warmed(warmed);
+        RxJavaPlugins.onError(e);
+        return;
+      }
+
+      loader.compose(readWithLoaderWithoutPrefetch(next))
+          .subscribeOn(Schedulers.io())
+          .doFinally(() -> prefetch.warmed(warmed))
+          .subscribe(data -> {}, RxJavaPlugins::onError);
+    }
+  }
+
+  private <R> Single<R> accessing(Single<R> read, Object group) {
+    return limitsGroups ? read.doOnSuccess(data -> accessed(group)) : read;
+  }
+
+  /**
+   * Mark the group as the most recently used one, evicting the groups of this provider which
+   * exceed its max groups or have been idle for too long.
+   */
+  private void accessed(Object group) {
+    if (!limitsGroups) return;
+
+    GroupIndex.Groups groups = groupIndex.of(key, encrypted);
+    evictGroups(groups.accessed(group.toString(), maxGroups, groupIdleMillis));
+    if (groupIdleMillis != Long.MAX_VALUE) {
+      groups.sweepIdle(groupIdleMillis, this::evictIdleGroups);
+    }
+  }
+
+  /**
+   * Index the group as written, with the time its record expires.
+   */
+  private void written(Object group) {
+    groupIndex.of(key, encrypted).written(group.toString(),
+        lifeTime != null ? System.currentTimeMillis() + lifeTime : Long.MAX_VALUE);
+    accessed(group);
+  }
+
+  private void evictIdleGroups() {
+    GroupIndex.Groups groups = groupIndex.of(key, encrypted);
+    evictGroups(groups.idle(groupIdleMillis));
+    groups.sweepIdle(groupIdleMillis, this::evictIdleGroups);
+  }
+
+  private void evictGroups(List<String> groups) {
+    for (String group : groups) {
+      evict(group)
+          .subscribeOn(Schedulers.io())
+          .subscribe(() -> {}, error -> {});
+    }
+  }
+
+  private Completable discardPendingChangesIfKept(Object group) {
+    return keepsPendingChanges() ? discardPendingChanges(group) : Completable.complete();
   }
 
   private ConfigProvider getConfigProvider(Observable<T> loader, String group,
       EvictDynamicKey evict, boolean detailResponse, Boolean useExpiredDataIfNotLoaderAvailable) {
-    Long lifeTime = builder.timeUnit != null ?
-        builder.timeUnit.toMillis(builder.duration) : null;
-
-    return new ConfigProvider(builder.key, useExpiredDataIfNotLoaderAvailable, lifeTime,
+    return new ConfigProvider(key, useExpiredDataIfNotLoaderAvailable, lifeTime,
         detailResponse,
-        builder.expirable, builder.encrypted, builder.key,
+        expirable, encrypted, key,
         group, loader, evict);
   }
 
   public static class ProviderBuilder<T> {
     protected String key;
-    private boolean encrypted, expirable;
-    private Long duration;
+    boolean encrypted;
+    private boolean expirable, coalesce;
+    private Long duration, staleWindow;
+    private Float refreshRatio;
     private TimeUnit timeUnit;
-    private final ProcessorProviders processorProviders;
+    private Scheduler revalidateScheduler;
+    private Integer maxGroups;
+    private Long groupIdleMillis;
+    private Integer prefetchGroups, prefetchMaxConcurrent;
+    private Function<Object, Object> prefetchNext;
+    private Function<Object, Single<T>> prefetchLoaderFactory;
+    final ProcessorProviders processorProviders;
+    private final boolean useExpiredData;
+    private final SingleFlight singleFlight;
+    private final WriteTimes writeTimes;
+    private final RefreshAhead refreshAhead;
+    private final GroupIndex groupIndex;
 
-    ProviderBuilder(ProcessorProviders processorProviders) {
+    ProviderBuilder(ProcessorProviders processorProviders, boolean useExpiredData,
+        SingleFlight singleFlight, WriteTimes writeTimes, RefreshAhead refreshAhead,
+        GroupIndex groupIndex) {
       this.encrypted = false;
       this.expirable = true;
+      this.coalesce = false;
       this.processorProviders = processorProviders;
+      this.useExpiredData = useExpiredData;
+      this.singleFlight = singleFlight;
+      this.writeTimes = writeTimes;
+      this.refreshAhead = refreshAhead;
+      this.groupIndex = groupIndex;
     }
 
     /**
@@ -166,6 +570,99 @@ public class ProviderGroup<T> {
       return this;
     }
 
+    /**
+     * Same as {@link Provider.ProviderBuilder#staleWhileRevalidate(long, TimeUnit)}
+     */
+    public ProviderBuilder<T> staleWhileRevalidate(long window, TimeUnit timeUnit) {
+      return staleWhileRevalidate(window, timeUnit, Schedulers.io());
+    }
+
+    /**
+     * Same as {@link Provider.ProviderBuilder#staleWhileRevalidate(long, TimeUnit, Scheduler)}
+     */
+    public ProviderBuilder<T> staleWhileRevalidate(long window, TimeUnit timeUnit,
+        Scheduler scheduler) {
+      this.staleWindow = timeUnit.toMillis(window);
+      this.revalidateScheduler = scheduler;
+      return this;
+    }
+
+    /**
+     * Same as {@link Provider.ProviderBuilder#refreshAhead(float)} but refreshing every group on
+     * its own.
+     */
+    public ProviderBuilder<T> refreshAhead(float lifeCacheRatio) {
+      if (lifeCacheRatio <= 0 || lifeCacheRatio >= 1) {
+        throw new InvalidParameterException("lifeCacheRatio must be between 0 and 1");
+      }
+      this.refreshRatio = lifeCacheRatio;
+      return this;
+    }
+
+    /**
+     * Same as {@link Provider.ProviderBuilder#coalesce(boolean)} but calls are coalesced by group.
+     */
+    public ProviderBuilder<T> coalesce(boolean coalesce) {
+      this.coalesce = coalesce;
+      return this;
+    }
+
+    /**
+     * Keep at most the given amount of groups of this provider cached, evicting the least recently
+     * read or written ones once exceeded, so a provider with unbounded groups (i.e. search queries
+     * or pages) does not take the disk cache size from the rest of providers. Groups cached before
+     * the provider kept its index of groups are not counted until they are read or written.
+     */
+    public ProviderBuilder<T> maxGroups(int maxGroups) {
+      if (maxGroups < 1) {
+        throw new InvalidParameterException("maxGroups must be greater than 0");
+      }
+      this.maxGroups = maxGroups;
+      return this;
+    }
+
+    /**
+     * Evict the groups of this provider which have not been read nor written for the given time.
+     * Groups cached before the provider kept its index of groups are not evicted until they are
+     * read or written.
+     */
+    public ProviderBuilder<T> groupIdleTimeout(long duration, TimeUnit timeUnit) {
+      if (duration < 1) {
+        throw new InvalidParameterException("duration must be greater than 0");
+      }
+      this.groupIdleMillis = timeUnit.toMillis(duration);
+      return this;
+    }
+
+    /**
+     * After every read with {@link ProviderGroup#readWithLoader(Object)}, warm the groups following
+     * the one read in the background, reading them with the loader the factory returns for them,
+     * so reading them next, i.e. the next pages, mostly hits the cache.
+     *
+     * @param groups the amount of groups following the one read to warm
+     * @param maxConcurrent the max amount of groups of this provider warmed at the same time,
+     * groups exceeding it are not warmed
+     * @param next returns the group following the given one, or null if there is none
+     * @param loaderFactory returns the loader of the given group
+     */
+    public ProviderBuilder<T> prefetch(int groups, int maxConcurrent,
+        Function<Object, Object> next, Function<Object, Single<T>> loaderFactory) {
+      if (groups < 1) {
+        throw new InvalidParameterException("groups must be greater than 0");
+      }
+      if (maxConcurrent < 1) {
+        throw new InvalidParameterException("maxConcurrent must be greater than 0");
+      }
+      if (next == null || loaderFactory == null) {
+        throw new InvalidParameterException("next and loaderFactory can not be null");
+      }
+      this.prefetchGroups = groups;
+      this.prefetchMaxConcurrent = maxConcurrent;
+      this.prefetchNext = next;
+      this.prefetchLoaderFactory = loaderFactory;
+      return this;
+    }
+
     /**
      * Same as {@link Provider.ProviderBuilder#withKey(Object)}
      */
@@ -16,22 +16,113 @@
 
 package io.reactivecache2;
 
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
 import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
 import java.util.List;
 
 public final class ProviderGroupList<T> extends ProviderGroup<List<T>> {
-  ProviderGroupList(ProviderBuilder<List<T>> builder) {
+  private final DeltaLog<T> deltaLog;
+  private final ActionsList.KeyExtractor<T> keyExtractor;
+  private final Versions versions;
+  private final String key;
+
+  ProviderGroupList(ProviderBuilderList<T> builder) {
     super(builder);
+    this.deltaLog = builder.compactionThreshold != null ?
+        new DeltaLog<T>(builder.internalProviders, builder.versions, builder.key, true,
+            builder.encrypted, expirable(), lifeTime(), builder.compactionThreshold) : null;
+    this.keyExtractor = builder.keyExtractor;
+    this.versions = builder.versions;
+    this.key = builder.key;
   }
 
   public ActionsList<T> entries(Object group) {
-    return ActionsList.with(elements -> elements.compose(replace(group)),
-        read(group).onErrorResumeNext(exceptionAdapter::emptyListIfRxCacheException));
+    ActionsList.Evict<T> evict = elements -> elements.compose(replace(group));
+    Single<List<T>> cache =
+        read(group).onErrorResumeNext(exceptionAdapter::emptyListIfRxCacheException);
+
+    ActionsList.Editor<T> editor = deltaLog == null ? null :
+        edits -> deltaLog.edit(group.toString(), edits, readRecordIfPresent(group),
+            replace(group), rebase(group));
+    Versions.Version version = versions.of(StateKeys.of(key, group));
+    KeyIndex<T> keyIndex = keyExtractor != null ? version.keyIndex(keyExtractor) : null;
+    return ActionsList.with(evict, cache, editor, keyIndex, version);
+  }
+
+  /**
+   * Same as {@link ProviderList#stream()} but for the list of the group.
+   */
+  public Flowable<T> stream(Object group) {
+    return ProviderList.stream(read(group));
+  }
+
+  /**
+   * Same as {@link ProviderList#readRange(int, int)} but for the list of the group.
+   */
+  public Single<List<T>> readRange(Object group, int offset, int limit) {
+    return ProviderList.range(read(group), offset, limit);
+  }
+
+  @Override boolean keepsPendingChanges() {
+    return deltaLog != null;
+  }
+
+  @Override Single<List<T>> applyPendingChanges(Object group, List<T> data) {
+    return deltaLog.apply(group.toString(), data);
+  }
+
+  @Override Completable discardPendingChanges(Object group) {
+    return deltaLog.discard(group.toString());
+  }
+
+  @Override Completable discardAllPendingChanges() {
+    return deltaLog.discardAll();
+  }
+
+  @Override void evicted(Object group) {
+    versions.of(StateKeys.of(key, group)).evicted();
+  }
+
+  @Override void evictedAll() {
+    versions.evictedStartingWith(StateKeys.ofGroups(key));
   }
 
   public static class ProviderBuilderList<T> extends ProviderBuilder<List<T>> {
-    ProviderBuilderList(ProcessorProviders processorProviders) {
-      super(processorProviders);
+    private Integer compactionThreshold;
+    private ActionsList.KeyExtractor<T> keyExtractor;
+    private final Versions versions;
+    private final ProcessorProviders internalProviders;
+
+    ProviderBuilderList(ProcessorProviders processorProviders, boolean useExpiredData,
+        SingleFlight singleFlight, WriteTimes writeTimes, RefreshAhead refreshAhead,
+        GroupIndex groupIndex, Versions versions, ProcessorProviders internalProviders) {
+      super(processorProviders, useExpiredData, singleFlight, writeTimes, refreshAhead,
+          groupIndex);
+      this.versions = versions;
+      this.internalProviders = internalProviders;
+    }
+
+    /**
+     * Same as {@link ProviderList.ProviderBuilderList#deltaLog(int)} but keeping a log by group.
+     */
+    public ProviderBuilderList<T> deltaLog(int compactionThreshold) {
+      if (compactionThreshold < 1) {
+        throw new InvalidParameterException("compactionThreshold must be greater than 0");
+      }
+      this.compactionThreshold = compactionThreshold;
+      return this;
+    }
+
+    /**
+     * Same as {@link ProviderList.ProviderBuilderList#keyExtractor(ActionsList.KeyExtractor)} but
+     * keeping an index by group.
+     */
+    public ProviderBuilderList<T> keyExtractor(ActionsList.KeyExtractor<T> keyExtractor) {
+      this.keyExtractor = keyExtractor;
+      return this;
     }
 
     @Override public <R extends ProviderGroup<List<T>>> R withKey(Object key) {
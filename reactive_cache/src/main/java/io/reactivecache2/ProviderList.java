@@ -16,22 +16,164 @@
 
 package io.reactivecache2;
 
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
 import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public final class ProviderList<T> extends Provider<List<T>> {
-  ProviderList(ProviderBuilder<List<T>> builder) {
+  private final DeltaLog<T> deltaLog;
+  private final ActionsList.KeyExtractor<T> keyExtractor;
+  private final Versions.Version version;
+
+  ProviderList(ProviderBuilderList<T> builder) {
     super(builder);
+    this.deltaLog = builder.compactionThreshold != null ?
+        new DeltaLog<T>(builder.internalProviders, builder.versions, builder.key, false,
+            builder.encrypted, expirable(), lifeTime(), builder.compactionThreshold) : null;
+    this.keyExtractor = builder.keyExtractor;
+    this.version = builder.versions.of(StateKeys.of(builder.key));
   }
 
   public ActionsList<T> entries() {
-    return ActionsList.with(elements -> elements.compose(replace()),
-        read().onErrorResumeNext(exceptionAdapter::emptyListIfRxCacheException));
+    ActionsList.Evict<T> evict = elements -> elements.compose(replace());
+    Single<List<T>> cache =
+        read().onErrorResumeNext(exceptionAdapter::emptyListIfRxCacheException);
+
+    ActionsList.Editor<T> editor = deltaLog == null ? null :
+        edits -> deltaLog.edit("", edits, readRecordIfPresent(), replace(), rebase());
+    KeyIndex<T> keyIndex = keyExtractor != null ? version.keyIndex(keyExtractor) : null;
+    return ActionsList.with(evict, cache, editor, keyIndex, version);
+  }
+
+  /**
+   * Emit the elements of the cached list one by one, honouring the backpressure of the
+   * subscriber. Every element is released once emitted, so the elements already consumed can be
+   * garbage collected while the remaining ones are being consumed. Same as {@link #read()}, it
+   * throws if there is no data cached.
+   */
+  public Flowable<T> stream() {
+    return stream(read());
+  }
+
+  /**
+   * Read the elements of the cached list from offset to offset + limit, or the ones available if
+   * the list ends before, i.e. a page of an infinite scroll. The whole list is still read, as it is
+   * cached as a single record, and the elements of the range are copied out of it, so the rest of
+   * the list can be garbage collected right after. Same as {@link #read()}, it throws if there is
+   * no data cached.
+   *
+   * @param offset the position of the first element to read.
+   * @param limit the max amount of elements to read.
+   */
+  public Single<List<T>> readRange(int offset, int limit) {
+    return range(read(), offset, limit);
+  }
+
+  static <T> Single<List<T>> range(Single<List<T>> list, final int offset, final int limit) {
+    if (offset < 0 || limit < 0) {
+      return Single.error(new IllegalArgumentException("offset and limit can not be negative"));
+    }
+
+    return list.map(elements -> {
+      int from = Math.min(offset, elements.size());
+      int to = (int) Math.min((long) from + limit, elements.size());
+      return new ArrayList<>(elements.subList(from, to));
+    });
+  }
+
+  static <T> Flowable<T> stream(Single<List<T>> list) {
+    return list.flatMapPublisher(elements -> Flowable.fromIterable(releasing(elements)));
+  }
+
+  /**
+   * Iterate the elements clearing every one of them once returned. The list read from the cache
+   * is a copy of its own, so clearing it does not affect other readers.
+   */
+  private static <T> Iterable<T> releasing(final List<T> elements) {
+    return () -> new Iterator<T>() {
+      private int position;
+
+      @Override public boolean hasNext() {
+        return position < elements.size();
+      }
+
+      @Override public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        T element = elements.get(position);
+        elements.set(position++, null);
+        return element;
+      }
+
+      @Override public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override boolean keepsPendingChanges() {
+    return deltaLog != null;
+  }
+
+  @Override Single<List<T>> applyPendingChanges(List<T> data) {
+    return deltaLog.apply("", data);
+  }
+
+  @Override Completable discardPendingChanges() {
+    return deltaLog.discard("");
+  }
+
+  @Override void evicted() {
+    version.evicted();
   }
 
   public static class ProviderBuilderList<T> extends ProviderBuilder<List<T>> {
-    ProviderBuilderList(ProcessorProviders processorProviders) {
-      super(processorProviders);
+    private Integer compactionThreshold;
+    private ActionsList.KeyExtractor<T> keyExtractor;
+    private final Versions versions;
+    private final ProcessorProviders internalProviders;
+
+    ProviderBuilderList(ProcessorProviders processorProviders, boolean useExpiredData,
+        SingleFlight singleFlight, WriteTimes writeTimes, RefreshAhead refreshAhead,
+        Versions versions, ProcessorProviders internalProviders) {
+      super(processorProviders, useExpiredData, singleFlight, writeTimes, refreshAhead);
+      this.versions = versions;
+      this.internalProviders = internalProviders;
+    }
+
+    /**
+     * Persist the operations performed through {@link ProviderList#entries()} as deltas appended
+     * to a log instead of rewriting the whole list, so adding, evicting or updating an element
+     * only writes that element. Every read applies the pending deltas to the cached list, and once
+     * the log holds compactionThreshold deltas they are merged into the cached list in background.
+     *
+     * @param compactionThreshold the amount of deltas which triggers the compaction.
+     */
+    public ProviderBuilderList<T> deltaLog(int compactionThreshold) {
+      if (compactionThreshold < 1) {
+        throw new InvalidParameterException("compactionThreshold must be greater than 0");
+      }
+      this.compactionThreshold = compactionThreshold;
+      return this;
+    }
+
+    /**
+     * Index the elements of the list by the key the extractor returns for each of them, so {@link
+     * ActionsList#updateByKey(Object, ActionsList.Replace)}, {@link ActionsList#evictByKey(Object)}
+     * and {@link ActionsList#getByKey(Object)} find the element without scanning the list. The
+     * index is kept in memory by the ReactiveCache for the key, shared by its providers of the key,
+     * updated once the operations performed through {@link ProviderList#entries()} have been
+     * persisted and dropped once the list is evicted. The key of every element is expected to be
+     * unique.
+     */
+    public ProviderBuilderList<T> keyExtractor(ActionsList.KeyExtractor<T> keyExtractor) {
+      this.keyExtractor = keyExtractor;
+      return this;
     }
 
     @Override public <R extends Provider<List<T>>> R withKey(Object key) {
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Snapshot of the metrics of a provider key. Every read is either a hit, served from memory or
+ * from disk, or a miss, which calls the loader if the provider has one.
+ */
+public final class ProviderMetrics {
+  private final long memoryHits, diskHits, misses, loaderCalls, writes, evictions;
+  private final long bytesRead, bytesWritten;
+  private final LatencyHistogram readLatency, writeLatency;
+
+  ProviderMetrics(long memoryHits, long diskHits, long misses, long loaderCalls, long writes,
+      long evictions, long bytesRead, long bytesWritten, LatencyHistogram readLatency,
+      LatencyHistogram writeLatency) {
+    this.memoryHits = memoryHits;
+    this.diskHits = diskHits;
+    this.misses = misses;
+    this.loaderCalls = loaderCalls;
+    this.writes = writes;
+    this.evictions = evictions;
+    this.bytesRead = bytesRead;
+    this.bytesWritten = bytesWritten;
+    this.readLatency = readLatency;
+    this.writeLatency = writeLatency;
+  }
+
+  /**
+   * Reads served without deserializing the record, by any of the memory layers.
+   */
+  public long memoryHits() {
+    return memoryHits;
+  }
+
+  /**
+   * Reads served by deserializing the record from disk.
+   */
+  public long diskHits() {
+    return diskHits;
+  }
+
+  /**
+   * Reads which found no valid record.
+   */
+  public long misses() {
+    return misses;
+  }
+
+  /**
+   * Misses served by the data emitted from the loader.
+   */
+  public long loaderCalls() {
+    return loaderCalls;
+  }
+
+  public long writes() {
+    return writes;
+  }
+
+  public long evictions() {
+    return evictions;
+  }
+
+  /**
+   * The length of the records deserialized from disk.
+   */
+  public long bytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * The length of the records serialized to disk.
+   */
+  public long bytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * The ratio of reads which were hits, or 0 if there has been no read.
+   */
+  public double hitRatio() {
+    long reads = memoryHits + diskHits + misses;
+    return reads == 0 ? 0 : (double) (memoryHits + diskHits) / reads;
+  }
+
+  public LatencyHistogram readLatency() {
+    return readLatency;
+  }
+
+  public LatencyHistogram writeLatency() {
+    return writeLatency;
+  }
+}
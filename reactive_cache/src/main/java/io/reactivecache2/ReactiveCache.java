@@ -17,6 +17,13 @@
 package io.reactivecache2;
 
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.rx_cache2.ConfigProvider;
 import io.rx_cache2.MigrationCache;
 import io.rx_cache2.internal.DaggerRxCacheComponent;
 import io.rx_cache2.internal.Locale;
@@ -25,18 +32,94 @@ import io.rx_cache2.internal.RxCacheModule;
 import io.victoralbertos.jolyglot.JolyglotGenerics;
 import java.io.File;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public final class ReactiveCache {
   private final ProcessorProviders processorProviders;
+  private final ProcessorProviders internalProviders;
+  private final boolean useExpiredData;
+  private final WriteBehind writeBehind;
+  private final Metrics metrics;
+  private final DiskUsage diskUsage;
+  private final Migrations migrations;
+  private final SingleFlight singleFlight;
+  private final WriteTimes writeTimes;
+  private final RefreshAhead refreshAhead;
+  private final Versions versions;
+  private final GroupIndex groupIndex;
+  private final Disposable metricsReport;
+  private final FlushOnShutdown flushOnShutdown;
 
   private ReactiveCache(Builder builder) {
-    this.processorProviders = DaggerRxCacheComponent.builder()
+    this.singleFlight = new SingleFlight();
+    final Scheduler scheduler = builder.scheduler != null ? builder.scheduler
+        : Schedulers.computation();
+    this.writeTimes = new WriteTimes(scheduler);
+    this.refreshAhead = new RefreshAhead(builder.maxConcurrentRefreshes, scheduler,
+        builder.scheduler != null ? builder.scheduler : Schedulers.io());
+    this.versions = new Versions();
+    final Metrics metrics = builder.cacheMetrics != null ? new Metrics() : null;
+    //Migrations are run in the background by the Migrations layer instead of by RxCache.
+    final ProcessorProviders persistence = DaggerRxCacheComponent.builder()
         .rxCacheModule(new RxCacheModule(builder.cacheDirectory,
             builder.useExpiredDataIfLoaderNotAvailable, builder.diskCacheSize,
-            builder.encryptKey, builder.migrationsCache,
-            builder.jolyglot))
+            builder.encryptKey, null,
+            metrics != null ? new MeteredJolyglot(builder.jolyglot, metrics) : builder.jolyglot))
         .build().providers();
+    ProcessorProviders processorProviders = persistence;
+    long diskCacheBytes = (builder.diskCacheSize != null ? builder.diskCacheSize : 100)
+        * 1024L * 1024L;
+    this.diskUsage = new DiskUsage(processorProviders, builder.cacheDirectory, diskCacheBytes,
+        Schedulers.io(), metrics);
+    processorProviders = diskUsage;
+    if (builder.memoryCacheSize != null) {
+      processorProviders =
+          new MemoryTier(processorProviders, builder.jolyglot, builder.memoryCacheSize,
+              builder.weigher);
+    }
+    if (builder.writeBehindMaxDelay != null) {
+      final WriteBehind writeBehind = new WriteBehind(processorProviders, builder.jolyglot,
+          builder.writeBehindMaxDelay, builder.writeBehindMaxBatch, Schedulers.io());
+      this.writeBehind = writeBehind;
+      processorProviders = writeBehind;
+    } else {
+      this.writeBehind = null;
+    }
+    if (builder.migrationsCache != null && !builder.migrationsCache.isEmpty()) {
+      this.migrations = new Migrations(processorProviders, builder.migrationsCache,
+          builder.cacheDirectory, builder.jolyglot, builder.encryptKey, Schedulers.io());
+      processorProviders = migrations;
+    } else {
+      this.migrations = null;
+    }
+    processorProviders = new Expirations(processorProviders,
+        builder.useExpiredDataIfLoaderNotAvailable, Schedulers.computation(), Schedulers.io(),
+        this::expired);
+    this.internalProviders = processorProviders;
+    if (metrics != null) {
+      processorProviders = new MeteredProcessorProviders(processorProviders, metrics);
+      final CacheMetrics cacheMetrics = builder.cacheMetrics;
+      this.metricsReport = Schedulers.computation().schedulePeriodicallyDirect(
+          () -> cacheMetrics.report(metrics.snapshot()),
+          builder.metricsReportInterval, builder.metricsReportInterval, TimeUnit.MILLISECONDS);
+    } else {
+      this.metricsReport = null;
+    }
+    this.processorProviders = processorProviders;
+    this.useExpiredData = builder.useExpiredDataIfLoaderNotAvailable;
+    this.metrics = metrics;
+    this.groupIndex = new GroupIndex(internalProviders, diskUsage, writeBehind);
+    //The index of groups registers its own hook while it has changes not persisted.
+    if (writeBehind != null) {
+      this.flushOnShutdown = new FlushOnShutdown(writeBehind.flush());
+      flushOnShutdown.pending();
+    } else {
+      this.flushOnShutdown = null;
+    }
   }
 
   /**
@@ -45,7 +128,8 @@ public final class ReactiveCache {
    * @param <T> the type of data to be cached.
    */
   public <T> Provider.ProviderBuilder<T> provider() {
-    return new Provider.ProviderBuilder<>(processorProviders);
+    return new Provider.ProviderBuilder<>(processorProviders, useExpiredData, singleFlight,
+        writeTimes, refreshAhead);
   }
 
   /**
@@ -54,7 +138,8 @@ public final class ReactiveCache {
    * @param <T> the type of data to be cached.
    */
   public <T> ProviderList.ProviderBuilderList<T> providerList() {
-    return new ProviderList.ProviderBuilderList<>(processorProviders);
+    return new ProviderList.ProviderBuilderList<>(processorProviders, useExpiredData, singleFlight,
+        writeTimes, refreshAhead, versions, internalProviders);
   }
 
   /**
@@ -63,7 +148,8 @@ public final class ReactiveCache {
    * @param <T> the type of data to be cached.
    */
   public <T> ProviderGroup.ProviderBuilder<T> providerGroup() {
-    return new ProviderGroup.ProviderBuilder<>(processorProviders);
+    return new ProviderGroup.ProviderBuilder<>(processorProviders, useExpiredData, singleFlight,
+        writeTimes, refreshAhead, groupIndex);
   }
 
   /**
@@ -72,14 +158,124 @@ public final class ReactiveCache {
    * @param <T> the type of data to be cached.
    */
   public <T> ProviderGroupList.ProviderBuilderList<T> providerGroupList() {
-    return new ProviderGroupList.ProviderBuilderList<>(processorProviders);
+    return new ProviderGroupList.ProviderBuilderList<>(processorProviders, useExpiredData,
+        singleFlight, writeTimes, refreshAhead, groupIndex, versions, internalProviders);
+  }
+
+  /**
+   * Return a {@link BatchingLoader} to use as the loader of the providers of a family of keys, so
+   * the misses of the keys requested within the window, or up to the max batch of them, are loaded
+   * with a single call to the bulk loader.
+   *
+   * @param window the max time a key waits for its batch to be loaded
+   * @param timeUnit the unit of the window
+   * @param maxBatch the amount of keys which triggers loading the batch
+   * @param bulkLoader loads the data of the keys, which are never repeated in a batch
+   * @param <K> the type of the keys.
+   * @param <T> the type of data to be cached.
+   */
+  public <K, T> BatchingLoader<K, T> batchingLoader(long window, TimeUnit timeUnit, int maxBatch,
+      Function<List<K>, Single<Map<K, T>>> bulkLoader) {
+    if (window < 0) {
+      throw new InvalidParameterException("window can not be negative");
+    }
+    if (timeUnit == null) {
+      throw new InvalidParameterException("timeUnit can not be null");
+    }
+    if (maxBatch < 1) {
+      throw new InvalidParameterException("maxBatch must be greater than 0");
+    }
+    if (bulkLoader == null) {
+      throw new InvalidParameterException("bulkLoader can not be null");
+    }
+
+    return new BatchingLoader<>(bulkLoader, timeUnit.toMillis(window), maxBatch,
+        Schedulers.computation());
+  }
+
+  /**
+   * Drop the state kept about the record evicted on its deadline, along with the log of its list.
+   * The record is the one of a provider or of a provider group, as both name it alike.
+   */
+  private void expired(ConfigProvider eviction) {
+    String key = eviction.getProviderKey(), group = eviction.getDynamicKeyGroup();
+    if (DeltaLog.isLog(key)) return;
+
+    List<String> stateKeys = group.isEmpty() ?
+        Arrays.asList(StateKeys.of(key), StateKeys.of(key, group)) :
+        Collections.singletonList(StateKeys.of(key, group));
+    for (String stateKey : stateKeys) {
+      writeTimes.evicted(stateKey);
+      refreshAhead.evicted(stateKey);
+      versions.evicted(stateKey);
+    }
+    groupIndex.evicted(key, group);
+
+    Completable.fromObservable(internalProviders.process(DeltaLog.evicting(key, group)))
+        .onErrorComplete()
+        .subscribe();
   }
 
   /**
    * Evict all the cached data.
    */
   public Completable evictAll() {
-    return Completable.fromObservable(processorProviders.evictAll());
+    return Completable.fromObservable(processorProviders.evictAll())
+        .doOnComplete(() -> {
+          writeTimes.evictedStartingWith("");
+          refreshAhead.evictedStartingWith("");
+          groupIndex.evictedAll();
+          versions.evictedStartingWith("");
+        });
+  }
+
+  /**
+   * Persist the changes to the groups of the provider groups, which are persisted once per second
+   * at most, and the writes staged by {@link Builder#writeBehind(long, TimeUnit, int)}, completing
+   * once they are on disk. They are also persisted when the JVM shuts down.
+   */
+  public Completable flush() {
+    return groupIndex.flush()
+        .andThen(writeBehind != null ? writeBehind.flush() : Completable.complete());
+  }
+
+  /**
+   * Stop reporting the metrics set with {@link Builder#metrics(CacheMetrics, long, TimeUnit)} and
+   * persist in background what {@link #flush()} does, unregistering the shutdown hook which
+   * persists it once it is. Call {@link #flush()} beforehand to wait for it to be persisted. This
+   * instance is not meant to be used once closed.
+   */
+  public void close() {
+    if (metricsReport != null) metricsReport.dispose();
+    flush().subscribe(() -> {
+      if (flushOnShutdown != null) flushOnShutdown.flushed();
+    }, error -> {});
+  }
+
+  /**
+   * The progress of the migrations set with {@link Builder#migrations(List)}, which run in the
+   * background while the cache is used, replaying the last progress emitted. Completes once they
+   * finish, or right away if none is pending.
+   */
+  public Flowable<MigrationProgress> migrations() {
+    return migrations != null ? migrations.progress() : Flowable.<MigrationProgress>empty();
+  }
+
+  /**
+   * The bytes the cache directory takes on disk. It is kept up to date as records are written and
+   * evicted instead of walking the cache directory, which is only walked on the first use and
+   * when the usage exceeds the disk cache size, as RxCache then evicts records on its own.
+   */
+  public long diskUsageBytes() {
+    return diskUsage.bytes();
+  }
+
+  /**
+   * The metrics accumulated so far for every provider key, as reported to the {@link CacheMetrics}
+   * set with {@link Builder#metrics(CacheMetrics, long, TimeUnit)}. Empty if metrics are not set.
+   */
+  public Map<String, ProviderMetrics> metrics() {
+    return metrics != null ? metrics.snapshot() : Collections.<String, ProviderMetrics>emptyMap();
   }
 
   /**
@@ -92,6 +288,16 @@ public final class ReactiveCache {
     private List<MigrationCache> migrationsCache;
     private File cacheDirectory;
     private JolyglotGenerics jolyglot;
+    private int maxConcurrentRefreshes = 4;
+    private Compression compression;
+    private int compressionThreshold;
+    private Long memoryCacheSize;
+    private Weigher weigher;
+    private Long writeBehindMaxDelay;
+    private int writeBehindMaxBatch;
+    private CacheMetrics cacheMetrics;
+    private long metricsReportInterval;
+    private Scheduler scheduler;
 
     /**
      * if called ReactiveCache dispatches records already expired instead of throwing an exception.
@@ -119,13 +325,147 @@ public final class ReactiveCache {
     }
 
     /**
-     * Set the migrations to run between releases.
+     * Sets the max amount of refreshes triggered by providers configured with refreshAhead which
+     * may be in flight at the same time. If not supplied, 4 will be the default value.
+     */
+    public Builder maxConcurrentRefreshes(int refreshes) {
+      if (refreshes < 1) {
+        throw new InvalidParameterException("maxConcurrentRefreshes must be greater than 0");
+      }
+
+      this.maxConcurrentRefreshes = refreshes;
+      return this;
+    }
+
+    /**
+     * Keep the most used records in a memory tier of the given size, so reading them skips the
+     * persistence layer. Records are evicted following a segmented LRU policy, which keeps the
+     * records read repeatedly over the ones read once. The size bounds this tier only, not the
+     * memory taken by the cache: RxCache keeps its own in-memory copy of the records, which stays
+     * unbounded. If not supplied, there is no memory tier.
+     *
+     * @param bytes the max size of the memory tier, in bytes unless a {@link Weigher} is set
+     */
+    public Builder memoryCacheSize(long bytes) {
+      if (bytes < 1) {
+        throw new InvalidParameterException("memoryCacheSize must be greater than 0");
+      }
+
+      this.memoryCacheSize = bytes;
+      return this;
+    }
+
+    /**
+     * Sets how the records kept by the memory tier set with {@link #memoryCacheSize(long)} are
+     * weighed. If not supplied, records weigh the bytes they take serialized.
+     */
+    public Builder weigher(Weigher weigher) {
+      if (weigher == null) {
+        throw new InvalidParameterException("weigher can not be null");
+      }
+
+      this.weigher = weigher;
+      return this;
+    }
+
+    /**
+     * Emit the data written as soon as it is kept in memory, and persist it from a background
+     * writer once the oldest write has waited the max delay or once the max batch of writes is
+     * pending, whatever happens first. Repeated writes to the same key are coalesced into the last
+     * one, and reads return the pending data. Call {@link ReactiveCache#flush()} to persist the
+     * pending writes right away; they are also persisted when the JVM shuts down. Only the writes
+     * performed by replace are deferred: the data retrieved by the loader of a read is persisted
+     * before being emitted, as RxCache writes it itself. If not supplied, every write completes
+     * once persisted.
+     *
+     * @param maxDelay the max time a write waits to be persisted
+     * @param timeUnit the unit of the max delay
+     * @param maxBatch the amount of pending writes which triggers persisting them
+     */
+    public Builder writeBehind(long maxDelay, TimeUnit timeUnit, int maxBatch) {
+      if (maxDelay < 0) {
+        throw new InvalidParameterException("maxDelay can not be negative");
+      }
+      if (timeUnit == null) {
+        throw new InvalidParameterException("timeUnit can not be null");
+      }
+      if (maxBatch < 1) {
+        throw new InvalidParameterException("maxBatch must be greater than 0");
+      }
+
+      this.writeBehindMaxDelay = timeUnit.toMillis(maxDelay);
+      this.writeBehindMaxBatch = maxBatch;
+      return this;
+    }
+
+    /**
+     * Record per provider key the hits served from memory and from disk, the misses, the calls to
+     * loaders, the writes, the evictions, the bytes read and written and the latencies of reads
+     * and writes, and report them on every interval. If not supplied, no metrics are recorded.
+     *
+     * @param cacheMetrics the listener which receives the metrics
+     * @param reportInterval the time between reports
+     * @param timeUnit the unit of the report interval
+     */
+    public Builder metrics(CacheMetrics cacheMetrics, long reportInterval, TimeUnit timeUnit) {
+      if (cacheMetrics == null) {
+        throw new InvalidParameterException("cacheMetrics can not be null");
+      }
+      if (timeUnit == null) {
+        throw new InvalidParameterException("timeUnit can not be null");
+      }
+      if (reportInterval < 1) {
+        throw new InvalidParameterException("reportInterval must be greater than 0");
+      }
+
+      this.cacheMetrics = cacheMetrics;
+      this.metricsReportInterval = Math.max(1, timeUnit.toMillis(reportInterval));
+      return this;
+    }
+
+    /**
+     * Compress the records which take at least the threshold once serialized, i.e. with {@link
+     * DeflateCompression}, so more records fit in the disk cache size and fewer bytes are read
+     * from disk on every hit. Records below the threshold, or which do not shrink, are left
+     * uncompressed. If not supplied, records are not compressed.
+     *
+     * @param compression the implementation of {@link Compression}
+     * @param thresholdBytes the length in bytes from which records are compressed
+     */
+    public Builder compress(Compression compression, int thresholdBytes) {
+      if (compression == null) {
+        throw new InvalidParameterException("compression can not be null");
+      }
+      if (thresholdBytes < 0) {
+        throw new InvalidParameterException("thresholdBytes can not be negative");
+      }
+
+      this.compression = compression;
+      this.compressionThreshold = thresholdBytes;
+      return this;
+    }
+
+    /**
+     * Set the migrations to run between releases. Pending migrations run in the background, so
+     * calls are not held until they finish: reads of a record not checked yet check it first, and
+     * are a miss if its data is of a class being migrated. Track them with {@link
+     * ReactiveCache#migrations()}.
      */
     public Builder migrations(List<MigrationCache> migrationsCache) {
       this.migrationsCache = migrationsCache;
       return this;
     }
 
+    /**
+     * Sets the scheduler which tells how old records are for stale-while-revalidate and which
+     * times and runs refresh-ahead, so tests can drive them with a TestScheduler. If not supplied,
+     * {@link Schedulers#computation()} and {@link Schedulers#io()} are used.
+     */
+    Builder scheduler(Scheduler scheduler) {
+      this.scheduler = scheduler;
+      return this;
+    }
+
     /**
      * Sets the File cache system and the implementation of {@link JolyglotGenerics} to serialise
      * and deserialize objects
@@ -134,6 +474,31 @@ public final class ReactiveCache {
      * @param jolyglot A concrete implementation of {@link JolyglotGenerics}
      */
     public ReactiveCache using(File cacheDirectory, JolyglotGenerics jolyglot) {
+      if (jolyglot == null) {
+        throw new InvalidParameterException(Locale.JSON_CONVERTER_CAN_NOT_BE_NULL);
+      }
+
+      return build(cacheDirectory, compression != null ?
+          new CompressedJolyglot(jolyglot, compression, compressionThreshold) : jolyglot);
+    }
+
+    /**
+     * Sets the File cache system and the {@link Codec} to serialise and deserialize objects as
+     * binary frames instead of JSON, i.e. {@link BinaryCodec}. Records written with a different
+     * codec or speaker are treated as not cached.
+     *
+     * @param cacheDirectory The File system used by the persistence layer
+     * @param codec A concrete implementation of {@link Codec}
+     */
+    public ReactiveCache using(File cacheDirectory, Codec codec) {
+      if (codec == null) {
+        throw new InvalidParameterException("codec can not be null");
+      }
+
+      return build(cacheDirectory, new CodecJolyglot(codec, compression, compressionThreshold));
+    }
+
+    private ReactiveCache build(File cacheDirectory, JolyglotGenerics jolyglot) {
       if (cacheDirectory == null) {
         throw new InvalidParameterException(Locale.REPOSITORY_DISK_ADAPTER_CAN_NOT_BE_NULL);
       }
@@ -144,10 +509,6 @@ public final class ReactiveCache {
         throw new InvalidParameterException(Locale.REPOSITORY_DISK_ADAPTER_IS_NOT_WRITABLE);
       }
 
-      if (jolyglot == null) {
-        throw new InvalidParameterException(Locale.JSON_CONVERTER_CAN_NOT_BE_NULL);
-      }
-
       this.cacheDirectory = cacheDirectory;
       this.jolyglot = jolyglot;
 
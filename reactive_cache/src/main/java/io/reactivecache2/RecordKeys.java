@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKey;
+import io.rx_cache2.EvictDynamicKeyGroup;
+
+/**
+ * Identifies the records of RxCache by their provider key, dynamic key and group, so the layers
+ * in front of it know which of the records they hold are evicted by a given configuration.
+ */
+final class RecordKeys {
+  private static final String SEPARATOR_KEY = "$d$", SEPARATOR_GROUP = "$g$";
+  private static final String FILE_SEPARATOR_KEY = "$d$d$d$", FILE_SEPARATOR_GROUP = "$g$g$g$";
+
+  private RecordKeys() {
+  }
+
+  static String of(ConfigProvider configProvider) {
+    return of(configProvider.getProviderKey(), configProvider.getDynamicKey(),
+        configProvider.getDynamicKeyGroup());
+  }
+
+  static String of(String providerKey, String dynamicKey, String group) {
+    return providerKey + SEPARATOR_KEY + dynamicKey + SEPARATOR_GROUP + group;
+  }
+
+  /**
+   * Whether RxCache evicts the record of the key when evicting with the configuration, which
+   * depending on its {@link io.rx_cache2.EvictProvider} drops the record of its group, of every
+   * group of its dynamic key or of every dynamic key of its provider.
+   */
+  static boolean evicts(ConfigProvider configProvider, String key) {
+    String evicted = evicted(configProvider);
+    return configProvider.evictProvider() instanceof EvictDynamicKeyGroup ?
+        key.equals(evicted) : key.startsWith(evicted);
+  }
+
+  /**
+   * The key of the record RxCache evicts when evicting with the configuration, or the prefix of
+   * the keys of the records if it evicts more than one.
+   */
+  static String evicted(ConfigProvider configProvider) {
+    Object evict = configProvider.evictProvider();
+    if (evict instanceof EvictDynamicKeyGroup) return of(configProvider);
+
+    return evict instanceof EvictDynamicKey ?
+        configProvider.getProviderKey() + SEPARATOR_KEY + configProvider.getDynamicKey()
+            + SEPARATOR_GROUP :
+        configProvider.getProviderKey() + SEPARATOR_KEY;
+  }
+
+  /**
+   * The name of the file RxCache persists the record in, which joins the keys with its own
+   * separators and replaces the slashes, as file names can not contain them.
+   */
+  static String fileOf(ConfigProvider configProvider) {
+    return fileOf(configProvider.getProviderKey(), configProvider.getDynamicKey(),
+        configProvider.getDynamicKeyGroup());
+  }
+
+  static String fileOf(String providerKey, String dynamicKey, String group) {
+    return fileName(providerKey + FILE_SEPARATOR_KEY + dynamicKey + FILE_SEPARATOR_GROUP + group);
+  }
+
+  /**
+   * The prefix of the files of the records RxCache evicts when evicting with the configuration,
+   * or the name of the file if it evicts a single record.
+   */
+  static String evictedFiles(ConfigProvider configProvider) {
+    Object evict = configProvider.evictProvider();
+    if (evict instanceof EvictDynamicKeyGroup) return fileOf(configProvider);
+
+    return fileName(evict instanceof EvictDynamicKey ?
+        configProvider.getProviderKey() + FILE_SEPARATOR_KEY + configProvider.getDynamicKey()
+            + FILE_SEPARATOR_GROUP :
+        configProvider.getProviderKey() + FILE_SEPARATOR_KEY);
+  }
+
+  /**
+   * The provider key, dynamic key and group of the record persisted in the file, or null if the
+   * file is not a record. Slashes were replaced in the file name, so keys which had any are not
+   * recovered as they were.
+   */
+  static String[] keysOfFile(String file) {
+    int key = file.indexOf(FILE_SEPARATOR_KEY);
+    if (key == -1) return null;
+    int group = file.indexOf(FILE_SEPARATOR_GROUP, key + FILE_SEPARATOR_KEY.length());
+    if (group == -1) return null;
+
+    return new String[] {file.substring(0, key),
+        file.substring(key + FILE_SEPARATOR_KEY.length(), group),
+        file.substring(group + FILE_SEPARATOR_GROUP.length())};
+  }
+
+  private static String fileName(String key) {
+    return key.replace('/', '_');
+  }
+}
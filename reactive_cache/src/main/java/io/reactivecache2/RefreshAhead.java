@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-runs the last loader of the keys which have been read since their last write before their
+ * records expire. Refreshes run off the request path and no more than maxConcurrentRefreshes are
+ * in flight at the same time; the ones exceeding that bound are retried on the next read.
+ */
+final class RefreshAhead {
+  private final ConcurrentMap<String, Entry> entries;
+  private final Semaphore permits;
+  private final Scheduler scheduler, ioScheduler;
+
+  RefreshAhead(int maxConcurrentRefreshes, Scheduler scheduler, Scheduler ioScheduler) {
+    this.entries = new ConcurrentHashMap<>();
+    this.permits = new Semaphore(maxConcurrentRefreshes);
+    this.scheduler = scheduler;
+    this.ioScheduler = ioScheduler;
+  }
+
+  /**
+   * The record of the key has been retrieved from the loader, which is retained to refresh it once
+   * refreshAfterMillis have elapsed.
+   */
+  void loaded(String key, Completable refresh, long refreshAfterMillis) {
+    Entry entry = entry(key);
+    entry.refresh = refresh;
+    schedule(key, entry, refreshAfterMillis);
+  }
+
+  /**
+   * The record of the key has been written, so it would be refreshed once refreshAfterMillis have
+   * elapsed as long as it is read in the meantime.
+   */
+  void written(String key, long refreshAfterMillis) {
+    schedule(key, entry(key), refreshAfterMillis);
+  }
+
+  /**
+   * The record of the key has been read from the cache, retaining the loader to refresh it.
+   */
+  void read(String key, Completable refresh) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      //Unknown write time, i.e. the record was written by a previous session.
+      entry = entry(key);
+      entry.idle = true;
+    }
+
+    entry.refresh = refresh;
+    entry.readAt = scheduler.now(TimeUnit.MILLISECONDS);
+    if (entry.idle) refresh(entry);
+  }
+
+  void evicted(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) entry.cancel();
+  }
+
+  void evictedStartingWith(String prefix) {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> entry = iterator.next();
+      if (entry.getKey().startsWith(prefix)) {
+        entry.getValue().cancel();
+        iterator.remove();
+      }
+    }
+  }
+
+  private Entry entry(String key) {
+    Entry entry = entries.get(key);
+    if (entry != null) return entry;
+
+    Entry candidate = new Entry();
+    entry = entries.putIfAbsent(key, candidate);
+    return entry != null ? entry : candidate;
+  }
+
+  private void schedule(final String key, final Entry entry, long refreshAfterMillis) {
+    entry.cancel();
+    entry.idle = false;
+    entry.writtenAt = scheduler.now(TimeUnit.MILLISECONDS);
+    entry.timer = scheduler.scheduleDirect(() -> {
+      if (entry.readAt <= entry.writtenAt) {
+        //Not read since its last write, so forget it to not retain the loader of cold keys.
+        entries.remove(key, entry);
+      } else {
+        refresh(entry);
+      }
+    }, refreshAfterMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void refresh(Entry entry) {
+    Completable refresh = entry.refresh;
+    if (refresh == null || !permits.tryAcquire()) {
+      entry.idle = true;
+      return;
+    }
+
+    entry.idle = false;
+    refresh.subscribeOn(ioScheduler)
+        .doFinally(permits::release)
+        .subscribe(() -> {}, error -> entry.idle = true);
+  }
+
+  private static final class Entry {
+    private volatile Completable refresh;
+    private volatile long readAt, writtenAt;
+    private volatile boolean idle;
+    private volatile Disposable timer;
+
+    private void cancel() {
+      Disposable timer = this.timer;
+      if (timer != null) timer.dispose();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesces concurrent calls sharing the same key into a single subscription to the source, so
+ * every subscriber arriving while a call is in flight receives the same item or error.
+ */
+final class SingleFlight {
+  private final ConcurrentMap<String, Single<?>> calls;
+
+  SingleFlight() {
+    this.calls = new ConcurrentHashMap<>();
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> Single<T> share(final String key, final Single<T> source) {
+    return Single.defer(() -> {
+      Single<T> pending = (Single<T>) calls.get(key);
+      if (pending != null) return pending;
+
+      AtomicReference<Single<T>> self = new AtomicReference<>();
+      Single<T> call = source
+          .doFinally(() -> calls.remove(key, self.get()))
+          .cache();
+      self.set(call);
+
+      pending = (Single<T>) calls.putIfAbsent(key, call);
+      return pending != null ? pending : call;
+    });
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Keys of the state shared by the providers of a ReactiveCache instance, i.e. the loads in flight,
+ * the write times and the versions of the records. They are namespaced by the type of provider
+ * and joined with a separator which can not be part of the key of a provider, as RxCache names
+ * the file of every record after its key, so the state of a provider never collides with the
+ * state of a group of another one.
+ */
+final class StateKeys {
+  private static final char SEPARATOR = '\u0000';
+
+  private StateKeys() {
+  }
+
+  /**
+   * The key of the state of the record of a {@link Provider}.
+   */
+  static String of(String key) {
+    return "provider" + SEPARATOR + key;
+  }
+
+  /**
+   * The key of the state of the record of a group of a {@link ProviderGroup}.
+   */
+  static String of(String key, Object group) {
+    return ofGroups(key) + group;
+  }
+
+  /**
+   * The prefix of the keys of the state of every group of a {@link ProviderGroup}.
+   */
+  static String ofGroups(String key) {
+    return "group" + SEPARATOR + key + SEPARATOR;
+  }
+
+  /**
+   * The key of the revalidation in flight of the record with the state key.
+   */
+  static String revalidating(String stateKey) {
+    return "revalidate" + SEPARATOR + stateKey;
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Hierarchical timer wheel which indexes keys by their deadline in milliseconds, so advancing the
+ * time only visits the buckets whose time has come, instead of scanning every key. Linking a key
+ * into its bucket and unlinking it is O(1), but scheduling, rescheduling and cancelling it also
+ * look it up in a sorted map, which is O(log n), so the keys starting with a prefix can be found
+ * without visiting every key.
+ *
+ * <p>Every wheel has 64 buckets, spanning 64 ms in the first wheel and 64 times the span of the
+ * previous one in every next wheel, so the first one covers 4 seconds, the second one 4 minutes,
+ * the third one 4 hours and the fourth one 12 days, while the last one takes any deadline beyond.
+ * Keys are placed in the finest wheel which covers their deadline and cascade down to finer
+ * wheels as the time advances, so a key expires at most one bucket of 64 ms after its deadline.
+ *
+ * <p>Not thread safe.
+ */
+final class TimerWheel {
+  private static final int BUCKETS = 64;
+  private static final int[] SHIFTS = {6, 12, 18, 24, 30};
+
+  private final Node[][] wheels;
+  private final NavigableMap<String, Node> nodes;
+  private long time;
+
+  TimerWheel(long now) {
+    this.wheels = new Node[SHIFTS.length][BUCKETS];
+    for (Node[] wheel : wheels) {
+      for (int i = 0; i < BUCKETS; i++) {
+        wheel[i] = Node.sentinel();
+      }
+    }
+    this.nodes = new TreeMap<>();
+    this.time = now;
+  }
+
+  /**
+   * Schedule the key to expire at the deadline, replacing the deadline it had if any.
+   */
+  void schedule(String key, long deadline) {
+    Node node = nodes.get(key);
+    if (node != null) {
+      node.unlink();
+    } else {
+      node = new Node(key);
+      nodes.put(key, node);
+    }
+
+    node.deadline = deadline;
+    link(node);
+  }
+
+  void cancel(String key) {
+    Node node = nodes.remove(key);
+    if (node != null) node.unlink();
+  }
+
+  /**
+   * The keys scheduled which start with the prefix.
+   */
+  Collection<String> keysStartingWith(String prefix) {
+    return new ArrayList<>(
+        nodes.subMap(prefix, true, prefix + Character.MAX_VALUE, true).keySet());
+  }
+
+  boolean isEmpty() {
+    return nodes.isEmpty();
+  }
+
+  /**
+   * Advance the time, unscheduling and returning the keys whose deadline has passed.
+   */
+  List<String> advance(long now) {
+    List<String> expired = new ArrayList<>();
+    long previous = time;
+    time = now;
+
+    for (int level = 0; level < SHIFTS.length; level++) {
+      long previousTicks = previous >>> SHIFTS[level];
+      long currentTicks = now >>> SHIFTS[level];
+      if (currentTicks - previousTicks <= 0) break;
+      expire(level, previousTicks, currentTicks - previousTicks, expired);
+    }
+
+    return expired;
+  }
+
+  /**
+   * The time at which {@link #advance(long)} has to be called next for the keys to expire on
+   * time, or Long.MAX_VALUE if no key is scheduled.
+   */
+  long nextAdvance() {
+    long next = Long.MAX_VALUE;
+    for (int level = 0; level < SHIFTS.length; level++) {
+      long ticks = time >>> SHIFTS[level];
+      for (int offset = 0; offset < BUCKETS; offset++) {
+        Node sentinel = wheels[level][(int) ((ticks + offset) & (BUCKETS - 1))];
+        if (sentinel.next == sentinel) continue;
+
+        //Buckets of the first wheel are due once their span has passed, and buckets of the rest
+        //of the wheels are due to cascade once their tick comes.
+        long due = level == 0 ? ticks + offset + 1 : ticks + Math.max(offset, 1);
+        next = Math.min(next, due << SHIFTS[level]);
+        break;
+      }
+    }
+    return next;
+  }
+
+  private void expire(int level, long previousTicks, long delta, List<String> expired) {
+    Node[] wheel = wheels[level];
+    int start, end;
+    if (delta >= BUCKETS) {
+      start = 0;
+      end = BUCKETS;
+    } else {
+      start = (int) (previousTicks & (BUCKETS - 1));
+      end = start + (int) delta + 1;
+    }
+
+    for (int i = start; i < end; i++) {
+      Node sentinel = wheel[i & (BUCKETS - 1)];
+      Node node = sentinel.next;
+      sentinel.next = sentinel;
+      sentinel.previous = sentinel;
+
+      while (node != sentinel) {
+        Node next = node.next;
+        node.previous = null;
+        node.next = null;
+
+        if (node.deadline <= time) {
+          nodes.remove(node.key);
+          expired.add(node.key);
+        } else {
+          link(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private void link(Node node) {
+    Node sentinel = bucketOf(node.deadline);
+    node.previous = sentinel.previous;
+    node.next = sentinel;
+    sentinel.previous.next = node;
+    sentinel.previous = node;
+  }
+
+  private Node bucketOf(long deadline) {
+    //Deadlines already passed go to the current bucket, which is the next one to be expired.
+    long at = Math.max(deadline, time);
+    long duration = at - time;
+    for (int level = 0; level < SHIFTS.length - 1; level++) {
+      if (duration < 1L << SHIFTS[level + 1]) {
+        return wheels[level][(int) ((at >>> SHIFTS[level]) & (BUCKETS - 1))];
+      }
+    }
+
+    int last = SHIFTS.length - 1;
+    return wheels[last][(int) ((at >>> SHIFTS[last]) & (BUCKETS - 1))];
+  }
+
+  private static final class Node {
+    private final String key;
+    private long deadline;
+    private Node previous, next;
+
+    Node(String key) {
+      this.key = key;
+    }
+
+    static Node sentinel() {
+      Node sentinel = new Node(null);
+      sentinel.previous = sentinel;
+      sentinel.next = sentinel;
+      return sentinel;
+    }
+
+    void unlink() {
+      if (next == null) return;
+      previous.next = next;
+      next.previous = previous;
+      previous = null;
+      next = null;
+    }
+  }
+}
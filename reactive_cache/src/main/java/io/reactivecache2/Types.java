@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers to build and inspect the generic types {@link Codec} implementations are asked to
+ * decode.
+ */
+final class Types {
+  private Types() {
+  }
+
+  static ParameterizedType newParameterizedType(Type rawType, Type... typeArguments) {
+    return new ParameterizedTypeImpl(rawType, typeArguments.clone());
+  }
+
+  static GenericArrayType arrayOf(Type componentType) {
+    return new GenericArrayTypeImpl(componentType);
+  }
+
+  static Class<?> rawType(Type type) {
+    if (type instanceof Class) return (Class<?>) type;
+    if (type instanceof ParameterizedType) return rawType(((ParameterizedType) type).getRawType());
+    if (type instanceof GenericArrayType) {
+      Type component = ((GenericArrayType) type).getGenericComponentType();
+      return Array.newInstance(rawType(component), 0).getClass();
+    }
+    if (type instanceof WildcardType) return rawType(((WildcardType) type).getUpperBounds()[0]);
+    return Object.class;
+  }
+
+  /**
+   * The type argument at the index, or Object if the type is not parameterized.
+   */
+  static Type typeArgument(Type type, int index) {
+    if (type instanceof ParameterizedType) {
+      Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+      if (index < arguments.length) return arguments[index];
+    }
+    return Object.class;
+  }
+
+  static Type componentType(Type type) {
+    if (type instanceof GenericArrayType) {
+      return ((GenericArrayType) type).getGenericComponentType();
+    }
+    Class<?> component = rawType(type).getComponentType();
+    return component != null ? component : Object.class;
+  }
+
+  static boolean hasTypeVariables(Type type) {
+    if (type instanceof TypeVariable) return true;
+    if (type instanceof ParameterizedType) {
+      for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+        if (hasTypeVariables(argument)) return true;
+      }
+      return false;
+    }
+    if (type instanceof GenericArrayType) {
+      return hasTypeVariables(((GenericArrayType) type).getGenericComponentType());
+    }
+    if (type instanceof WildcardType) {
+      return hasTypeVariables(((WildcardType) type).getUpperBounds()[0]);
+    }
+    return false;
+  }
+
+  /**
+   * Replace the type variables of the type by the types bound to them, or by Object if unbound.
+   */
+  static Type resolve(Type type, Map<TypeVariable<?>, Type> bindings) {
+    if (type instanceof TypeVariable) {
+      Type bound = bindings.get(type);
+      return bound != null ? bound : Object.class;
+    }
+    if (type instanceof ParameterizedType) {
+      ParameterizedType parameterized = (ParameterizedType) type;
+      Type[] arguments = parameterized.getActualTypeArguments().clone();
+      for (int i = 0; i < arguments.length; i++) {
+        arguments[i] = resolve(arguments[i], bindings);
+      }
+      return new ParameterizedTypeImpl(parameterized.getRawType(), arguments);
+    }
+    if (type instanceof GenericArrayType) {
+      return arrayOf(resolve(((GenericArrayType) type).getGenericComponentType(), bindings));
+    }
+    if (type instanceof WildcardType) {
+      return resolve(((WildcardType) type).getUpperBounds()[0], bindings);
+    }
+    return type;
+  }
+
+  /**
+   * The type to decode the data as, which as with RxCache takes the class of the first element
+   * of collections and maps as the class of all of them.
+   */
+  static Type typeOf(Object data) {
+    if (data instanceof Collection) {
+      Collection<?> collection = (Collection<?>) data;
+      Class<?> raw = data instanceof List ? List.class
+          : data instanceof Set ? Set.class : Collection.class;
+      if (collection.isEmpty()) return raw;
+
+      Object first = collection.iterator().next();
+      return first != null ? newParameterizedType(raw, first.getClass()) : raw;
+    }
+
+    if (data instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) data;
+      if (map.isEmpty()) return Map.class;
+
+      Map.Entry<?, ?> first = map.entrySet().iterator().next();
+      if (first.getKey() == null || first.getValue() == null) return Map.class;
+      return newParameterizedType(Map.class, first.getKey().getClass(),
+          first.getValue().getClass());
+    }
+
+    return data.getClass();
+  }
+
+  private static String typeName(Type type) {
+    return type instanceof Class ? ((Class<?>) type).getName() : type.toString();
+  }
+
+  private static final class ParameterizedTypeImpl implements ParameterizedType {
+    private final Type rawType;
+    private final Type[] typeArguments;
+
+    ParameterizedTypeImpl(Type rawType, Type[] typeArguments) {
+      this.rawType = rawType;
+      this.typeArguments = typeArguments;
+    }
+
+    @Override public Type[] getActualTypeArguments() {
+      return typeArguments.clone();
+    }
+
+    @Override public Type getRawType() {
+      return rawType;
+    }
+
+    @Override public Type getOwnerType() {
+      return null;
+    }
+
+    @Override public boolean equals(Object other) {
+      if (!(other instanceof ParameterizedType)) return false;
+      ParameterizedType that = (ParameterizedType) other;
+      return rawType.equals(that.getRawType())
+          && Arrays.equals(typeArguments, that.getActualTypeArguments());
+    }
+
+    @Override public int hashCode() {
+      return Arrays.hashCode(typeArguments) ^ rawType.hashCode();
+    }
+
+    @Override public String toString() {
+      StringBuilder builder = new StringBuilder(typeName(rawType)).append('<');
+      for (int i = 0; i < typeArguments.length; i++) {
+        if (i > 0) builder.append(", ");
+        builder.append(typeName(typeArguments[i]));
+      }
+      return builder.append('>').toString();
+    }
+  }
+
+  private static final class GenericArrayTypeImpl implements GenericArrayType {
+    private final Type componentType;
+
+    GenericArrayTypeImpl(Type componentType) {
+      this.componentType = componentType;
+    }
+
+    @Override public Type getGenericComponentType() {
+      return componentType;
+    }
+
+    @Override public boolean equals(Object other) {
+      return other instanceof GenericArrayType
+          && componentType.equals(((GenericArrayType) other).getGenericComponentType());
+    }
+
+    @Override public int hashCode() {
+      return componentType.hashCode();
+    }
+
+    @Override public String toString() {
+      return typeName(componentType) + "[]";
+    }
+  }
+}
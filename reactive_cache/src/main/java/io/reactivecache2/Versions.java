@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the version of the list of every key written through {@link ActionsList}, so concurrent
+ * writers detect that the list they read has been written meanwhile and retry, instead of
+ * overriding each other's changes. Writers to different keys never contend. Every version keeps
+ * the state derived from the list as of its value, i.e. the list replayed by {@link DeltaLog}, so
+ * the next writer does not derive it again from disk, and the index of the list by key if the
+ * provider has a {@link ActionsList.KeyExtractor}, so it is shared by every provider of the key.
+ */
+final class Versions {
+  private final ConcurrentMap<String, Version> versions;
+
+  Versions() {
+    this.versions = new ConcurrentHashMap<>();
+  }
+
+  Version of(String key) {
+    Version version = versions.get(key);
+    if (version != null) return version;
+
+    Version candidate = new Version();
+    version = versions.putIfAbsent(key, candidate);
+    return version != null ? version : candidate;
+  }
+
+  /**
+   * The lists of the keys starting with the prefix have been written or evicted apart from {@link
+   * ActionsList}.
+   */
+  void invalidateStartingWith(String prefix) {
+    for (Map.Entry<String, Version> entry : versions.entrySet()) {
+      if (entry.getKey().startsWith(prefix)) entry.getValue().invalidate();
+    }
+  }
+
+  /**
+   * The list of the key has been evicted.
+   */
+  void evicted(String key) {
+    Version version = versions.get(key);
+    if (version != null) version.evicted();
+  }
+
+  /**
+   * The lists of the keys starting with the prefix have been evicted.
+   */
+  void evictedStartingWith(String prefix) {
+    for (Map.Entry<String, Version> entry : versions.entrySet()) {
+      if (entry.getKey().startsWith(prefix)) entry.getValue().evicted();
+    }
+  }
+
+  /**
+   * An even value while the list is not being written. A writer claims it by moving it from the
+   * value it read to the next odd one, and releases it by moving it to the next even one once the
+   * write has finished, so a claim fails if another writer has claimed it since it was read.
+   * Writers which read it claimed wait for the release instead of polling it.
+   */
+  static final class Version {
+    private final AtomicLong value = new AtomicLong();
+    private final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Kept kept;
+    private KeyIndex<?> keyIndex;
+
+    long current() {
+      return value.get();
+    }
+
+    static boolean isClaimed(long version) {
+      return (version & 1) == 1;
+    }
+
+    boolean claim(long read) {
+      return value.compareAndSet(read, read + 1);
+    }
+
+    /**
+     * Release the claim taken from the version read.
+     */
+    void release(long read) {
+      value.set(read + 2);
+      notifyWaiters();
+    }
+
+    /**
+     * Run the waiter once the claim held is released, right away if the version is not claimed.
+     */
+    void awaitRelease(Runnable waiter) {
+      waiters.add(waiter);
+      //Checked once queued, so a release happening meanwhile is not missed.
+      if (!isClaimed(value.get())) notifyWaiters();
+    }
+
+    void cancelAwait(Runnable waiter) {
+      waiters.remove(waiter);
+    }
+
+    private void notifyWaiters() {
+      Runnable waiter;
+      while ((waiter = waiters.poll()) != null) {
+        waiter.run();
+      }
+    }
+
+    /**
+     * The value of the version once the claim held is released.
+     */
+    long released() {
+      return value.get() + 1;
+    }
+
+    /**
+     * A counter of the times the list has been written or evicted apart from {@link ActionsList},
+     * which discards the state kept for the version.
+     */
+    long generation() {
+      return generation.get();
+    }
+
+    void invalidate() {
+      generation.incrementAndGet();
+      kept = null;
+    }
+
+    /**
+     * The list has been evicted, which discards the state kept for the version and the index.
+     */
+    synchronized void evicted() {
+      invalidate();
+      keyIndex = null;
+    }
+
+    /**
+     * The index of the list by the key the extractor returns, created if there is none or the one
+     * there is uses another extractor.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> KeyIndex<T> keyIndex(ActionsList.KeyExtractor<T> keyExtractor) {
+      if (keyIndex == null || keyIndex.keyExtractor() != keyExtractor) {
+        keyIndex = new KeyIndex<>(keyExtractor);
+      }
+      return (KeyIndex<T>) keyIndex;
+    }
+
+    /**
+     * Keep the state derived from the list until the version moves from the given value, as long
+     * as the list has not been invalidated since the generation was read.
+     */
+    void keep(Object state, long version, long generation) {
+      kept = new Kept(state, version, generation);
+    }
+
+    /**
+     * The state kept for the current value of the version, or null if there is none.
+     */
+    Object kept() {
+      Kept kept = this.kept;
+      return kept != null && kept.version == value.get()
+          && kept.generation == generation.get() ? kept.state : null;
+    }
+  }
+
+  private static final class Kept {
+    private final Object state;
+    private final long version, generation;
+
+    private Kept(Object state, long version, long generation) {
+      this.state = state;
+      this.version = version;
+      this.generation = generation;
+    }
+  }
+}
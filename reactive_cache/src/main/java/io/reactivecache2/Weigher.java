@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+/**
+ * Weighs the data kept by the memory tier configured with {@link
+ * ReactiveCache.Builder#memoryCacheSize(long)}, set with {@link
+ * ReactiveCache.Builder#weigher(Weigher)}. By default the weight of the data is the amount of
+ * bytes it takes serialized.
+ */
+public interface Weigher {
+
+  /**
+   * The weight of the data, in the same unit as the memory cache size. Data heavier than the
+   * memory cache size is not kept in memory.
+   */
+  long weigh(Object data);
+}
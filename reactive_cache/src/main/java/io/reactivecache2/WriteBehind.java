@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.Source;
+import io.rx_cache2.internal.ProcessorProviders;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layer in front of the ProcessorProviders of RxCache which emits the data written as soon as it
+ * is staged in memory, and persists it afterwards from a background writer, so the latency of the
+ * disk stays out of the write path.
+ *
+ * <p>Staged writes are flushed once the oldest of them has waited the max delay or once the max
+ * batch of them are staged, whatever happens first. A write drops the staged writes its eviction
+ * covers, so repeated writes to the same key are coalesced into the last one, and the rest are
+ * flushed in the order they were staged. Reads of a staged key are served with a copy of its
+ * data, while reads of a key that a staged write would evict flush first. Evictions go straight
+ * to RxCache after dropping the staged writes they cover.
+ *
+ * <p>The data is staged as a copy, serialized and deserialized by the {@link JolyglotGenerics}
+ * RxCache persists it with, and the caller gets back another copy, as RxCache does, so changes
+ * made by the caller afterwards never reach the record. Data which does not survive the copy is
+ * written straight to RxCache. Only the writes which replace a record are staged: the data
+ * retrieved by the loader of a read is persisted by RxCache itself before being emitted.
+ */
+final class WriteBehind implements ProcessorProviders {
+  private final ProcessorProviders processorProviders;
+  private final long maxDelayMillis;
+  private final int maxBatch;
+  private final Scheduler.Worker writer;
+  private final JolyglotGenerics jolyglot;
+  private final LinkedHashMap<String, Write> writes;
+  private final Object persisting;
+  private boolean flushScheduled, flushDelayed;
+
+  /**
+   * @param jolyglot the speaker RxCache persists the records with.
+   */
+  WriteBehind(ProcessorProviders processorProviders, JolyglotGenerics jolyglot,
+      long maxDelayMillis, int maxBatch, Scheduler scheduler) {
+    this.processorProviders = processorProviders;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxBatch = maxBatch;
+    this.writer = scheduler.createWorker();
+    this.jolyglot = jolyglot;
+    this.writes = new LinkedHashMap<>();
+    this.persisting = new Object();
+  }
+
+  @Override public <T> Observable<T> process(final ConfigProvider configProvider) {
+    return Observable.defer(() -> {
+      final String key = RecordKeys.of(configProvider);
+
+      if (configProvider.evictProvider().evict()) {
+        return written(configProvider).flatMapObservable(written -> {
+          Object staged = !written.isEmpty() ? copy(written.get(0)) : null;
+          Object data = staged != null ? copy(staged) : null;
+          if (data == null) {
+            synchronized (persisting) {
+              drop(configProvider);
+            }
+            return processorProviders.<T>process(configProvider);
+          }
+
+          stage(key, configProvider, staged);
+          return ConfigProviders.reply(configProvider, data, Source.CLOUD);
+        });
+      }
+
+      Write write;
+      boolean evicted;
+      synchronized (this) {
+        write = writes.get(key);
+        evicted = write == null && isEvicted(key);
+      }
+
+      if (write != null) {
+        Object data = copy(write.data);
+        if (data != null) {
+          return ConfigProviders.reply(configProvider, data, Source.MEMORY);
+        }
+      }
+
+      if (write != null || evicted) {
+        return flush().andThen(processorProviders.<T>process(configProvider));
+      }
+      return processorProviders.<T>process(configProvider);
+    });
+  }
+
+  @Override public Observable<Void> evictAll() {
+    return Observable.defer(() -> {
+      synchronized (persisting) {
+        synchronized (this) {
+          writes.clear();
+        }
+      }
+      return processorProviders.evictAll();
+    });
+  }
+
+  /**
+   * Persist the writes staged so far, completing once they have been handed to RxCache or
+   * failing with the error of the first write which could not be persisted.
+   */
+  Completable flush() {
+    return Completable.create(emitter -> writer.schedule(() -> {
+      try {
+        persist();
+        emitter.onComplete();
+      } catch (RuntimeException e) {
+        emitter.onError(e);
+      }
+    }));
+  }
+
+  /**
+   * Whether a write of the record is staged, so it is not on disk yet.
+   */
+  synchronized boolean isStaged(String key) {
+    return writes.containsKey(key);
+  }
+
+  /**
+   * The data the configuration writes, or none if it only evicts, whose loader fails.
+   */
+  private Single<List<Object>> written(ConfigProvider configProvider) {
+    Observable<?> loader = configProvider.getLoaderObservable();
+    return loader
+        .take(1)
+        .cast(Object.class)
+        .toList()
+        .onErrorReturn(error -> Collections.emptyList());
+  }
+
+  /**
+   * Stage the write of the data, persisted with a configuration of its own which loads the copy
+   * staged instead of the data of the caller.
+   */
+  private synchronized void stage(String key, ConfigProvider configProvider, Object data) {
+    drop(configProvider);
+    ConfigProvider staged = new ConfigProvider(configProvider.getProviderKey(),
+        configProvider.useExpiredDataIfNotLoaderAvailable(), configProvider.getLifeTimeMillis(),
+        false, configProvider.isExpirable(), configProvider.isEncrypted(),
+        configProvider.getDynamicKey(), configProvider.getDynamicKeyGroup(),
+        Observable.just(data), configProvider.evictProvider());
+    writes.put(key, new Write(staged, data));
+
+    if (writes.size() >= maxBatch) {
+      if (flushScheduled) return;
+      flushScheduled = true;
+      writer.schedule(this::persistQuietly);
+    } else if (!flushDelayed) {
+      flushDelayed = true;
+      writer.schedule(this::persistQuietly, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Drop the staged writes the configuration evicts, as RxCache would drop them once persisted.
+   */
+  private synchronized void drop(ConfigProvider configProvider) {
+    Iterator<String> keys = writes.keySet().iterator();
+    while (keys.hasNext()) {
+      if (RecordKeys.evicts(configProvider, keys.next())) keys.remove();
+    }
+  }
+
+  private boolean isEvicted(String key) {
+    for (Write write : writes.values()) {
+      if (RecordKeys.evicts(write.configProvider, key)) return true;
+    }
+    return false;
+  }
+
+  private void persistQuietly() {
+    try {
+      persist();
+    } catch (RuntimeException ignore) {
+      //Reported to the callers of flush, the background writer just moves on.
+    }
+  }
+
+  /**
+   * Hand the staged writes to RxCache in order. Every write stays staged until persisted, so
+   * reads keep being served from memory meanwhile, and it is skipped if it has been replaced by a
+   * newer write of its key or dropped by an eviction since. Evictions wait for the write being
+   * persisted, so a write they drop is never persisted after them. Runs on the writer, so
+   * flushes never overlap.
+   */
+  private void persist() {
+    List<Write> staged;
+    synchronized (this) {
+      flushScheduled = false;
+      flushDelayed = false;
+      staged = new ArrayList<>(writes.values());
+    }
+
+    RuntimeException failure = null;
+    for (Write write : staged) {
+      String key = RecordKeys.of(write.configProvider);
+
+      synchronized (persisting) {
+        synchronized (this) {
+          if (writes.get(key) != write) continue;
+        }
+
+        try {
+          Completable.fromObservable(processorProviders.process(write.configProvider))
+              .blockingAwait();
+        } catch (RuntimeException e) {
+          if (failure == null) failure = e;
+        }
+
+        synchronized (this) {
+          if (writes.get(key) == write) writes.remove(key);
+        }
+      }
+    }
+
+    if (failure != null) throw failure;
+  }
+
+  private Object copy(Object data) {
+    try {
+      Type type = Types.typeOf(data);
+      return jolyglot.fromJson(jolyglot.toJson(data, type), type);
+    } catch (RuntimeException e) {
+      //Not every type survives the copy, leave it to RxCache.
+      return null;
+    }
+  }
+
+  private static final class Write {
+    private final ConfigProvider configProvider;
+    private final Object data;
+
+    Write(ConfigProvider configProvider, Object data) {
+      this.configProvider = configProvider;
+      this.data = data;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Scheduler;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers when the record of every key was last written through this ReactiveCache instance, so
+ * providers can tell how old a cached record is without reaching the persistence layer.
+ */
+final class WriteTimes {
+  private final ConcurrentMap<String, Long> times;
+  private final Scheduler clock;
+
+  WriteTimes(Scheduler clock) {
+    this.times = new ConcurrentHashMap<>();
+    this.clock = clock;
+  }
+
+  void written(String key) {
+    times.put(key, clock.now(TimeUnit.MILLISECONDS));
+  }
+
+  void evicted(String key) {
+    times.remove(key);
+  }
+
+  void evictedStartingWith(String prefix) {
+    Iterator<String> keys = times.keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().startsWith(prefix)) keys.remove();
+    }
+  }
+
+  /**
+   * Milliseconds elapsed since the record was written, or Long.MAX_VALUE if this instance has not
+   * written it (i.e. it was persisted by a previous session).
+   */
+  long age(String key) {
+    Long time = times.get(key);
+    return time != null ? clock.now(TimeUnit.MILLISECONDS) - time : Long.MAX_VALUE;
+  }
+}
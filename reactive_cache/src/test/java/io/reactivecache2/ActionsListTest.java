@@ -449,6 +449,46 @@ public abstract class ActionsListTest {
     assertThat(mocks.get(6).getMessage(), is("5_or_6_updated"));
   }
 
+  @Test public void Batch_Applies_Operations_In_Order() {
+    checkInitialState();
+    addAll(10);
+
+    actions()
+        .batch(batch -> batch
+            .addFirst(new Mock("first"))
+            .evictLast()
+            .update(element -> element.getMessage().equals("5"), element -> {
+              element.setMessage("5_updated");
+              return element;
+            }))
+        .test()
+        .awaitTerminalEvent();
+
+    List<Mock> mocks = cache().test().values().get(0);
+    assertThat(mocks.size(), is(10));
+    assertThat(mocks.get(0).getMessage(), is("first"));
+    assertThat(mocks.get(6).getMessage(), is("5_updated"));
+    assertThat(mocks.get(9).getMessage(), is("8"));
+  }
+
+  @Test public void When_Batch_Operation_Fails_Then_Persist_Nothing() {
+    checkInitialState();
+    addAll(10);
+
+    actions()
+        .batch(batch -> batch
+            .evictFirst()
+            .update(element -> element.getMessage().equals("5"), element -> {
+              throw new IllegalStateException();
+            }))
+        .test()
+        .awaitTerminalEvent();
+
+    List<Mock> mocks = cache().test().values().get(0);
+    assertThat(mocks.size(), is(10));
+    assertThat(mocks.get(0).getMessage(), is("0"));
+  }
+
   private void checkInitialState() {
     TestObserver<List<Mock>> testObserver = cache().test();
     testObserver.awaitTerminalEvent();
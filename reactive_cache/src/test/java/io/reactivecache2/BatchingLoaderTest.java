@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.rx_cache2.RxCacheException;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class BatchingLoaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private List<List<String>> batches;
+  private TestScheduler scheduler;
+  private BatchingLoader<String, Mock> loader;
+
+  @Before public void setUp() {
+    batches = new ArrayList<>();
+    scheduler = new TestScheduler();
+    loader = new BatchingLoader<>(keys -> {
+      batches.add(keys);
+      Map<String, Mock> mocks = new HashMap<>();
+      for (String key : keys) {
+        if (!key.equals("absent")) mocks.put(key, new Mock(key));
+      }
+      return Single.just(mocks);
+    }, 100, 3, scheduler);
+  }
+
+  @Test public void When_Window_Elapsed_Then_Load_Keys_Together() {
+    TestObserver<Mock> first = loader.load("1").test();
+    TestObserver<Mock> second = loader.load("2").test();
+    assertThat(batches.size(), is(0));
+
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(batches.size(), is(1));
+    assertThat(first.values().get(0).getMessage(), is("1"));
+    assertThat(second.values().get(0).getMessage(), is("2"));
+  }
+
+  @Test public void When_Max_Batch_Reached_Then_Load_Right_Away() {
+    loader.load("1").test();
+    loader.load("2").test();
+    TestObserver<Mock> last = loader.load("3").test();
+    assertThat(batches.size(), is(0));
+
+    scheduler.triggerActions();
+    last.assertValueCount(1);
+    assertThat(batches.size(), is(1));
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    assertThat(batches.size(), is(1));
+  }
+
+  @Test public void When_Key_Repeated_Then_Load_It_Once() {
+    TestObserver<Mock> first = loader.load("1").test();
+    TestObserver<Mock> second = loader.load("1").test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(batches.get(0).size(), is(1));
+    first.assertValueCount(1);
+    second.assertValueCount(1);
+  }
+
+  @Test public void When_No_Data_For_Key_Then_Fail_Only_That_Key() {
+    TestObserver<Mock> present = loader.load("1").test();
+    TestObserver<Mock> absent = loader.load("absent").test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    present.assertValueCount(1);
+    absent.assertError(RxCacheException.class);
+  }
+
+  @Test public void When_Disposed_Then_Do_Not_Load_Its_Key() {
+    loader.load("1").test().dispose();
+    TestObserver<Mock> second = loader.load("2").test();
+    TestObserver<Mock> repeated = loader.load("2").test();
+    repeated.dispose();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(batches.size(), is(1));
+    assertThat(batches.get(0).size(), is(1));
+    assertThat(batches.get(0).get(0), is("2"));
+    second.assertValueCount(1);
+  }
+
+  @Test public void When_Every_Loader_Disposed_Then_Do_Not_Load() {
+    loader.load("1").test().dispose();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(batches.size(), is(0));
+  }
+
+  @Test public void When_Bulk_Loader_Returns_Null_Then_Fail() {
+    loader = new BatchingLoader<>(keys -> null, 100, 3, scheduler);
+    TestObserver<Mock> observer = loader.load("1").test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    observer.assertError(NullPointerException.class);
+  }
+
+  @Test public void When_Used_As_Loader_Then_Batch_Only_Misses() {
+    ReactiveCache reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    Single.just(new Mock("1"))
+        .compose(reactiveCache.<Mock>provider().withKey("1").replace())
+        .test()
+        .awaitTerminalEvent();
+
+    TestObserver<Mock> hit = loader.load("1")
+        .compose(reactiveCache.<Mock>provider().withKey("1").readWithLoader())
+        .test();
+    hit.awaitTerminalEvent();
+    hit.assertValueCount(1);
+
+    TestObserver<Mock> miss = loader.load("2")
+        .compose(reactiveCache.<Mock>provider().withKey("2").readWithLoader())
+        .test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    miss.awaitTerminalEvent();
+
+    miss.assertValueCount(1);
+    assertThat(batches.size(), is(1));
+    assertThat(batches.get(0).get(0), is("2"));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Max_Batch_Not_Positive_Then_Throw() {
+    new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance())
+        .<String, Mock>batchingLoader(100, TimeUnit.MILLISECONDS, 0,
+            keys -> Single.<Map<String, Mock>>just(new HashMap<String, Mock>()));
+  }
+}
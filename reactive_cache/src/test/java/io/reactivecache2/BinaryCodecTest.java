@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public final class BinaryCodecTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private CodecJolyglot jolyglot;
+
+  @Before public void setUp() {
+    jolyglot = new CodecJolyglot(new BinaryCodec(), null, 0);
+  }
+
+  @Test public void Verify_Round_Trip_List() {
+    List<Mock> mocks = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      mocks.add(new Mock(i % 2 == 0 ? "even" : null));
+    }
+
+    Type type = jolyglot.newParameterizedType(List.class, Mock.class);
+    List<Mock> decoded = jolyglot.fromJson(jolyglot.toJson(mocks, type), type);
+
+    assertThat(decoded.size(), is(100));
+    assertThat(decoded.get(0).getMessage(), is("even"));
+    assertThat(decoded.get(1).getMessage(), is(nullValue()));
+  }
+
+  @Test public void Verify_Round_Trip_Values() {
+    Values values = new Values();
+    values.anInt = -7;
+    values.aLong = Long.MAX_VALUE;
+    values.aDouble = 1.5;
+    values.aBoolean = true;
+    values.aChar = 'c';
+    values.anEnum = Kind.SECOND;
+    values.ints = new int[] {1, 2, 3};
+    values.map = new LinkedHashMap<>();
+    values.map.put(1, new Mock("one"));
+    values.generic = new Generic<>();
+    values.generic.value = Arrays.asList(new Mock("generic"));
+
+    Values decoded = jolyglot.fromJson(jolyglot.toJson(values), Values.class);
+
+    assertThat(decoded.anInt, is(-7));
+    assertThat(decoded.aLong, is(Long.MAX_VALUE));
+    assertThat(decoded.aDouble, is(1.5));
+    assertThat(decoded.aBoolean, is(true));
+    assertThat(decoded.aChar, is('c'));
+    assertThat(decoded.anEnum, is(Kind.SECOND));
+    assertThat(decoded.ints.length, is(3));
+    assertThat(decoded.ints[2], is(3));
+    assertThat(decoded.map.get(1).getMessage(), is("one"));
+    assertThat(decoded.generic.value.get(0).getMessage(), is("generic"));
+  }
+
+  @Test public void When_Decode_As_Object_Then_Decode_Generic_Values() {
+    Map<?, ?> decoded = (Map<?, ?>) jolyglot.fromJson(jolyglot.toJson(new Mock("mock")),
+        Object.class);
+    assertThat(decoded.get("message"), is((Object) "mock"));
+  }
+
+  @Test public void When_Field_Removed_Then_Skip_It() {
+    Values values = new Values();
+    values.anInt = 1;
+    Mock mock = jolyglot.fromJson(jolyglot.toJson(values), Mock.class);
+    assertThat(mock.getMessage(), is(nullValue()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void When_Frame_Truncated_Then_Throw() {
+    String frame = jolyglot.toJson(new Mock("mock"));
+    jolyglot.fromJson(frame.substring(0, frame.length() - 1), Mock.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void When_Not_A_Frame_Then_Throw() throws IOException {
+    File file = temporaryFolder.newFile();
+    FileWriter writer = new FileWriter(file);
+    writer.write("{\"message\":\"mock\"}");
+    writer.close();
+    jolyglot.fromJson(file, Mock.class);
+  }
+
+  @Test public void Verify_Provider_With_Codec() {
+    ReactiveCache reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), new BinaryCodec());
+    Provider<List<Mock>> provider = reactiveCache.<List<Mock>>provider()
+        .withKey("mocks");
+
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2")))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    //A new instance reads the records from disk.
+    provider = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), new BinaryCodec())
+        .<List<Mock>>provider()
+        .withKey("mocks");
+    List<Mock> mocks = provider.read().test().values().get(0);
+    assertThat(mocks.size(), is(2));
+    assertThat(mocks.get(1).getMessage(), is("2"));
+  }
+
+  enum Kind {
+    FIRST, SECOND
+  }
+
+  static class Generic<T> {
+    List<T> value;
+  }
+
+  static class Values {
+    int anInt;
+    long aLong;
+    double aDouble;
+    boolean aBoolean;
+    char aChar;
+    Kind anEnum;
+    int[] ints;
+    Map<Integer, Mock> map;
+    Generic<Mock> generic;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.rx_cache2.internal.Record;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class CompressionTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void Verify_Round_Trip_Compressed_Json() {
+    JolyglotGenerics jolyglot = new CompressedJolyglot(Jolyglot$.newInstance(),
+        new DeflateCompression(), 0);
+    Type type = jolyglot.newParameterizedType(Record.class,
+        jolyglot.newParameterizedType(List.class, Mock.class));
+    Record<List<Mock>> record = new Record<>(mocks(100));
+
+    String json = Jolyglot$.newInstance().toJson(record, type);
+    String compressed = jolyglot.toJson(record, type);
+    assertThat(compressed.length() < json.length(), is(true));
+
+    Record<List<Mock>> read = jolyglot.fromJson(compressed, type);
+    assertThat(read.getData().size(), is(100));
+    assertThat(read.getData().get(99).getMessage(), is("99"));
+  }
+
+  @Test public void When_Deep_Copied_Then_Keep_Json() {
+    JolyglotGenerics jolyglot = new CompressedJolyglot(Jolyglot$.newInstance(),
+        new DeflateCompression(), 0);
+    Type type = jolyglot.newParameterizedType(List.class, Mock.class);
+
+    assertThat(jolyglot.toJson(mocks(100), type),
+        is(Jolyglot$.newInstance().toJson(mocks(100), type)));
+  }
+
+  @Test public void When_Below_Threshold_Then_Keep_Json() {
+    JolyglotGenerics jolyglot = new CompressedJolyglot(Jolyglot$.newInstance(),
+        new DeflateCompression(), 1024);
+
+    Mock mock = new Mock("mock");
+    assertThat(jolyglot.toJson(mock), is(Jolyglot$.newInstance().toJson(mock)));
+  }
+
+  @Test public void When_Json_Written_Without_Compression_Then_Read_It() throws IOException {
+    File file = temporaryFolder.newFile();
+    FileWriter writer = new FileWriter(file);
+    writer.write(Jolyglot$.newInstance().toJson(new Mock("mock")));
+    writer.close();
+
+    JolyglotGenerics jolyglot = new CompressedJolyglot(Jolyglot$.newInstance(),
+        new DeflateCompression(), 0);
+    assertThat(jolyglot.fromJson(file, Mock.class).getMessage(), is("mock"));
+  }
+
+  @Test public void Verify_Round_Trip_Compressed_Codec() {
+    JolyglotGenerics jolyglot = new CodecJolyglot(new BinaryCodec(), new DeflateCompression(), 0);
+    Type type = jolyglot.newParameterizedType(List.class, Mock.class);
+
+    List<Mock> mocks = jolyglot.fromJson(jolyglot.toJson(mocks(100), type), type);
+    assertThat(mocks.size(), is(100));
+    assertThat(mocks.get(99).getMessage(), is("99"));
+  }
+
+  @Test public void Verify_Provider_With_Compression() {
+    ReactiveCache reactiveCache = new ReactiveCache.Builder()
+        .compress(new DeflateCompression(), 256)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    Provider<List<Mock>> provider = reactiveCache.<List<Mock>>provider()
+        .withKey("mocks");
+
+    Single.just(mocks(1000))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    File record = temporaryFolder.getRoot().listFiles()[0];
+    String json = Jolyglot$.newInstance().toJson(mocks(1000));
+    assertThat(record.length() < json.length(), is(true));
+
+    List<Mock> mocks = provider.read().test().values().get(0);
+    assertThat(mocks.size(), is(1000));
+    assertThat(mocks.get(999).getMessage(), is("999"));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Compression_Null_Then_Throw() {
+    new ReactiveCache.Builder().compress(null, 0);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Threshold_Negative_Then_Throw() {
+    new ReactiveCache.Builder().compress(new DeflateCompression(), -1);
+  }
+
+  private List<Mock> mocks(int count) {
+    List<Mock> mocks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      mocks.add(new Mock(String.valueOf(i)));
+    }
+    return mocks;
+  }
+}
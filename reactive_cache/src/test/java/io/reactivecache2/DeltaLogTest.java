@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class DeltaLogTest extends ActionsListTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private ReactiveCache reactiveCache;
+  private ProviderList<Mock> cacheProvider;
+
+  @Before public void setUp() {
+    reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    cacheProvider = reactiveCache.<Mock>providerList()
+        .deltaLog(1000)
+        .withKey("mock");
+  }
+
+  @Test public void When_Append_Then_Write_Only_The_Delta() {
+    ProviderList<Mock> provider = reactiveCache.<Mock>providerList()
+        .deltaLog(3)
+        .withKey("compacted");
+
+    Single.just(mocks(100))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+    assertThat(temporaryFolder.getRoot().listFiles().length, is(1));
+
+    provider.entries().addFirst(new Mock("first")).test().awaitTerminalEvent();
+    provider.entries().evictLast().test().awaitTerminalEvent();
+
+    //base snapshot, index and the delta of addFirst, as evictLast has no elements to persist.
+    assertThat(temporaryFolder.getRoot().listFiles().length, is(3));
+
+    List<Mock> mocks = provider.read().test().values().get(0);
+    assertThat(mocks.size(), is(100));
+    assertThat(mocks.get(0).getMessage(), is("first"));
+    assertThat(mocks.get(99).getMessage(), is("98"));
+  }
+
+  @Test public void When_Threshold_Reached_Then_Compact() throws InterruptedException {
+    ProviderList<Mock> provider = reactiveCache.<Mock>providerList()
+        .deltaLog(3)
+        .withKey("compacted");
+
+    Single.just(mocks(10))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    for (int i = 0; i < 3; i++) {
+      provider.entries().addLast(new Mock("added" + i)).test().awaitTerminalEvent();
+    }
+
+    Thread.sleep(500);
+    assertThat(temporaryFolder.getRoot().listFiles().length, is(1));
+
+    List<Mock> mocks = provider.read().test().values().get(0);
+    assertThat(mocks.size(), is(13));
+    assertThat(mocks.get(12).getMessage(), is("added2"));
+  }
+
+  @Test public void When_Edited_While_Compacting_Then_No_Change_Is_Lost()
+      throws InterruptedException {
+    ProviderList<Mock> provider = reactiveCache.<Mock>providerList()
+        .deltaLog(2)
+        .withKey("compacted");
+
+    Single.just(mocks(10))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    for (int i = 0; i < 20; i++) {
+      provider.entries().addLast(new Mock("added" + i)).test().awaitTerminalEvent();
+    }
+
+    Thread.sleep(500);
+    List<Mock> mocks = provider.read().test().values().get(0);
+    assertThat(mocks.size(), is(30));
+    for (int i = 0; i < 20; i++) {
+      assertThat(mocks.get(10 + i).getMessage(), is("added" + i));
+    }
+  }
+
+  @Test public void When_Replace_Then_Discard_Deltas() {
+    Single.just(mocks(10))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+    cacheProvider.entries().addFirst(new Mock("first")).test().awaitTerminalEvent();
+
+    Single.just(mocks(5))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    List<Mock> mocks = cacheProvider.read().test().values().get(0);
+    assertThat(mocks.size(), is(5));
+    assertThat(mocks.get(0).getMessage(), is("0"));
+    assertThat(temporaryFolder.getRoot().listFiles().length, is(1));
+  }
+
+  @Test public void When_Replace_Between_Edits_Then_Edit_The_Replaced_List() {
+    Single.just(mocks(10))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+    cacheProvider.entries().addFirst(new Mock("first")).test().awaitTerminalEvent();
+    cacheProvider.entries().addLast(new Mock("last")).test().awaitTerminalEvent();
+
+    Single.just(mocks(3))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+    cacheProvider.entries().addLast(new Mock("last")).test().awaitTerminalEvent();
+
+    List<Mock> mocks = cacheProvider.read().test().values().get(0);
+    assertThat(mocks.size(), is(4));
+    assertThat(mocks.get(0).getMessage(), is("0"));
+    assertThat(mocks.get(3).getMessage(), is("last"));
+  }
+
+  @Test public void When_Evict_Then_Discard_Deltas() {
+    Single.just(mocks(10))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+    cacheProvider.entries().addFirst(new Mock("first")).test().awaitTerminalEvent();
+
+    cacheProvider.evict().test().awaitTerminalEvent();
+
+    assertThat(temporaryFolder.getRoot().listFiles().length, is(0));
+  }
+
+  @Test public void When_Read_With_Loader_Then_Apply_Deltas() {
+    Single.just(mocks(10))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+    cacheProvider.entries()
+        .update(mock -> mock.getMessage().equals("5"), mock -> new Mock("updated"))
+        .test()
+        .awaitTerminalEvent();
+
+    TestObserver<List<Mock>> observer = Single.just(mocks(1))
+        .compose(cacheProvider.readWithLoader())
+        .test();
+    observer.awaitTerminalEvent();
+
+    List<Mock> mocks = observer.values().get(0);
+    assertThat(mocks.size(), is(10));
+    assertThat(mocks.get(5).getMessage(), is("updated"));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Threshold_Not_Positive_Then_Throw() {
+    reactiveCache.<Mock>providerList().deltaLog(0);
+  }
+
+  private List<Mock> mocks(int count) {
+    List<Mock> mocks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      mocks.add(new Mock(String.valueOf(i)));
+    }
+    return mocks;
+  }
+
+  @Override protected ActionsList<Mock> actions() {
+    return cacheProvider.entries();
+  }
+
+  @Override protected Single<List<Mock>> cache() {
+    return cacheProvider.read();
+  }
+}
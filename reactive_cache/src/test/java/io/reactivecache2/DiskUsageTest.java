@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class DiskUsageTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private ReactiveCache reactiveCache;
+
+  @Before public void setUp() {
+    reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+  }
+
+  @Test public void When_Written_Then_Count_The_Files() {
+    write(reactiveCache.<Mock>provider().withKey("mock1"));
+    write(reactiveCache.<Mock>provider().withKey("mock2"));
+
+    assertTrue(reactiveCache.diskUsageBytes() > 0);
+    assertThat(reactiveCache.diskUsageBytes(), is(sizeOf(temporaryFolder.getRoot())));
+  }
+
+  @Test public void When_Group_Evicted_Then_Discount_Its_File() {
+    ProviderGroup<Mock> provider = reactiveCache.<Mock>providerGroup().withKey("mocks");
+    write(provider, "1");
+    write(provider, "2");
+
+    TestObserver<Void> observer = provider.evict("1").test();
+    observer.awaitTerminalEvent();
+
+    assertThat(reactiveCache.diskUsageBytes(), is(sizeOf(temporaryFolder.getRoot())));
+
+    observer = provider.evict().test();
+    observer.awaitTerminalEvent();
+
+    assertThat(reactiveCache.diskUsageBytes(), is(0L));
+  }
+
+  @Test public void When_Created_Over_Existing_Records_Then_Count_Them() {
+    write(reactiveCache.<Mock>provider().withKey("mock"));
+    long bytes = reactiveCache.diskUsageBytes();
+
+    reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    assertThat(reactiveCache.diskUsageBytes(), is(bytes));
+  }
+
+  private void write(Provider<Mock> provider) {
+    TestObserver<Mock> observer = Single.just(new Mock("0"))
+        .compose(provider.replace())
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+  }
+
+  private void write(ProviderGroup<Mock> provider, String group) {
+    TestObserver<Mock> observer = Single.just(new Mock(group))
+        .compose(provider.replace(group))
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+  }
+
+  private long sizeOf(File directory) {
+    long bytes = 0;
+    for (File file : directory.listFiles()) {
+      bytes += file.length();
+    }
+    return bytes;
+  }
+}
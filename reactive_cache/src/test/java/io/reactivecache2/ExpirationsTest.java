@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.TestScheduler;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.EvictProvider;
+import io.rx_cache2.RxCacheException;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class ExpirationsTest {
+  private static final EvictDynamicKeyGroup KEEP = new EvictDynamicKeyGroup(false);
+  private static final EvictDynamicKeyGroup REPLACE = new EvictDynamicKeyGroup(true);
+  private FakeProcessorProviders persistence;
+  private TestScheduler scheduler;
+  private List<String> expired;
+  private Expirations expirations;
+
+  @Before public void setUp() {
+    persistence = new FakeProcessorProviders();
+    scheduler = new TestScheduler();
+    expired = new ArrayList<>();
+    expirations = new Expirations(persistence, false, scheduler, scheduler,
+        eviction -> expired.add(eviction.getDynamicKeyGroup()));
+  }
+
+  @Test public void When_Deadline_Passed_Then_Evict_Without_Reading() {
+    write("1", 100L, null);
+
+    scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+    assertThat(persistence.records.containsKey("1"), is(true));
+
+    scheduler.advanceTimeBy(250, TimeUnit.MILLISECONDS);
+    assertThat(persistence.records.containsKey("1"), is(false));
+    assertThat(persistence.reads, is(0));
+  }
+
+  @Test public void When_Evicted_On_Deadline_Then_Notify_The_Listener() {
+    write("1", 100L, null);
+    write("2", 1000L, null);
+
+    scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+    assertThat(expired.size(), is(1));
+    assertThat(expired.get(0), is("1"));
+  }
+
+  @Test public void When_Retrieved_By_Loader_Then_Evict_On_Deadline() {
+    expirations.process(config("1", Observable.just(mocks()), KEEP, 100L, null)).test();
+
+    scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+    assertThat(persistence.records.containsKey("1"), is(false));
+    assertThat(expired.size(), is(1));
+  }
+
+  @Test public void When_Evicted_Before_Deadline_Then_Do_Not_Notify() {
+    write("1", 100L, null);
+    expirations.process(config("1", Observable.error(new RuntimeException()), REPLACE, null,
+        null)).test();
+
+    scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+    assertThat(expired.isEmpty(), is(true));
+  }
+
+  @Test public void When_Use_Expired_Data_Then_Do_Not_Evict() {
+    write("1", 100L, true);
+
+    scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+    assertThat(persistence.records.containsKey("1"), is(true));
+    assertThat(expired.isEmpty(), is(true));
+  }
+
+  private void write(String key, Long lifeTime, Boolean useExpiredData) {
+    expirations.process(config(key, Observable.just(mocks()), REPLACE, lifeTime, useExpiredData))
+        .test();
+  }
+
+  private ConfigProvider config(String key, Observable<?> loader, EvictProvider evict,
+      Long lifeTime, Boolean useExpiredData) {
+    return new ConfigProvider("mocks", useExpiredData, lifeTime, false, true, false, "mocks", key,
+        loader, evict);
+  }
+
+  private List<Mock> mocks() {
+    List<Mock> mocks = new ArrayList<>();
+    mocks.add(new Mock("0"));
+    return mocks;
+  }
+
+  /**
+   * Keeps the records by group, retrieving them from the loader when not cached.
+   */
+  private static final class FakeProcessorProviders implements ProcessorProviders {
+    private final Map<String, Object> records = new HashMap<>();
+    private int reads;
+
+    @Override public <T> Observable<T> process(ConfigProvider configProvider) {
+      final String group = configProvider.getDynamicKeyGroup();
+      if (configProvider.evictProvider().evict()) {
+        records.remove(group);
+      } else if (records.containsKey(group)) {
+        reads++;
+        return Observable.just((T) records.get(group));
+      }
+
+      Observable<T> loader = configProvider.getLoaderObservable();
+      return loader
+          .doOnNext(data -> records.put(group, data))
+          .onErrorResumeNext(Observable.<T>error(new RxCacheException("Not cached")))
+          .switchIfEmpty(Observable.<T>error(new RxCacheException("Not cached")));
+    }
+
+    @Override public Observable<Void> evictAll() {
+      records.clear();
+      return Observable.empty();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.EvictProvider;
+import io.rx_cache2.RxCacheException;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class MemoryTierTest {
+  private static final EvictDynamicKeyGroup KEEP = new EvictDynamicKeyGroup(false);
+  private static final EvictDynamicKeyGroup REPLACE = new EvictDynamicKeyGroup(true);
+  private FakeProcessorProviders persistence;
+  private MemoryTier memoryTier;
+
+  @Before public void setUp() {
+    persistence = new FakeProcessorProviders();
+    memoryTier = new MemoryTier(persistence, Jolyglot$.newInstance(), 3, data -> 1);
+  }
+
+  @Test public void When_Written_Then_Read_From_Memory() {
+    write("1", mocks("1"), null);
+
+    assertThat(read("1").get(0).getMessage(), is("1"));
+    assertThat(persistence.reads, is(0));
+  }
+
+  @Test public void When_Read_Then_Return_A_Copy() {
+    write("1", mocks("1"), null);
+
+    read("1").clear();
+    assertThat(read("1").size(), is(1));
+  }
+
+  @Test public void When_Budget_Exceeded_Then_Evict_Least_Recently_Used() {
+    write("1", mocks("1"), null);
+    write("2", mocks("2"), null);
+    write("3", mocks("3"), null);
+    write("4", mocks("4"), null);
+
+    read("1");
+    assertThat(persistence.reads, is(1));
+    read("4");
+    assertThat(persistence.reads, is(1));
+  }
+
+  @Test public void When_Read_Again_Then_Survive_A_Scan() {
+    write("hot", mocks("hot"), null);
+    read("hot");
+
+    for (int i = 0; i < 10; i++) {
+      write("cold" + i, mocks("cold"), null);
+    }
+
+    read("hot");
+    assertThat(persistence.reads, is(0));
+  }
+
+  @Test public void When_Evicted_Then_Read_From_Persistence() {
+    write("1", mocks("1"), null);
+
+    memoryTier.process(config("1", Observable.error(new RuntimeException()), REPLACE, null))
+        .test();
+
+    memoryTier.process(config("1", Observable.empty(), KEEP, null)).test()
+        .assertError(RxCacheException.class);
+    assertThat(persistence.reads, is(1));
+  }
+
+  @Test public void When_Expired_Then_Read_From_Persistence() throws InterruptedException {
+    write("1", mocks("1"), 50L);
+    Thread.sleep(100);
+
+    read("1");
+    assertThat(persistence.reads, is(1));
+  }
+
+  @Test public void When_Read_From_Persistence_With_Life_Time_Then_Do_Not_Keep_It() {
+    persistence.records.put("1", mocks("1"));
+
+    memoryTier.process(config("1", Observable.empty(), KEEP, 1000L)).test();
+    memoryTier.process(config("1", Observable.empty(), KEEP, 1000L)).test();
+    assertThat(persistence.reads, is(2));
+
+    read("1");
+    read("1");
+    assertThat(persistence.reads, is(3));
+  }
+
+  @Test public void When_Other_Key_Written_While_Reading_Then_Keep_The_Read() {
+    persistence.records.put("1", mocks("1"));
+    persistence.onRead = () -> write("2", mocks("2"), null);
+    read("1");
+
+    persistence.onRead = null;
+    assertThat(read("1").get(0).getMessage(), is("1"));
+    assertThat(persistence.reads, is(1));
+  }
+
+  @Test public void When_Same_Key_Evicted_While_Reading_Then_Do_Not_Keep_The_Read() {
+    persistence.records.put("1", mocks("1"));
+    persistence.onRead = () -> memoryTier
+        .process(config("1", Observable.error(new RuntimeException()), REPLACE, null))
+        .test();
+    read("1");
+
+    persistence.onRead = null;
+    memoryTier.process(config("1", Observable.empty(), KEEP, null)).test()
+        .assertError(RxCacheException.class);
+    assertThat(persistence.reads, is(2));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Memory_Cache_Size_Not_Positive_Then_Throw() {
+    new ReactiveCache.Builder().memoryCacheSize(0);
+  }
+
+  private void write(String key, List<Mock> mocks, Long lifeTime) {
+    memoryTier.process(config(key, Observable.just(mocks), REPLACE, lifeTime)).test();
+  }
+
+  private List<Mock> read(String key) {
+    return memoryTier.<List<Mock>>process(config(key, Observable.empty(), KEEP, null)).test()
+        .values().get(0);
+  }
+
+  private ConfigProvider config(String key, Observable<?> loader, EvictProvider evict,
+      Long lifeTime) {
+    return new ConfigProvider("mocks", false, lifeTime, false, true, false, "mocks", key, loader,
+        evict);
+  }
+
+  private List<Mock> mocks(String message) {
+    List<Mock> mocks = new ArrayList<>();
+    mocks.add(new Mock(message));
+    return mocks;
+  }
+
+  /**
+   * Keeps the records by group, counting the reads which reach it.
+   */
+  private static final class FakeProcessorProviders implements ProcessorProviders {
+    private final Map<String, Object> records = new HashMap<>();
+    private int reads;
+    private Runnable onRead;
+
+    @Override public <T> Observable<T> process(ConfigProvider configProvider) {
+      String group = configProvider.getDynamicKeyGroup();
+      if (configProvider.evictProvider().evict()) {
+        records.remove(group);
+        return configProvider.getLoaderObservable().map(data -> {
+          records.put(group, data);
+          return data;
+        });
+      }
+
+      reads++;
+      Object data = records.get(group);
+      if (onRead != null) onRead.run();
+      return data != null ? Observable.just((T) data) :
+          Observable.<T>error(new RxCacheException("Not cached"));
+    }
+
+    @Override public Observable<Void> evictAll() {
+      records.clear();
+      return Observable.empty();
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import java.io.File;
+import java.security.InvalidParameterException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricsTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private ReactiveCache reactiveCache;
+  private Provider<Mock> cacheProvider;
+
+  @Before public void setUp() {
+    reactiveCache = newReactiveCache();
+    cacheProvider = reactiveCache.<Mock>provider()
+        .withKey("mock");
+  }
+
+  @Test public void When_Written_And_Read_Then_Count_Write_And_Memory_Hit() {
+    write();
+
+    TestObserver<Mock> observer = cacheProvider.read().test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+
+    ProviderMetrics metrics = reactiveCache.metrics().get("mock");
+    assertThat(metrics.writes(), is(1L));
+    assertThat(metrics.memoryHits(), is(1L));
+    assertThat(metrics.diskHits(), is(0L));
+    assertThat(metrics.hitRatio(), is(1.0));
+    assertThat(metrics.readLatency().count(), is(1L));
+    assertThat(metrics.writeLatency().count(), is(1L));
+    assertTrue(metrics.bytesWritten() > 0);
+    assertThat(metrics.bytesRead(), is(0L));
+  }
+
+  @Test public void When_Read_With_Loader_Then_Count_Miss_And_Loader_Call() {
+    TestObserver<Mock> observer = Single.just(new Mock("0"))
+        .compose(cacheProvider.readWithLoader())
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+
+    ProviderMetrics metrics = reactiveCache.metrics().get("mock");
+    assertThat(metrics.misses(), is(1L));
+    assertThat(metrics.loaderCalls(), is(1L));
+    assertThat(metrics.hitRatio(), is(0.0));
+  }
+
+  @Test public void When_Loader_Emits_On_Another_Thread_Then_Count_The_Bytes_Of_Its_File() {
+    TestObserver<Mock> observer = Single.just(new Mock("0"))
+        .subscribeOn(Schedulers.io())
+        .compose(cacheProvider.readWithLoader())
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+
+    File file = new File(temporaryFolder.getRoot(), RecordKeys.fileOf("mock", "mock", ""));
+    assertTrue(file.length() > 0);
+    assertThat(reactiveCache.metrics().get("mock").bytesWritten(), is(file.length()));
+  }
+
+  @Test public void When_Read_From_A_New_Instance_Then_Count_Disk_Hit() {
+    write();
+
+    reactiveCache = newReactiveCache();
+    TestObserver<Mock> observer = reactiveCache.<Mock>provider()
+        .withKey("mock")
+        .read()
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+
+    ProviderMetrics metrics = reactiveCache.metrics().get("mock");
+    assertThat(metrics.diskHits(), is(1L));
+    assertTrue(metrics.bytesRead() > 0);
+    assertThat(metrics.bytesWritten(), is(0L));
+  }
+
+  @Test public void When_Evicted_Then_Count_Eviction() {
+    write();
+
+    TestObserver<Void> observer = cacheProvider.evict().test();
+    observer.awaitTerminalEvent();
+
+    assertThat(reactiveCache.metrics().get("mock").evictions(), is(1L));
+  }
+
+  @Test public void When_Closed_Then_Persist_The_Staged_Writes() {
+    reactiveCache = new ReactiveCache.Builder()
+        .writeBehind(1, TimeUnit.HOURS, 100)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    cacheProvider = reactiveCache.<Mock>provider()
+        .withKey("mock");
+    write();
+
+    reactiveCache.flush().blockingAwait();
+    reactiveCache.close();
+
+    TestObserver<Mock> observer = newReactiveCache().<Mock>provider()
+        .withKey("mock")
+        .read()
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+  }
+
+  @Test public void When_Not_Set_Then_No_Metrics() {
+    reactiveCache = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    assertTrue(reactiveCache.metrics().isEmpty());
+  }
+
+  @Test public void Verify_Latency_Percentiles() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    for (int micros = 1; micros <= 1000; micros++) {
+      recorder.record(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    LatencyHistogram histogram = recorder.snapshot();
+    assertThat(histogram.count(), is(1000L));
+    assertThat(histogram.maxMicros(), is(1000L));
+    assertThat(histogram.meanMicros(), is(500.5));
+    assertTrue(Math.abs(histogram.percentileMicros(50) - 500) <= 500 / 16);
+    assertTrue(Math.abs(histogram.percentileMicros(99) - 990) <= 990 / 16);
+    assertThat(histogram.percentileMicros(100), is(1000L));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Report_Interval_Not_Positive_Then_Throw() {
+    new ReactiveCache.Builder().metrics(metrics -> {}, 0, TimeUnit.SECONDS);
+  }
+
+  private ReactiveCache newReactiveCache() {
+    return new ReactiveCache.Builder()
+        .metrics(metrics -> {}, 1, TimeUnit.HOURS)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+  }
+
+  private void write() {
+    TestObserver<Mock> observer = Single.just(new Mock("0"))
+        .compose(cacheProvider.replace())
+        .test();
+    observer.awaitTerminalEvent();
+    observer.assertValueCount(1);
+  }
+}
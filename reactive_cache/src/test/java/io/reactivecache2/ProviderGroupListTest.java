@@ -18,6 +18,7 @@ package io.reactivecache2;
 
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
 import io.rx_cache2.RxCacheException;
 import java.util.Arrays;
 import java.util.List;
@@ -26,6 +27,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
 public final class ProviderGroupListTest extends ActionsListTest {
   private static final String group = "group";
   @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
@@ -78,6 +82,58 @@ public final class ProviderGroupListTest extends ActionsListTest {
         .assertComplete();
   }
 
+  @Test public void Verify_Keyed_Operations_By_Group() {
+    ProviderGroupList<Mock> keyed = reactiveCache.<Mock>providerGroupList()
+        .keyExtractor(Mock::getMessage)
+        .withKey("keyed");
+
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2")))
+        .compose(keyed.replace(group))
+        .test()
+        .awaitTerminalEvent();
+    Single.just(Arrays.asList(new Mock("2"), new Mock("1")))
+        .compose(keyed.replace("other"))
+        .test()
+        .awaitTerminalEvent();
+
+    keyed.entries(group).evictByKey("1").test().awaitTerminalEvent();
+
+    List<Mock> mocks = keyed.read(group).test().values().get(0);
+    assertThat(mocks.size(), is(1));
+    assertThat(mocks.get(0).getMessage(), is("2"));
+
+    mocks = keyed.read("other").test().values().get(0);
+    assertThat(mocks.size(), is(2));
+    keyed.entries("other").getByKey("1").test()
+        .assertValue(mock -> mock.getMessage().equals("1"));
+  }
+
+  @Test public void When_Stream_Then_Emit_On_Request() {
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2")))
+        .compose(cacheProvider.replace(group))
+        .test()
+        .awaitTerminalEvent();
+
+    TestSubscriber<Mock> subscriber = cacheProvider.stream(group).test(1);
+    subscriber.assertValueCount(1).assertNotComplete();
+
+    subscriber.request(1);
+    subscriber.assertValueAt(1, mock -> mock.getMessage().equals("2")).assertComplete();
+
+    cacheProvider.stream("other").test().assertError(RxCacheException.class);
+  }
+
+  @Test public void Verify_Read_Range() {
+    Single.just(Arrays.asList(new Mock("0"), new Mock("1"), new Mock("2")))
+        .compose(cacheProvider.replace(group))
+        .test()
+        .awaitTerminalEvent();
+
+    List<Mock> page = cacheProvider.readRange(group, 1, 5).test().values().get(0);
+    assertThat(page.size(), is(2));
+    assertThat(page.get(0).getMessage(), is("1"));
+  }
+
   @Override protected ActionsList<Mock> actions() {
     return cacheProvider.entries(group);
   }
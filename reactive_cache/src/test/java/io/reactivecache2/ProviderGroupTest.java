@@ -18,10 +18,20 @@ package io.reactivecache2;
 
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
 import io.rx_cache2.Reply;
 import io.rx_cache2.RxCacheException;
 import io.rx_cache2.Source;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -207,6 +217,30 @@ public final class ProviderGroupTest {
         .get(0).getMessage(), is(MESSAGE_GROUP));
   }
 
+  @Test public void When_Read_If_Present_With_Nothing_To_Read_Then_Complete_Empty() {
+    saveMock(MESSAGE_GROUP + 2);
+
+    TestObserver<Mock> observer = cacheProvider.readIfPresent(MESSAGE_GROUP).test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertNoValues();
+    observer.assertComplete();
+  }
+
+  @Test public void When_Read_If_Present_Then_Return_Data() {
+    saveMock(MESSAGE_GROUP);
+
+    TestObserver<Mock> observer = cacheProvider.readIfPresent(MESSAGE_GROUP).test();
+    observer.awaitTerminalEvent();
+
+    observer.assertValueCount(1);
+    observer.assertNoErrors();
+    observer.assertComplete();
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE_GROUP));
+  }
+
   @Test public void Verify_Read_With_Loader() {
     cacheProvider = reactiveCache.<Mock>providerGroup()
         .lifeCache(100, TimeUnit.MILLISECONDS)
@@ -319,6 +353,310 @@ public final class ProviderGroupTest {
     assertThat(observer.values().get(0).getMessage(), is("3"));
   }
 
+  @Test public void When_Coalesce_Then_Concurrent_Reads_Share_Loader_By_Group() {
+    cacheProvider = reactiveCache.<Mock>providerGroup()
+        .coalesce(true)
+        .withKey("coalescedMock");
+
+    TestScheduler scheduler = new TestScheduler();
+    AtomicInteger subscriptions = new AtomicInteger();
+    Single<Mock> loader = Single.just(new Mock(MESSAGE_GROUP))
+        .delay(100, TimeUnit.MILLISECONDS, scheduler)
+        .doOnSubscribe(disposable -> subscriptions.incrementAndGet());
+
+    List<TestObserver<Mock>> observers = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      observers.add(loader.compose(cacheProvider.readWithLoader(MESSAGE_GROUP)).test());
+      observers.add(loader.compose(cacheProvider.readWithLoader(MESSAGE_GROUP + 2)).test());
+    }
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    for (TestObserver<Mock> observer : observers) {
+      observer.awaitTerminalEvent();
+      observer.assertNoErrors();
+      observer.assertValueCount(1);
+    }
+
+    assertThat(subscriptions.get(), is(2));
+  }
+
+  @Test public void When_Coalesce_Then_Do_Not_Share_Loader_With_Provider_Of_Joined_Key() {
+    Provider<Mock> provider = reactiveCache.<Mock>provider()
+        .coalesce(true)
+        .withKey("coalescedMock$" + MESSAGE_GROUP);
+    cacheProvider = reactiveCache.<Mock>providerGroup()
+        .coalesce(true)
+        .withKey("coalescedMock");
+
+    TestObserver<Mock> pending = Single.just(new Mock("provider"))
+        .delay(1, TimeUnit.SECONDS, new TestScheduler())
+        .compose(provider.readWithLoader())
+        .test();
+
+    TestObserver<Mock> observer = Single.just(new Mock(MESSAGE_GROUP))
+        .compose(cacheProvider.readWithLoader(MESSAGE_GROUP))
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE_GROUP));
+    pending.dispose();
+  }
+
+  @Test public void When_Stale_While_Revalidate_Then_Emit_Stale_Data_And_Refresh_It() {
+    TestScheduler scheduler = new TestScheduler();
+    reactiveCache = new ReactiveCache.Builder()
+        .scheduler(scheduler)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    cacheProvider = reactiveCache.<Mock>providerGroup()
+        .lifeCache(1, TimeUnit.MINUTES)
+        .staleWhileRevalidate(1, TimeUnit.MINUTES, Schedulers.trampoline())
+        .withKey("staleMock");
+
+    saveMock(MESSAGE_GROUP);
+    scheduler.advanceTimeBy(90, TimeUnit.SECONDS);
+
+    TestObserver<Mock> observer = Single.just(new Mock("1"))
+        .compose(cacheProvider.readWithLoader(MESSAGE_GROUP))
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertValueCount(1);
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE_GROUP));
+
+    observer = cacheProvider.read(MESSAGE_GROUP).test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertValueCount(1);
+    assertThat(observer.values()
+        .get(0).getMessage(), is("1"));
+  }
+
+  @Test public void When_Refresh_Ahead_And_Read_Recently_Then_Refresh_Before_Expiring() {
+    TestScheduler scheduler = new TestScheduler();
+    reactiveCache = new ReactiveCache.Builder()
+        .scheduler(scheduler)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    cacheProvider = reactiveCache.<Mock>providerGroup()
+        .lifeCache(1, TimeUnit.MINUTES)
+        .refreshAhead(0.5f)
+        .withKey("refreshedMock");
+
+    AtomicInteger calls = new AtomicInteger();
+    Single<Mock> loader = Single.fromCallable(() ->
+        new Mock(String.valueOf(calls.incrementAndGet())));
+
+    loader.compose(cacheProvider.readWithLoader(MESSAGE_GROUP))
+        .test()
+        .awaitTerminalEvent();
+    loader.compose(cacheProvider.readWithLoader(MESSAGE_GROUP + 2))
+        .test()
+        .awaitTerminalEvent();
+
+    scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+    //Only the first group is read recently.
+    loader.compose(cacheProvider.readWithLoader(MESSAGE_GROUP))
+        .test()
+        .awaitTerminalEvent();
+
+    scheduler.advanceTimeBy(25, TimeUnit.SECONDS);
+
+    TestObserver<Mock> observer = cacheProvider.read(MESSAGE_GROUP).test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    assertThat(observer.values()
+        .get(0).getMessage(), is("3"));
+    assertThat(calls.get(), is(3));
+  }
+
+  @Test public void When_Read_All_Then_Return_Only_Cached_Groups() {
+    saveMock(MESSAGE_GROUP);
+    saveMock(MESSAGE_GROUP + 2);
+
+    TestObserver<Map<Object, Mock>> observer = cacheProvider
+        .readAll(Arrays.asList(MESSAGE_GROUP, MESSAGE_GROUP + 1, MESSAGE_GROUP + 2))
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    Map<Object, Mock> mocks = observer.values().get(0);
+    assertThat(mocks.size(), is(2));
+    assertThat(mocks.get(MESSAGE_GROUP).getMessage(), is(MESSAGE_GROUP));
+    assertThat(mocks.get(MESSAGE_GROUP + 2).getMessage(), is(MESSAGE_GROUP + 2));
+  }
+
+  @Test public void When_Read_All_With_Loader_Then_Load_Only_Missing_Groups() {
+    saveMock(MESSAGE_GROUP);
+    final List<Object> requested = new ArrayList<>();
+
+    TestObserver<Map<Object, Mock>> observer = cacheProvider
+        .readAllWithLoader(Arrays.asList(MESSAGE_GROUP, MESSAGE_GROUP + 1), missing -> {
+          requested.addAll(missing);
+          Map<Object, Mock> loaded = new HashMap<>();
+          for (Object group : missing) loaded.put(group, new Mock(group.toString()));
+          return Single.just(loaded);
+        })
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    assertThat(requested, is(Arrays.<Object>asList(MESSAGE_GROUP + 1)));
+    assertThat(observer.values().get(0).size(), is(2));
+    verifyMockCached(MESSAGE_GROUP + 1);
+  }
+
+  @Test public void When_Read_All_With_Loader_Returning_Null_Then_Emit_Error() {
+    TestObserver<Map<Object, Mock>> observer = cacheProvider
+        .readAllWithLoader(Arrays.asList(MESSAGE_GROUP), missing -> null)
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertError(NullPointerException.class);
+  }
+
+  @Test public void When_Max_Groups_Exceeded_Then_Evict_Least_Recently_Used()
+      throws InterruptedException {
+    ProviderGroup<Mock> limited = reactiveCache.<Mock>providerGroup()
+        .maxGroups(2)
+        .withKey("limited");
+
+    saveMock(MESSAGE_GROUP);
+    saveMock(limited, "1");
+    saveMock(limited, "2");
+    limited.read("1").test().awaitTerminalEvent();
+    saveMock(limited, "3");
+    Thread.sleep(200);
+
+    limited.readIfPresent("2").test().assertNoValues();
+    limited.readIfPresent("1").test().assertValueCount(1);
+    limited.readIfPresent("3").test().assertValueCount(1);
+    verifyMockCached(MESSAGE_GROUP);
+  }
+
+  @Test public void When_Group_Idle_Then_Evict_It() throws InterruptedException {
+    ProviderGroup<Mock> limited = reactiveCache.<Mock>providerGroup()
+        .groupIdleTimeout(100, TimeUnit.MILLISECONDS)
+        .withKey("limited");
+
+    saveMock(limited, "1");
+    Thread.sleep(400);
+
+    limited.readIfPresent("1").test().assertNoValues();
+  }
+
+  @Test public void When_Prefetch_Then_Warm_Following_Groups() throws InterruptedException {
+    ProviderGroup<Mock> pages = reactiveCache.<Mock>providerGroup()
+        .prefetch(2, 2, page -> (Integer) page + 1, page -> Single.just(new Mock("" + page)))
+        .withKey("pages");
+
+    Single.just(new Mock("1"))
+        .compose(pages.readWithLoader(1))
+        .test()
+        .awaitTerminalEvent();
+    Thread.sleep(300);
+
+    pages.readIfPresent(2).test().assertValueCount(1);
+    pages.readIfPresent(3).test().assertValueCount(1);
+    pages.readIfPresent(4).test().assertNoValues();
+  }
+
+  @Test public void When_Prefetch_Then_Warm_The_Groups_Of_Every_Key_Apart()
+      throws InterruptedException {
+    ProviderGroup.ProviderBuilder<Mock> builder = reactiveCache.<Mock>providerGroup()
+        .prefetch(2, 2, page -> (Integer) page + 1,
+            page -> Single.just(new Mock("" + page)).delay(200, TimeUnit.MILLISECONDS));
+    ProviderGroup<Mock> pages = builder.withKey("pages");
+    ProviderGroup<Mock> others = builder.withKey("others");
+
+    Single.just(new Mock("1"))
+        .compose(pages.readWithLoader(1))
+        .test()
+        .awaitTerminalEvent();
+    Single.just(new Mock("1"))
+        .compose(others.readWithLoader(1))
+        .test()
+        .awaitTerminalEvent();
+    Thread.sleep(600);
+
+    others.readIfPresent(2).test().assertValueCount(1);
+    others.readIfPresent(3).test().assertValueCount(1);
+  }
+
+  @Test public void When_Groups_Then_List_Cached_Groups() {
+    saveMock(MESSAGE_GROUP);
+    saveMock(MESSAGE_GROUP + 2);
+    cacheProvider.evict(MESSAGE_GROUP).test().awaitTerminalEvent();
+
+    TestSubscriber<String> subscriber = cacheProvider.groups().test();
+    subscriber.awaitTerminalEvent();
+    subscriber.assertValues(MESSAGE_GROUP + 2);
+
+    CachedGroup cached = cacheProvider.cachedGroups().blockingFirst();
+    assertThat(cached.expiresAt(), is(Long.MAX_VALUE));
+    assertThat(cached.sizeBytes() > 0, is(true));
+  }
+
+  @Test public void When_Groups_Then_List_Groups_Cached_By_Previous_Instance() {
+    saveMock(MESSAGE_GROUP);
+    reactiveCache.flush().blockingAwait();
+
+    ReactiveCache restarted = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    TestSubscriber<String> subscriber = restarted.<Mock>providerGroup()
+        .withKey("mock")
+        .groups()
+        .test();
+    subscriber.awaitTerminalEvent();
+    subscriber.assertValues(MESSAGE_GROUP);
+  }
+
+  @Test public void When_Group_Record_Evicted_Apart_Then_Do_Not_List_It() {
+    saveMock(MESSAGE_GROUP);
+    saveMock(MESSAGE_GROUP + 2);
+    reactiveCache.flush().blockingAwait();
+    new File(temporaryFolder.getRoot(), RecordKeys.fileOf("mock", "mock", MESSAGE_GROUP)).delete();
+
+    ReactiveCache restarted = new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    TestSubscriber<String> subscriber = restarted.<Mock>providerGroup()
+        .withKey("mock")
+        .groups()
+        .test();
+    subscriber.awaitTerminalEvent();
+    subscriber.assertValues(MESSAGE_GROUP + 2);
+  }
+
+  @Test public void When_Provider_Key_Looks_Like_An_Index_Then_Keep_Its_Data() {
+    Provider<Mock> provider = reactiveCache.<Mock>provider()
+        .withKey("mock$groups");
+    Single.just(new Mock(MESSAGE_GROUP))
+        .compose(provider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    saveMock(MESSAGE_GROUP);
+    reactiveCache.flush().blockingAwait();
+
+    TestObserver<Mock> observer = provider.read().test();
+    observer.awaitTerminalEvent();
+    assertThat(observer.values().get(0).getMessage(), is(MESSAGE_GROUP));
+  }
+
+  private void saveMock(ProviderGroup<Mock> provider, String group) {
+    Single.just(new Mock(group))
+        .compose(provider.replace(group))
+        .test()
+        .awaitTerminalEvent();
+  }
+
   private void saveMock(String messageGroup) {
     Single.just(new Mock(messageGroup))
         .compose(cacheProvider.replace(messageGroup))
@@ -18,14 +18,25 @@ package io.reactivecache2;
 
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
 import io.rx_cache2.RxCacheException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
 public final class ProviderListTest extends ActionsListTest {
   @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
   private ReactiveCache reactiveCache;
@@ -77,6 +88,176 @@ public final class ProviderListTest extends ActionsListTest {
         .assertComplete();
   }
 
+  @Test public void Verify_Keyed_Operations() {
+    ProviderList<Mock> keyed = reactiveCache.<Mock>providerList()
+        .keyExtractor(Mock::getMessage)
+        .withKey("keyed");
+
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2"), new Mock("3")))
+        .compose(keyed.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    keyed.entries().addFirst(new Mock("0")).test().awaitTerminalEvent();
+    keyed.entries().evictByKey("1").test().awaitTerminalEvent();
+    keyed.entries().updateByKey("3", mock -> {
+      mock.setMessage("3_updated");
+      return mock;
+    }).test().awaitTerminalEvent();
+
+    List<Mock> mocks = keyed.read().test().values().get(0);
+    assertThat(mocks.size(), is(3));
+    assertThat(mocks.get(0).getMessage(), is("0"));
+    assertThat(mocks.get(1).getMessage(), is("2"));
+    assertThat(mocks.get(2).getMessage(), is("3_updated"));
+
+    keyed.entries().getByKey("2").test()
+        .assertValue(mock -> mock.getMessage().equals("2"));
+    keyed.entries().getByKey("1").test()
+        .assertNoValues()
+        .assertComplete();
+
+    //written without going through the index.
+    Single.just(Arrays.asList(new Mock("4"), new Mock("1")))
+        .compose(keyed.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    keyed.entries().getByKey("1").test()
+        .assertValue(mock -> mock.getMessage().equals("1"));
+  }
+
+  @Test public void When_Keyed_Write_Fails_Then_Keep_The_Index_Of_The_Persisted_List() {
+    final AtomicInteger extractions = new AtomicInteger();
+    ActionsList.KeyExtractor<Mock> keyExtractor = mock -> {
+      extractions.incrementAndGet();
+      return mock.getMessage();
+    };
+    ProviderList<Mock> keyed = reactiveCache.<Mock>providerList()
+        .keyExtractor(keyExtractor)
+        .withKey("keyed");
+    ProviderList<Mock> sameKey = reactiveCache.<Mock>providerList()
+        .keyExtractor(keyExtractor)
+        .withKey("keyed");
+
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2"), new Mock("3")))
+        .compose(keyed.replace())
+        .test()
+        .awaitTerminalEvent();
+    keyed.entries().getByKey("3").test().awaitTerminalEvent();
+
+    keyed.entries().batch(batch -> batch
+        .addFirst(new Mock("0"))
+        .updateByKey("2", mock -> {
+          throw new IllegalStateException();
+        }))
+        .test()
+        .assertError(IllegalStateException.class);
+
+    //found by the index as it was before the failed write, without rebuilding it.
+    extractions.set(0);
+    keyed.entries().getByKey("3").test()
+        .assertValue(mock -> mock.getMessage().equals("3"));
+    assertThat(extractions.get(), is(1));
+
+    //the index is shared with the providers of the same key.
+    sameKey.entries().evictFirst().test().awaitTerminalEvent();
+    extractions.set(0);
+    keyed.entries().getByKey("3").test()
+        .assertValue(mock -> mock.getMessage().equals("3"));
+    assertThat(extractions.get(), is(1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void When_No_Key_Extractor_Then_Keyed_Operations_Throw() {
+    cacheProvider.entries().evictByKey("1");
+  }
+
+  @Test public void When_Concurrent_Writers_Then_No_Change_Is_Lost() throws Exception {
+    final int threads = 8, writesPerThread = 25;
+    final ActionsList<Mock> shared = cacheProvider.entries();
+    final ActionsList<Mock> other = reactiveCache.<Mock>providerList()
+        .withKey("other")
+        .entries();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int thread = 0; thread < threads; thread++) {
+      final int id = thread;
+      futures.add(executor.submit(() -> {
+        start.await();
+        for (int write = 0; write < writesPerThread; write++) {
+          shared.addLast(new Mock(id + "_" + write)).blockingAwait();
+          other.addFirst(new Mock(id + "_" + write)).blockingAwait();
+          if (write % 5 == 4) shared.evictLastN(count -> true, 1).blockingAwait();
+        }
+        return null;
+      }));
+    }
+
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    assertThat(cacheProvider.read().blockingGet().size(), is(threads * writesPerThread * 4 / 5));
+    assertThat(reactiveCache.<Mock>providerList().withKey("other").read().blockingGet().size(),
+        is(threads * writesPerThread));
+  }
+
+  @Test public void When_Stream_Then_Emit_On_Request() {
+    Single.just(Arrays.asList(new Mock("1"), new Mock("2"), new Mock("3")))
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    TestSubscriber<Mock> subscriber = cacheProvider.stream().test(0);
+    subscriber.assertNoValues();
+
+    subscriber.request(2);
+    subscriber.assertValueCount(2).assertNotComplete();
+
+    subscriber.request(1);
+    subscriber.assertValueAt(2, mock -> mock.getMessage().equals("3")).assertComplete();
+
+    //The elements released by the stream remain cached.
+    assertThat(cacheProvider.read().test().values().get(0).get(0).getMessage(), is("1"));
+
+    cacheProvider.evict().test().awaitTerminalEvent();
+    cacheProvider.stream().test().assertError(RxCacheException.class);
+  }
+
+  @Test public void Verify_Read_Range() {
+    List<Mock> mocks = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      mocks.add(new Mock(String.valueOf(i)));
+    }
+    Single.just(mocks)
+        .compose(cacheProvider.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    List<Mock> page = cacheProvider.readRange(4, 3).test().values().get(0);
+    assertThat(page.size(), is(3));
+    assertThat(page.get(0).getMessage(), is("4"));
+    assertThat(page.get(2).getMessage(), is("6"));
+
+    page = cacheProvider.readRange(8, 5).test().values().get(0);
+    assertThat(page.size(), is(2));
+
+    page = cacheProvider.readRange(20, 5).test().values().get(0);
+    assertThat(page.size(), is(0));
+  }
+
+  @Test public void When_Read_Range_Negative_Then_Emit_Error() {
+    cacheProvider.readRange(-1, 5)
+        .test()
+        .assertError(IllegalArgumentException.class);
+  }
+
   @Override protected ActionsList<Mock> actions() {
     return cacheProvider.entries();
   }
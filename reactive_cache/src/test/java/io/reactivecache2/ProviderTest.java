@@ -18,10 +18,15 @@ package io.reactivecache2;
 
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 import io.rx_cache2.Reply;
 import io.rx_cache2.RxCacheException;
 import io.rx_cache2.Source;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,6 +66,27 @@ public final class ProviderTest {
     verifyMockCached();
   }
 
+  @Test public void When_useExpiredDataWhenNoLoaderAvailable_Then_Read_If_Present_Expired_Data() {
+    reactiveCache = new ReactiveCache.Builder()
+        .useExpiredDataWhenNoLoaderAvailable()
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    cacheProvider = reactiveCache.<Mock>provider()
+        .lifeCache(100, TimeUnit.MILLISECONDS)
+        .withKey("mock");
+
+    saveMock();
+    waitTime(300);
+
+    TestObserver<Mock> observer = cacheProvider.readIfPresent().test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertValueCount(1);
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE));
+  }
+
   @Test public void When_Not_useExpiredDataWhenNoLoaderAvailable_Then_Throw() {
     reactiveCache = new ReactiveCache.Builder()
         .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
@@ -181,6 +207,28 @@ public final class ProviderTest {
         .get(0).getMessage(), is(MESSAGE));
   }
 
+  @Test public void When_Read_If_Present_With_Nothing_To_Read_Then_Complete_Empty() {
+    TestObserver<Mock> observer = cacheProvider.readIfPresent().test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertNoValues();
+    observer.assertComplete();
+  }
+
+  @Test public void When_Read_If_Present_Then_Return_Data() {
+    saveMock();
+
+    TestObserver<Mock> observer = cacheProvider.readIfPresent().test();
+    observer.awaitTerminalEvent();
+
+    observer.assertValueCount(1);
+    observer.assertNoErrors();
+    observer.assertComplete();
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE));
+  }
+
   @Test public void Verify_Read_With_Loader() {
     cacheProvider = reactiveCache.<Mock>provider()
         .lifeCache(100, TimeUnit.MILLISECONDS)
@@ -251,6 +299,174 @@ public final class ProviderTest {
         .get(0).getSource(), is(Source.CLOUD));
   }
 
+  @Test public void When_Builder_Is_Reused_Then_Every_Provider_Keeps_Its_Own_Key() {
+    Provider.ProviderBuilder<Mock> builder = reactiveCache.<Mock>provider();
+    Provider<Mock> provider1 = builder.withKey("mock1");
+    Provider<Mock> provider2 = builder.withKey("mock2");
+
+    Single.just(new Mock("1"))
+        .compose(provider1.replace())
+        .test()
+        .awaitTerminalEvent();
+
+    provider2.read()
+        .test()
+        .awaitTerminalEvent()
+        .assertError(RxCacheException.class);
+
+    provider1.read()
+        .test()
+        .awaitTerminalEvent()
+        .assertValue(mock -> mock.getMessage().equals("1"));
+  }
+
+  @Test public void When_Builder_Is_Reused_Then_Every_Provider_Keeps_Its_Own_Configuration() {
+    Provider.ProviderBuilder<Mock> builder = reactiveCache.<Mock>provider();
+    Provider<Mock> provider1 = builder.withKey("mock1");
+    builder.coalesce(true).withKey("mock2");
+
+    TestScheduler scheduler = new TestScheduler();
+    AtomicInteger subscriptions = new AtomicInteger();
+    Single<Mock> loader = Single.just(new Mock(MESSAGE))
+        .delay(100, TimeUnit.MILLISECONDS, scheduler)
+        .doOnSubscribe(disposable -> subscriptions.incrementAndGet());
+
+    List<TestObserver<Mock>> observers = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      observers.add(loader.compose(provider1.readWithLoader()).test());
+    }
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    for (TestObserver<Mock> observer : observers) {
+      observer.awaitTerminalEvent();
+      observer.assertNoErrors();
+    }
+
+    assertThat(subscriptions.get(), is(2));
+  }
+
+  @Test public void When_Coalesce_Then_Concurrent_Reads_Share_Loader() {
+    cacheProvider = reactiveCache.<Mock>provider()
+        .coalesce(true)
+        .withKey("coalescedMock");
+
+    TestScheduler scheduler = new TestScheduler();
+    AtomicInteger subscriptions = new AtomicInteger();
+    Single<Mock> loader = Single.just(new Mock(MESSAGE))
+        .delay(100, TimeUnit.MILLISECONDS, scheduler)
+        .doOnSubscribe(disposable -> subscriptions.incrementAndGet());
+
+    List<TestObserver<Mock>> observers = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      observers.add(loader.compose(cacheProvider.readWithLoader()).test());
+    }
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    for (TestObserver<Mock> observer : observers) {
+      observer.awaitTerminalEvent();
+      observer.assertNoErrors();
+      observer.assertValueCount(1);
+      assertThat(observer.values()
+          .get(0).getMessage(), is(MESSAGE));
+    }
+
+    assertThat(subscriptions.get(), is(1));
+  }
+
+  @Test public void When_Stale_While_Revalidate_Then_Emit_Stale_Data_And_Refresh_It() {
+    TestScheduler scheduler = new TestScheduler();
+    reactiveCache = new ReactiveCache.Builder()
+        .scheduler(scheduler)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    cacheProvider = reactiveCache.<Mock>provider()
+        .lifeCache(1, TimeUnit.MINUTES)
+        .staleWhileRevalidate(1, TimeUnit.MINUTES, Schedulers.trampoline())
+        .withKey("staleMock");
+
+    saveMock();
+    scheduler.advanceTimeBy(90, TimeUnit.SECONDS);
+
+    TestObserver<Mock> observer = Single.just(new Mock("1"))
+        .compose(cacheProvider.readWithLoader())
+        .test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertValueCount(1);
+    assertThat(observer.values()
+        .get(0).getMessage(), is(MESSAGE));
+
+    observer = cacheProvider.read().test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    observer.assertValueCount(1);
+    assertThat(observer.values()
+        .get(0).getMessage(), is("1"));
+  }
+
+  @Test public void When_Stale_While_Revalidate_And_Replace_As_Reply_Then_Do_Not_Refresh_Fresh_Data() {
+    cacheProvider = reactiveCache.<Mock>provider()
+        .lifeCache(1, TimeUnit.MINUTES)
+        .staleWhileRevalidate(1, TimeUnit.MINUTES, Schedulers.trampoline())
+        .withKey("staleReplyMock");
+
+    Single.just(new Mock(MESSAGE))
+        .compose(cacheProvider.replaceAsReply())
+        .test()
+        .awaitTerminalEvent();
+
+    AtomicInteger calls = new AtomicInteger();
+    TestObserver<Reply<Mock>> observer = Single.fromCallable(() -> {
+      calls.incrementAndGet();
+      return new Mock("1");
+    }).compose(cacheProvider.readWithLoaderAsReply()).test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    assertThat(observer.values()
+        .get(0).getData().getMessage(), is(MESSAGE));
+    assertThat(calls.get(), is(0));
+  }
+
+  @Test public void When_Refresh_Ahead_And_Read_Recently_Then_Refresh_Before_Expiring() {
+    TestScheduler scheduler = new TestScheduler();
+    reactiveCache = new ReactiveCache.Builder()
+        .scheduler(scheduler)
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    cacheProvider = reactiveCache.<Mock>provider()
+        .lifeCache(1, TimeUnit.MINUTES)
+        .refreshAhead(0.5f)
+        .withKey("refreshedMock");
+
+    AtomicInteger calls = new AtomicInteger();
+    Single<Mock> loader = Single.fromCallable(() ->
+        new Mock(String.valueOf(calls.incrementAndGet())));
+
+    loader.compose(cacheProvider.readWithLoader())
+        .test()
+        .awaitTerminalEvent();
+
+    scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+    TestObserver<Mock> observer = loader.compose(cacheProvider.readWithLoader()).test();
+    observer.awaitTerminalEvent();
+    assertThat(observer.values()
+        .get(0).getMessage(), is("1"));
+
+    scheduler.advanceTimeBy(25, TimeUnit.SECONDS);
+
+    observer = cacheProvider.read().test();
+    observer.awaitTerminalEvent();
+
+    observer.assertNoErrors();
+    assertThat(observer.values()
+        .get(0).getMessage(), is("2"));
+    assertThat(calls.get(), is(2));
+  }
+
   private void saveMock() {
     TestObserver<Mock> observer = Single.just(new Mock(MESSAGE))
         .compose(cacheProvider.replace())
@@ -16,6 +16,7 @@
 
 package io.reactivecache2;
 
+import io.victoralbertos.jolyglot.JolyglotGenerics;
 import java.io.File;
 import java.security.InvalidParameterException;
 import org.junit.Rule;
@@ -40,7 +41,13 @@ public class ReactiveCacheBuilderValidationTest {
   @Test(expected = InvalidParameterException.class)
   public void Jolyglot_Null() {
     new ReactiveCache.Builder()
-        .using(temporaryFolder.getRoot(), null);
+        .using(temporaryFolder.getRoot(), (JolyglotGenerics) null);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void Codec_Null() {
+    new ReactiveCache.Builder()
+        .using(temporaryFolder.getRoot(), (Codec) null);
   }
 
   @Test(expected = InvalidParameterException.class)
@@ -62,4 +69,10 @@ public class ReactiveCacheBuilderValidationTest {
     new ReactiveCache.Builder()
         .using(cacheDir, Jolyglot$.newInstance());
   }
+
+  @Test(expected = InvalidParameterException.class)
+  public void Max_Concurrent_Refreshes_Not_Positive() {
+    new ReactiveCache.Builder()
+        .maxConcurrentRefreshes(0);
+  }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+public final class TimerWheelTest {
+  private static final long START = 1000000;
+  private TimerWheel timerWheel;
+
+  @Before public void setUp() {
+    timerWheel = new TimerWheel(START);
+  }
+
+  @Test public void When_Deadline_Not_Passed_Then_Do_Not_Expire() {
+    timerWheel.schedule("1", START + 1000);
+
+    assertTrue(timerWheel.advance(START + 999).isEmpty());
+  }
+
+  @Test public void When_Deadline_Passed_Then_Expire_Within_A_Bucket() {
+    timerWheel.schedule("1", START + 1000);
+
+    List<String> expired = new ArrayList<>();
+    long now = START;
+    while (expired.isEmpty()) {
+      now = timerWheel.nextAdvance();
+      expired = timerWheel.advance(now);
+    }
+
+    assertThat(expired, is(Collections.singletonList("1")));
+    assertTrue(now >= START + 1000 && now <= START + 1000 + 64);
+    assertTrue(timerWheel.isEmpty());
+  }
+
+  @Test public void When_Rescheduled_Then_Expire_At_The_New_Deadline() {
+    timerWheel.schedule("1", START + 1000);
+    timerWheel.schedule("1", START + 5000);
+
+    assertTrue(timerWheel.advance(START + 2000).isEmpty());
+    assertThat(timerWheel.advance(START + 6000), is(Collections.singletonList("1")));
+  }
+
+  @Test public void When_Cancelled_Then_Do_Not_Expire() {
+    timerWheel.schedule("1", START + 1000);
+    timerWheel.cancel("1");
+
+    assertTrue(timerWheel.advance(START + 2000).isEmpty());
+    assertThat(timerWheel.nextAdvance(), is(Long.MAX_VALUE));
+  }
+
+  @Test public void When_Deadline_Far_Then_Cascade_Until_It_Expires() {
+    long hour = 60 * 60 * 1000;
+    timerWheel.schedule("1", START + hour);
+    timerWheel.schedule("2", START + 24 * hour);
+
+    List<String> expired = new ArrayList<>();
+    long now = START;
+    while (!timerWheel.isEmpty()) {
+      now = timerWheel.nextAdvance();
+      for (String key : timerWheel.advance(now)) {
+        expired.add(key);
+        assertTrue(now >= START + (key.equals("1") ? hour : 24 * hour));
+      }
+    }
+
+    assertThat(expired.size(), is(2));
+    assertTrue(now <= START + 24 * hour + 64);
+  }
+
+  @Test public void Verify_Keys_Starting_With() {
+    timerWheel.schedule("a$1", START + 1000);
+    timerWheel.schedule("a$2", START + 1000);
+    timerWheel.schedule("b$1", START + 1000);
+
+    assertThat(timerWheel.keysStartingWith("a$").size(), is(2));
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.EvictDynamicKeyGroup;
+import io.rx_cache2.EvictProvider;
+import io.rx_cache2.RxCacheException;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public final class WriteBehindTest {
+  private static final EvictDynamicKeyGroup KEEP = new EvictDynamicKeyGroup(false);
+  private static final EvictDynamicKeyGroup REPLACE = new EvictDynamicKeyGroup(true);
+  private FakeProcessorProviders persistence;
+  private TestScheduler scheduler;
+  private WriteBehind writeBehind;
+
+  @Before public void setUp() {
+    persistence = new FakeProcessorProviders();
+    scheduler = new TestScheduler();
+    writeBehind = new WriteBehind(persistence, Jolyglot$.newInstance(), 100, 3, scheduler);
+  }
+
+  @Test public void When_Written_Then_Emit_Before_Persisting() {
+    write("1", mocks("1")).assertValueCount(1);
+
+    assertThat(persistence.writes, is(0));
+    assertThat(read("1").get(0).getMessage(), is("1"));
+    assertThat(persistence.reads, is(0));
+  }
+
+  @Test public void When_Max_Delay_Elapsed_Then_Persist() {
+    write("1", mocks("1"));
+
+    scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+    assertThat(persistence.writes, is(0));
+
+    scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+    assertThat(persistence.writes, is(1));
+    assertThat(read("1").get(0).getMessage(), is("1"));
+    assertThat(persistence.reads, is(1));
+  }
+
+  @Test public void When_Written_Repeatedly_Then_Persist_The_Last_Write() {
+    write("1", mocks("1"));
+    write("1", mocks("2"));
+    write("1", mocks("3"));
+
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    assertThat(persistence.writes, is(1));
+    assertThat(((List<Mock>) persistence.records.get("1")).get(0).getMessage(), is("3"));
+  }
+
+  @Test public void When_Max_Batch_Reached_Then_Persist_Without_Waiting() {
+    write("1", mocks("1"));
+    write("2", mocks("2"));
+    write("3", mocks("3"));
+
+    scheduler.triggerActions();
+    assertThat(persistence.writes, is(3));
+  }
+
+  @Test public void When_Flushed_Then_Persist_Pending_Writes() {
+    write("1", mocks("1"));
+
+    TestObserver<Void> flush = writeBehind.flush().test();
+    scheduler.triggerActions();
+
+    flush.assertComplete();
+    assertThat(persistence.writes, is(1));
+  }
+
+  @Test public void When_Evicted_Then_Drop_Pending_Write() {
+    write("1", mocks("1"));
+
+    writeBehind.process(config("1", Observable.error(new RuntimeException()), REPLACE)).test();
+    scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    assertThat(persistence.writes, is(0));
+    writeBehind.process(config("1", Observable.empty(), KEEP)).test()
+        .assertError(RxCacheException.class);
+  }
+
+  @Test public void When_Written_Data_Modified_Then_Persist_The_Data_Written() {
+    List<Mock> mocks = mocks("1");
+    List<Mock> emitted = (List<Mock>) write("1", mocks).values().get(0);
+
+    mocks.get(0).setMessage("modified");
+    emitted.get(0).setMessage("modified");
+    assertThat(read("1").get(0).getMessage(), is("1"));
+
+    writeBehind.flush().test();
+    scheduler.triggerActions();
+    List<Mock> persisted = (List<Mock>) persistence.records.get("1");
+    assertThat(persisted.get(0).getMessage(), is("1"));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void When_Max_Batch_Not_Positive_Then_Throw() {
+    new ReactiveCache.Builder().writeBehind(1, TimeUnit.SECONDS, 0);
+  }
+
+  private TestObserver<Object> write(String key, List<Mock> mocks) {
+    return writeBehind.process(config(key, Observable.just(mocks), REPLACE)).test();
+  }
+
+  private List<Mock> read(String key) {
+    return writeBehind.<List<Mock>>process(config(key, Observable.empty(), KEEP)).test()
+        .values().get(0);
+  }
+
+  private ConfigProvider config(String key, Observable<?> loader, EvictProvider evict) {
+    return new ConfigProvider("mocks", false, null, false, true, false, "mocks", key, loader,
+        evict);
+  }
+
+  private List<Mock> mocks(String message) {
+    List<Mock> mocks = new ArrayList<>();
+    mocks.add(new Mock(message));
+    return mocks;
+  }
+
+  /**
+   * Keeps the records by group, counting the writes and reads which reach it.
+   */
+  private static final class FakeProcessorProviders implements ProcessorProviders {
+    private final Map<String, Object> records = new HashMap<>();
+    private int writes, reads;
+
+    @Override public <T> Observable<T> process(ConfigProvider configProvider) {
+      String group = configProvider.getDynamicKeyGroup();
+      if (configProvider.evictProvider().evict()) {
+        records.remove(group);
+        return configProvider.getLoaderObservable().map(data -> {
+          writes++;
+          records.put(group, data);
+          return data;
+        });
+      }
+
+      reads++;
+      Object data = records.get(group);
+      return data != null ? Observable.just((T) data) :
+          Observable.<T>error(new RxCacheException("Not cached"));
+    }
+
+    @Override public Observable<Void> evictAll() {
+      records.clear();
+      return Observable.empty();
+    }
+  }
+}
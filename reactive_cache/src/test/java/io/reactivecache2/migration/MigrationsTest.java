@@ -17,21 +17,26 @@
 package io.reactivecache2.migration;
 
 import io.reactivecache2.Jolyglot$;
+import io.reactivecache2.MigrationProgress;
 import io.reactivecache2.ReactiveCache;
 import io.reactivex.Single;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
 import io.rx_cache2.MigrationCache;
 import io.rx_cache2.RxCacheException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.ClassRule;
+import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.junit.runners.MethodSorters;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public final class MigrationsTest {
   @ClassRule static public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
@@ -39,7 +44,7 @@ public final class MigrationsTest {
     populateMocks();
   }
 
-  @Test public void _2_When_Migrations_Working_Request_Will_Be_Hold_Until_Finish() {
+  @Test public void _2_When_Migrations_Working_Request_Of_Migrated_Type_Is_A_Miss() {
     int countFiles = temporaryFolder.getRoot().listFiles().length;
     assert countFiles > 0;
 
@@ -57,16 +62,74 @@ public final class MigrationsTest {
     testObserver.awaitTerminalEvent();
     testObserver.assertNoValues();
     testObserver.assertError(RxCacheException.class);
+
+    TestSubscriber<MigrationProgress> progress = reactiveCache.migrations().test();
+    progress.awaitTerminalEvent();
+    progress.assertComplete();
+    MigrationProgress last = progress.values().get(progress.values().size() - 1);
+    assertThat(last.checkedRecords(), is(last.totalRecords()));
+    assertThat(last.evictedRecords(), is(1));
   }
 
+  @Test public void _3_When_Migrations_Done_Then_Do_Not_Run_Them_Again() {
+    ReactiveCache reactiveCache = new ReactiveCache.Builder()
+        .migrations(Arrays.asList(
+            new MigrationCache(1, new Class[]{Mock1.class})
+        ))
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+    reactiveCache.migrations().test().awaitTerminalEvent();
+    populateMocks();
+
+    reactiveCache = new ReactiveCache.Builder()
+        .migrations(Arrays.asList(
+            new MigrationCache(1, new Class[]{Mock1.class})
+        ))
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    reactiveCache.migrations().test().assertNoValues().assertComplete();
+    TestObserver<List<Mock1>> testObserver = reactiveCache.<List<Mock1>>provider()
+        .withKey("getMocks")
+        .read()
+        .test();
+
+    testObserver.awaitTerminalEvent();
+    assertThat(testObserver.values().get(0).size(), is(SIZE_MOCKS));
+  }
+
+  @Test public void _4_When_Key_Has_Slashes_Then_Check_Its_Record() {
+    populateMocks("get/Mocks");
+
+    ReactiveCache reactiveCache = new ReactiveCache.Builder()
+        .migrations(Arrays.asList(
+            new MigrationCache(1, new Class[]{Mock1.class}),
+            new MigrationCache(2, new Class[]{Mock1.class})
+        ))
+        .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
+
+    TestSubscriber<MigrationProgress> progress = reactiveCache.migrations().test();
+    progress.awaitTerminalEvent();
+    MigrationProgress last = progress.values().get(progress.values().size() - 1);
+    assertThat(last.evictedRecords(), is(2));
+
+    TestObserver<List<Mock1>> testObserver = reactiveCache.<List<Mock1>>provider()
+        .withKey("get/Mocks")
+        .read()
+        .test();
+    testObserver.awaitTerminalEvent();
+    testObserver.assertError(RxCacheException.class);
+  }
 
   private void populateMocks() {
+    populateMocks("getMocks");
+  }
+
+  private void populateMocks(String key) {
     ReactiveCache reactiveCache = new ReactiveCache.Builder()
         .using(temporaryFolder.getRoot(), Jolyglot$.newInstance());
 
     TestObserver<List<Mock1>> testObserver =  getMocks()
         .compose(reactiveCache.<List<Mock1>>provider()
-            .withKey("getMocks")
+            .withKey(key)
             .readWithLoader())
         .test();
 
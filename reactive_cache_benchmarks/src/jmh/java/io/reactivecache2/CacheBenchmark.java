@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Single;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Builds a ReactiveCache on a temporary directory for every combination of speaker and payload
+ * size, with one provider and one provider group already holding a list of that size.
+ */
+@State(Scope.Thread)
+public abstract class CacheBenchmark {
+  static final String GROUP = "group";
+
+  @Param({"GSON", "JACKSON", "MOSHI", "BINARY", "GSON_DEFLATE", "BINARY_DEFLATE"})
+  public Speaker speaker;
+  @Param({"1", "100", "10000"}) public int size;
+
+  File cacheDirectory;
+  ReactiveCache reactiveCache;
+  Provider<List<Payload>> provider;
+  ProviderGroup<List<Payload>> providerGroup;
+  Single<List<Payload>> loader;
+
+  @Setup(Level.Trial) public void setUpCache() throws IOException {
+    cacheDirectory = Files.createTempDirectory("reactive_cache_benchmarks").toFile();
+    reactiveCache = new ReactiveCache.Builder()
+        .diskCacheSize(1024)
+        .using(cacheDirectory, speaker.create());
+
+    provider = reactiveCache.<List<Payload>>provider()
+        .withKey("provider");
+    providerGroup = reactiveCache.<List<Payload>>providerGroup()
+        .withKey("providerGroup");
+
+    loader = Single.fromCallable(() -> Payload.listOf(size));
+    loader.compose(provider.replace()).blockingGet();
+    loader.compose(providerGroup.replace(GROUP)).blockingGet();
+  }
+
+  @TearDown(Level.Trial) public void tearDownCache() {
+    reactiveCache.evictAll().blockingAwait();
+    File[] files = cacheDirectory.listFiles();
+    if (files != null) {
+      for (File file : files) file.delete();
+    }
+    cacheDirectory.delete();
+  }
+}
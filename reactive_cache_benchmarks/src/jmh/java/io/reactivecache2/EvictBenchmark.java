@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Evictions of cached data. The data is written again before every invocation, out of the
+ * measured time.
+ */
+public class EvictBenchmark extends CacheBenchmark {
+
+  @Setup(Level.Invocation) public void populate() {
+    loader.compose(provider.replace()).blockingGet();
+    loader.compose(providerGroup.replace(GROUP)).blockingGet();
+  }
+
+  @Benchmark public void evict() {
+    provider.evict().blockingAwait();
+  }
+
+  @Benchmark public void evictGroup() {
+    providerGroup.evict(GROUP).blockingAwait();
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Reads which find no data, so they subscribe to the loader and persist its item. The data is
+ * evicted before every invocation, out of the measured time.
+ */
+public class MissBenchmark extends CacheBenchmark {
+
+  @Setup(Level.Invocation) public void evict() {
+    provider.evict().blockingAwait();
+    providerGroup.evict(GROUP).blockingAwait();
+  }
+
+  @Benchmark public List<Payload> readWithLoaderMiss() {
+    return loader.compose(provider.readWithLoader()).blockingGet();
+  }
+
+  @Benchmark public List<Payload> readWithLoaderMissGroup() {
+    return loader.compose(providerGroup.readWithLoader(GROUP)).blockingGet();
+  }
+}
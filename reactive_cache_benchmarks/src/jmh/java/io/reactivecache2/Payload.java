@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Payload {
+  private int id;
+  private String title;
+  private String body;
+
+  public Payload() {
+  }
+
+  public Payload(int id, String title, String body) {
+    this.id = id;
+    this.title = title;
+    this.body = body;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public void setId(int id) {
+    this.id = id;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  public void setBody(String body) {
+    this.body = body;
+  }
+
+  static List<Payload> listOf(int size) {
+    List<Payload> payloads = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      payloads.add(new Payload(i, "Title " + i, "Lorem Ipsum is simply dummy text of the "
+          + "printing and typesetting industry. Lorem Ipsum has been the industry's standard "
+          + "dummy text ever since the 1500s."));
+    }
+    return payloads;
+  }
+}
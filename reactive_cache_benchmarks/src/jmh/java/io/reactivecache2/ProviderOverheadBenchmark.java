@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.rx_cache2.ConfigProvider;
+import io.rx_cache2.internal.ProcessorProviders;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost that providers add on top of the persistence layer by replacing it with a
+ * ProcessorProviders which emits a constant. Run it with the gc profiler (enabled by default in
+ * this module) to compare the bytes allocated per operation between revisions.
+ *
+ * Placed in the library package to reach the package-private builder constructors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProviderOverheadBenchmark {
+  private Provider<String> provider;
+  private ProviderGroup<String> providerGroup;
+  private Single<String> loader;
+
+  @Setup public void setUp() {
+    ProcessorProviders processorProviders = new ConstantProcessorProviders();
+    SingleFlight singleFlight = new SingleFlight();
+    WriteTimes writeTimes = new WriteTimes(Schedulers.computation());
+    RefreshAhead refreshAhead = new RefreshAhead(1, Schedulers.computation(), Schedulers.io());
+
+    provider = new Provider.ProviderBuilder<String>(processorProviders, false, singleFlight,
+        writeTimes, refreshAhead)
+        .lifeCache(1, TimeUnit.MINUTES)
+        .withKey("provider");
+
+    providerGroup = new ProviderGroup.ProviderBuilder<String>(processorProviders, false,
+        singleFlight, writeTimes, refreshAhead, new GroupIndex(processorProviders, null, null))
+        .lifeCache(1, TimeUnit.MINUTES)
+        .withKey("providerGroup");
+
+    loader = Single.just("loader");
+  }
+
+  @Benchmark public String read() {
+    return provider.read().blockingGet();
+  }
+
+  @Benchmark public String readIfPresent() {
+    return provider.readIfPresent().blockingGet();
+  }
+
+  @Benchmark public String readWithLoader() {
+    return loader.compose(provider.readWithLoader()).blockingGet();
+  }
+
+  @Benchmark public String replace() {
+    return loader.compose(provider.replace()).blockingGet();
+  }
+
+  @Benchmark public String readGroup() {
+    return providerGroup.read("group").blockingGet();
+  }
+
+  @Benchmark public String readWithLoaderGroup() {
+    return loader.compose(providerGroup.readWithLoader("group")).blockingGet();
+  }
+
+  @Benchmark public String replaceGroup() {
+    return loader.compose(providerGroup.replace("group")).blockingGet();
+  }
+
+  private static final class ConstantProcessorProviders implements ProcessorProviders {
+    private final Observable<Object> data = Observable.<Object>just("data");
+    //Published so the JIT can not scalar replace the ConfigProvider allocations.
+    private volatile ConfigProvider last;
+
+    @SuppressWarnings("unchecked")
+    @Override public <T> Observable<T> process(ConfigProvider configProvider) {
+      last = configProvider;
+      return (Observable<T>) data;
+    }
+
+    @Override public Observable<Void> evictAll() {
+      return Observable.empty();
+    }
+  }
+}
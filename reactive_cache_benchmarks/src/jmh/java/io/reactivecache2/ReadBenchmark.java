@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Reads which are served by the cache.
+ */
+public class ReadBenchmark extends CacheBenchmark {
+
+  @Benchmark public List<Payload> read() {
+    return provider.read().blockingGet();
+  }
+
+  @Benchmark public List<Payload> readWithLoaderHit() {
+    return loader.compose(provider.readWithLoader()).blockingGet();
+  }
+
+  @Benchmark public List<Payload> readGroup() {
+    return providerGroup.read(GROUP).blockingGet();
+  }
+
+  @Benchmark public List<Payload> readWithLoaderHitGroup() {
+    return loader.compose(providerGroup.readWithLoader(GROUP)).blockingGet();
+  }
+}
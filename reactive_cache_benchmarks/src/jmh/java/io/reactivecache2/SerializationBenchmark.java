@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Serializes and deserializes a list of payloads with every speaker, isolated from the disk and
+ * from RxCache, which is the work the persistence layer does on every write and read.
+ */
+@State(Scope.Thread)
+public class SerializationBenchmark {
+  @Param({"GSON", "JACKSON", "MOSHI", "BINARY", "GSON_DEFLATE", "BINARY_DEFLATE"})
+  public Speaker speaker;
+  @Param({"1", "100", "10000"}) public int size;
+
+  private JolyglotGenerics jolyglot;
+  private Type type;
+  private List<Payload> payloads;
+  private String serialized;
+
+  @Setup public void setUp() {
+    jolyglot = speaker.create();
+    type = jolyglot.newParameterizedType(List.class, Payload.class);
+    payloads = Payload.listOf(size);
+    serialized = jolyglot.toJson(payloads, type);
+  }
+
+  @Benchmark public String serialize() {
+    return jolyglot.toJson(payloads, type);
+  }
+
+  @Benchmark public List<Payload> deserialize() {
+    return jolyglot.fromJson(serialized, type);
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import io.victoralbertos.jolyglot.GsonSpeaker;
+import io.victoralbertos.jolyglot.JacksonSpeaker;
+import io.victoralbertos.jolyglot.JolyglotGenerics;
+import io.victoralbertos.jolyglot.MoshiSpeaker;
+
+/**
+ * The JolyglotGenerics implementations the benchmarks run against, BINARY being the adapter of
+ * {@link BinaryCodec} and the DEFLATE ones compressing every record with {@link
+ * DeflateCompression}.
+ */
+public enum Speaker {
+  GSON {
+    @Override JolyglotGenerics create() {
+      return new GsonSpeaker();
+    }
+  },
+  JACKSON {
+    @Override JolyglotGenerics create() {
+      return new JacksonSpeaker();
+    }
+  },
+  MOSHI {
+    @Override JolyglotGenerics create() {
+      return new MoshiSpeaker();
+    }
+  },
+  BINARY {
+    @Override JolyglotGenerics create() {
+      return new CodecJolyglot(new BinaryCodec(), null, 0);
+    }
+  },
+  GSON_DEFLATE {
+    @Override JolyglotGenerics create() {
+      return new CompressedJolyglot(new GsonSpeaker(), new DeflateCompression(), 0);
+    }
+  },
+  BINARY_DEFLATE {
+    @Override JolyglotGenerics create() {
+      return new CodecJolyglot(new BinaryCodec(), new DeflateCompression(), 0);
+    }
+  };
+
+  abstract JolyglotGenerics create();
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Victor Albertos
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.reactivecache2;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Writes which replace the cached data.
+ */
+public class WriteBenchmark extends CacheBenchmark {
+
+  @Benchmark public List<Payload> replace() {
+    return loader.compose(provider.replace()).blockingGet();
+  }
+
+  @Benchmark public List<Payload> replaceGroup() {
+    return loader.compose(providerGroup.replace(GROUP)).blockingGet();
+  }
+}